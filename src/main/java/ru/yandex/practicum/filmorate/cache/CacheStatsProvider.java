@@ -0,0 +1,8 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import java.util.List;
+
+// Компонент с собственными кешами, статистику которых нужно собирать
+public interface CacheStatsProvider {
+    List<LruCache.Stats> cacheStats();
+}
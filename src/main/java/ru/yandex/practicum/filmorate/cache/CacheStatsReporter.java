@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Периодически пишет в лог статистику всех кешей приложения
+@Slf4j
+@Component
+public class CacheStatsReporter {
+    private final List<CacheStatsProvider> providers;
+
+    public CacheStatsReporter(List<CacheStatsProvider> providers) {
+        this.providers = providers;
+    }
+
+    public List<LruCache.Stats> collect() {
+        return providers.stream()
+                .flatMap(provider -> provider.cacheStats().stream())
+                .toList();
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.cache.stats-interval-ms:300000}")
+    public void report() {
+        for (LruCache.Stats stats : collect()) {
+            log.info("Кеш {}: размер {}, попаданий {}, промахов {}, вытеснений {}, hit ratio {}",
+                    stats.name(), stats.size(), stats.hits(), stats.misses(), stats.evictions(),
+                    String.format("%.2f", stats.hitRatio()));
+        }
+    }
+}
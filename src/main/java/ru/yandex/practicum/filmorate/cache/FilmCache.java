@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Function;
+
+/*
+ * Кеш полностью собранных фильмов (жанры, MPA, режиссёры) для GET /films/{id}.
+ * Наружу всегда отдаётся копия, чтобы изменения объекта вызывающим кодом не попадали в кеш.
+ * Сбрасывается точечно: при изменении или удалении фильма и при изменении/удалении режиссёра.
+ */
+@Component
+public class FilmCache implements CacheStatsProvider {
+    private final LruCache<Long, Film> films;
+    private final boolean enabled;
+
+    public FilmCache(@Value("${filmorate.cache.films.enabled:true}") boolean enabled,
+                     @Value("${filmorate.cache.films.max-size:10000}") int maxSize) {
+        this.enabled = enabled;
+        this.films = new LruCache<>("films", maxSize);
+    }
+
+    // null от loader означает, что фильма нет; такой результат не кешируется
+    public Film get(long filmId, Function<Long, Film> loader) {
+        if (!enabled) {
+            return loader.apply(filmId);
+        }
+        Film film = films.get(filmId, id -> {
+            Film loaded = loader.apply(id);
+            return loaded == null ? null : copyOf(loaded);
+        });
+        return film == null ? null : copyOf(film);
+    }
+
+    public void invalidate(long filmId) {
+        films.invalidate(filmId);
+    }
+
+    public void invalidateByDirector(long directorId) {
+        films.invalidateIf(film -> film.getDirectors() != null && film.getDirectors().stream()
+                .anyMatch(director -> director.getId() != null && director.getId() == directorId));
+    }
+
+    @Override
+    public List<LruCache.Stats> cacheStats() {
+        return List.of(films.stats());
+    }
+
+    private Film copyOf(Film film) {
+        Film copy = new Film(film.getId(), film.getName(), film.getDescription(),
+                film.getReleaseDate(), film.getDuration());
+        copy.setMpa(film.getMpa());
+        copy.setGenres(film.getGenres() == null ? null : new LinkedHashSet<>(film.getGenres()));
+        List<Director> directors = film.getDirectors();
+        copy.setDirectors(directors == null ? null : new ArrayList<>(directors));
+        return copy;
+    }
+}
@@ -0,0 +1,131 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/*
+ * Ограниченный по размеру LRU-кеш с подсчётом попаданий, промахов и вытеснений.
+ * Значение загружается через loader при промахе (read-through); null не кешируется,
+ * поэтому отсутствующие записи каждый раз проверяются в источнике.
+ * Загрузка выполняется вне блокировки: при гонке два потока могут загрузить одно значение.
+ * Чтобы устаревшее значение не пережило сброс, у ключа с идущей загрузкой есть поколение:
+ * invalidate во время загрузки увеличивает его, и загруженное значение в кеш не кладётся.
+ * Поколения хранятся только для ключей, которые сейчас загружаются.
+ */
+public class LruCache<K, V> {
+    private final String name;
+    private final Map<K, V> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // ключ -> {поколение, число идущих загрузок}; под той же блокировкой, что и entries
+    private final Map<K, long[]> loading = new HashMap<>();
+
+    public LruCache(String name, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Размер кеша должен быть положительным");
+        }
+        this.name = name;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public V get(K key, Function<K, V> loader) {
+        long[] generation;
+        long startedAt;
+        synchronized (entries) {
+            V value = entries.get(key);
+            if (value != null) {
+                hits.incrementAndGet();
+                return value;
+            }
+            generation = loading.computeIfAbsent(key, k -> new long[2]);
+            generation[1]++;
+            startedAt = generation[0];
+        }
+        misses.incrementAndGet();
+        V loaded = null;
+        try {
+            loaded = loader.apply(key);
+        } finally {
+            synchronized (entries) {
+                // ключ сбросили, пока шла загрузка, — значение могло устареть
+                if (loaded != null && generation[0] == startedAt) {
+                    entries.put(key, loaded);
+                }
+                if (--generation[1] == 0) {
+                    loading.remove(key);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    // Значение без загрузки и без учёта в статистике; null — записи нет
+    public V peek(K key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    public void put(K key, V value) {
+        synchronized (entries) {
+            entries.put(key, value);
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+            long[] generation = loading.get(key);
+            if (generation != null) {
+                generation[0]++;
+            }
+        }
+    }
+
+    // Удаляет записи, значения которых подходят под условие; возвращает их число
+    public int invalidateIf(Predicate<V> condition) {
+        synchronized (entries) {
+            int before = entries.size();
+            entries.values().removeIf(condition);
+            // значения загружающихся ключей ещё не известны — считаем, что условие могло подойти
+            loading.values().forEach(generation -> generation[0]++);
+            return before - entries.size();
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            loading.values().forEach(generation -> generation[0]++);
+        }
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(name, size, hits.get(), misses.get(), evictions.get());
+    }
+
+    public record Stats(String name, int size, long hits, long misses, long evictions) {
+        public double hitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+}
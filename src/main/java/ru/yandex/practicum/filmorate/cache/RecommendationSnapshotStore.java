@@ -0,0 +1,137 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Готовые списки рекомендаций (id фильмов) по пользователям.
+ * Снимок помечается «грязным», когда меняются лайки, влияющие на пользователя;
+ * пересчётом занимается RecommendationService. Пометка ставится и тому, чей первый снимок
+ * ещё считается, — иначе лайк во время расчёта потерялся бы и снимок жил бы устаревшим весь срок.
+ * Хранилище ограничено: сверх maxSize вытесняется снимок, который дольше всех не читали,
+ * а evictIdle убирает снимки, не читавшиеся с заданного момента, — иначе фоновый пересчёт
+ * крутился бы по всем, кто когда-либо запрашивал рекомендации.
+ * Порядок вставки в snapshots и есть порядок чтения: get переставляет снимок в конец сам,
+ * а пересчёт, проверка срока и пометки порядок не трогают.
+ */
+@Component
+public class RecommendationSnapshotStore {
+    private final int maxSize;
+    private final Map<Long, Entry> snapshots;
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    // пользователь -> число идущих расчётов его снимка
+    private final Map<Long, Integer> computing = new HashMap<>();
+
+    public RecommendationSnapshotStore(@Value("${filmorate.recommendations.snapshots.max-size:100000}") int maxSize) {
+        this.maxSize = maxSize;
+        this.snapshots = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() <= RecommendationSnapshotStore.this.maxSize) {
+                    return false;
+                }
+                dirty.remove(eldest.getKey());
+                return true;
+            }
+        };
+    }
+
+    // Чтение снимка продлевает ему жизнь
+    public synchronized Snapshot get(long userId) {
+        Entry entry = snapshots.remove(userId);
+        if (entry == null) return null;
+        snapshots.put(userId, entry);
+        entry.lastReadAt = Instant.now();
+        return entry.snapshot;
+    }
+
+    public synchronized void put(long userId, Snapshot snapshot) {
+        Entry entry = snapshots.get(userId);
+        if (entry == null) {
+            entry = new Entry();
+            entry.lastReadAt = Instant.now();
+            snapshots.put(userId, entry);
+        }
+        entry.snapshot = snapshot;
+    }
+
+    public boolean isDirty(long userId) {
+        return dirty.contains(userId);
+    }
+
+    // Помечаем тех, у кого есть снимок или он сейчас считается: остальные посчитаются при запросе
+    public synchronized void markDirty(Collection<Long> userIds) {
+        for (Long userId : userIds) {
+            if (snapshots.containsKey(userId) || computing.containsKey(userId)) {
+                dirty.add(userId);
+            }
+        }
+    }
+
+    // Начало расчёта: снимает отметку, изменение во время расчёта поставит её снова
+    public synchronized void startCompute(long userId) {
+        dirty.remove(userId);
+        computing.merge(userId, 1, Integer::sum);
+    }
+
+    // Конец расчёта, успешного или нет; отметка без снимка не нужна — холодный пользователь посчитается при запросе
+    public synchronized void finishCompute(long userId) {
+        computing.computeIfPresent(userId, (id, count) -> count == 1 ? null : count - 1);
+        if (!computing.containsKey(userId) && !snapshots.containsKey(userId)) {
+            dirty.remove(userId);
+        }
+    }
+
+    public Set<Long> dirtyUsers() {
+        return Set.copyOf(dirty);
+    }
+
+    public synchronized Set<Long> activeUsers() {
+        return Set.copyOf(snapshots.keySet());
+    }
+
+    // Фоновой проверке срока жизни не нужно продлевать снимок
+    public synchronized Instant computedAt(long userId) {
+        Entry entry = snapshots.get(userId);
+        return entry == null ? null : entry.snapshot.computedAt();
+    }
+
+    // Убирает снимки, которые не читали с readBefore; возвращает их число
+    public synchronized int evictIdle(Instant readBefore) {
+        int before = snapshots.size();
+        snapshots.entrySet().removeIf(e -> {
+            boolean idle = e.getValue().lastReadAt.isBefore(readBefore);
+            if (idle) {
+                dirty.remove(e.getKey());
+            }
+            return idle;
+        });
+        return before - snapshots.size();
+    }
+
+    public synchronized int size() {
+        return snapshots.size();
+    }
+
+    public synchronized void remove(long userId) {
+        snapshots.remove(userId);
+        dirty.remove(userId);
+    }
+
+    public record Snapshot(List<Long> filmIds, Instant computedAt) {
+    }
+
+    private static class Entry {
+        private Snapshot snapshot;
+        private Instant lastReadAt;
+    }
+}
@@ -0,0 +1,186 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Review;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/*
+ * Первые top-size отзывов фильма (и всего каталога) в порядке useful DESC, id — для GET /reviews
+ * без курсора. Голос, создание, изменение и удаление отзыва правят загруженные списки на месте.
+ * Если список неполный (у фильма больше top-size отзывов) и изменение может поднять в топ отзыв,
+ * которого нет в памяти — отзыв из списка опустился или удалён, — список сбрасывается
+ * и перечитывается при следующем запросе. Наружу отдаются копии.
+ * Изменения применяются только после коммита (refresh): отзыв перечитывается из БД под блокировкой
+ * его id, поэтому последним в кеш попадает значение, прочитанное после последнего коммита.
+ * Изменение списка, который сейчас загружается, сбрасывает загрузку через поколение LruCache —
+ * загрузчик мог прочитать БД до коммита.
+ */
+@Component
+public class ReviewTopCache implements CacheStatsProvider {
+    // ключ списка по всем фильмам; id фильмов начинаются с 1
+    private static final long ALL_FILMS = 0;
+    private static final int LOCK_STRIPES = 64;
+    private static final Comparator<Review> ORDER = Comparator.comparingLong(Review::getUseful).reversed()
+            .thenComparing(Review::getId);
+
+    private final LruCache<Long, TopReviews> lists;
+    private final boolean enabled;
+    private final int topSize;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public ReviewTopCache(@Value("${filmorate.cache.reviews.enabled:true}") boolean enabled,
+                          @Value("${filmorate.cache.reviews.top-size:100}") int topSize,
+                          @Value("${filmorate.cache.reviews.max-films:1000}") int maxFilms) {
+        this.enabled = enabled;
+        this.topSize = topSize;
+        this.lists = new LruCache<>("reviews", maxFilms);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public boolean covers(int count) {
+        return enabled && count <= topSize;
+    }
+
+    // loader(filmId, limit) читает первые limit отзывов из БД; читаем на один больше, чтобы знать, полный ли список
+    public List<Review> getTop(Long filmId, int count, BiFunction<Long, Integer, List<Review>> loader) {
+        long key = filmId == null ? ALL_FILMS : filmId;
+        TopReviews top = lists.get(key, k -> new TopReviews(loader.apply(filmId, topSize + 1), topSize));
+        return top.first(count);
+    }
+
+    // Вызывается после коммита: loader читает отзыв из БД, null — отзыв удалён; review даёт id и фильм
+    public void refresh(Review review, Function<Long, Review> loader) {
+        if (!enabled) return;
+        synchronized (locks[(int) Math.floorMod(review.getId(), (long) locks.length)]) {
+            Review current = loader.apply(review.getId());
+            if (current == null) {
+                onReviewRemoved(review);
+            } else {
+                onReviewChanged(current);
+            }
+        }
+    }
+
+    // Отзыв создан, изменён или за него проголосовали; useful — уже новое значение
+    public void onReviewChanged(Review review) {
+        apply(review.getFilmId(), top -> top.upsert(review));
+        apply(ALL_FILMS, top -> top.upsert(review));
+    }
+
+    public void onReviewRemoved(Review review) {
+        apply(review.getFilmId(), top -> top.remove(review.getId()));
+        apply(ALL_FILMS, top -> top.remove(review.getId()));
+    }
+
+    public void invalidateFilm(long filmId) {
+        lists.invalidate(filmId);
+        lists.invalidate(ALL_FILMS);
+    }
+
+    public void invalidateAll() {
+        lists.invalidateAll();
+    }
+
+    @Override
+    public List<LruCache.Stats> cacheStats() {
+        return List.of(lists.stats());
+    }
+
+    // Списка нет в памяти — сбрасываем возможную загрузку, иначе она закеширует значения до изменения
+    private void apply(long key, Predicate<TopReviews> change) {
+        TopReviews top = lists.peek(key);
+        if (top == null || !change.test(top)) {
+            lists.invalidate(key);
+        }
+    }
+
+    private static Review copyOf(Review review) {
+        return Review.builder()
+                .id(review.getId())
+                .content(review.getContent())
+                .isPositive(review.getIsPositive())
+                .userId(review.getUserId())
+                .filmId(review.getFilmId())
+                .useful(review.getUseful())
+                .build();
+    }
+
+    private static final class TopReviews {
+        private final List<Review> reviews;
+        private final int topSize;
+        // в списке все отзывы фильма, за его пределами ничего нет
+        private boolean complete;
+
+        TopReviews(List<Review> loaded, int topSize) {
+            this.topSize = topSize;
+            this.complete = loaded.size() <= topSize;
+            this.reviews = new ArrayList<>(loaded.subList(0, Math.min(loaded.size(), topSize)));
+            this.reviews.replaceAll(ReviewTopCache::copyOf);
+        }
+
+        synchronized List<Review> first(int count) {
+            return reviews.stream().limit(count).map(ReviewTopCache::copyOf).toList();
+        }
+
+        // false — список больше не точный и его нужно перечитать
+        synchronized boolean upsert(Review review) {
+            Review changed = copyOf(review);
+            int index = indexOf(review.getId());
+            if (index >= 0 && reviews.get(index).getUseful() == changed.getUseful()) {
+                reviews.set(index, changed);
+                return true;
+            }
+            if (index >= 0) {
+                reviews.remove(index);
+            }
+            if (complete) {
+                insert(changed);
+                if (reviews.size() > topSize) {
+                    reviews.remove(reviews.size() - 1);
+                    complete = false;
+                }
+                return true;
+            }
+            // за пределами неполного списка лежат отзывы не выше его последнего
+            if (reviews.isEmpty() || ORDER.compare(changed, reviews.get(reviews.size() - 1)) > 0) {
+                return index < 0;
+            }
+            insert(changed);
+            if (reviews.size() > topSize) {
+                reviews.remove(reviews.size() - 1);
+            }
+            return true;
+        }
+
+        synchronized boolean remove(long reviewId) {
+            int index = indexOf(reviewId);
+            if (index < 0) return true;
+            reviews.remove(index);
+            return complete;
+        }
+
+        private void insert(Review review) {
+            int position = 0;
+            while (position < reviews.size() && ORDER.compare(reviews.get(position), review) < 0) {
+                position++;
+            }
+            reviews.add(position, review);
+        }
+
+        private int indexOf(long reviewId) {
+            for (int i = 0; i < reviews.size(); i++) {
+                if (reviews.get(i).getId() == reviewId) return i;
+            }
+            return -1;
+        }
+    }
+}
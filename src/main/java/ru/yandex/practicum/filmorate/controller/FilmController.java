@@ -1,14 +1,33 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.ValidationException;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Positive;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeOperationResult;
+import ru.yandex.practicum.filmorate.model.Suggestion;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.LikeBatchService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Set;
 
@@ -18,10 +37,18 @@ import java.util.Set;
 @RequestMapping("/films")
 public class FilmController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+
     private final FilmService filmService;
+    private final LikeBatchService likeBatchService;
+    private final ObjectMapper objectMapper;
 
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, LikeBatchService likeBatchService, ObjectMapper objectMapper) {
         this.filmService = filmService;
+        this.likeBatchService = likeBatchService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
@@ -37,9 +64,55 @@ public class FilmController {
     }
 
     @GetMapping
-    public List<Film> findAll() {
-        log.info("GET   /films — запрос всех фильмов");
-        return (List<Film>) filmService.findAll();
+    public ResponseEntity<List<Film>> findAll(
+            @RequestParam(name = "limit", required = false) @Positive @Max(MAX_PAGE_SIZE) Integer limit,
+            @RequestParam(name = "after", required = false) Long after
+    ) {
+        if (limit == null && after == null) {
+            log.info("GET   /films — запрос всех фильмов");
+            return ResponseEntity.ok((List<Film>) filmService.findAll());
+        }
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        log.info("GET   /films?limit={}&after={} — запрос страницы фильмов", pageSize, after);
+        List<Film> page = filmService.findPage(after, pageSize);
+        // курсор следующей страницы — id последнего фильма, если страница заполнена целиком
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.get(page.size() - 1).getId()));
+        }
+        return response.body(page);
+    }
+
+    // Выгрузка всего каталога в NDJSON: по фильму на строку, первые байты уходят сразу
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> export() {
+        log.info("GET   /films/export — потоковая выгрузка каталога");
+        StreamingResponseBody body = outputStream -> {
+            try {
+                filmService.exportAll(film -> {
+                    try {
+                        outputStream.write(objectMapper.writeValueAsBytes(film));
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    @GetMapping("/suggest")
+    public List<Suggestion> suggest(
+            @RequestParam String prefix,
+            @RequestParam(name = "limit", defaultValue = "10") @Positive @Max(FilmSuggestIndex.MAX_LIMIT) int limit
+    ) {
+        log.debug("GET   /films/suggest?prefix={}&limit={}", prefix, limit);
+        return filmService.suggest(prefix, limit);
     }
 
     @GetMapping("/{filmId}")
@@ -68,6 +141,49 @@ public class FilmController {
         filmService.deleteLike(filmId, userId);
     }
 
+    // Пакетный импорт лайков: JSON-массив операций, итог по каждой в том же порядке
+    @PostMapping(value = "/likes:batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<LikeOperationResult> applyLikes(@RequestBody List<LikeOperation> operations) {
+        log.info("POST  /films/likes:batch — пакетный импорт {} операций с лайками", operations.size());
+        return likeBatchService.apply(operations.iterator());
+    }
+
+    // То же в NDJSON: по операции на строку, тело читается порциями без загрузки целиком,
+    // итог каждой порции уходит клиенту строками NDJSON сразу после её коммита.
+    // Некорректная строка в первой порции даёт 400; в следующих — обрывает ответ после итогов
+    // уже закоммиченных порций
+    @PostMapping(value = "/likes:batch", consumes = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> applyLikesStream(InputStream body, HttpServletResponse servletResponse) {
+        log.info("POST  /films/likes:batch — потоковый импорт лайков");
+        StreamingResponseBody response = outputStream -> {
+            try (MappingIterator<LikeOperation> operations =
+                         objectMapper.readerFor(LikeOperation.class).readValues(body)) {
+                likeBatchService.apply(operations, results -> {
+                    try {
+                        // тип ставится с первой порцией: до неё ошибка ещё уходит обычным JSON-ответом 400
+                        servletResponse.setContentType("application/x-ndjson");
+                        for (LikeOperationResult result : results) {
+                            outputStream.write(objectMapper.writeValueAsBytes(result));
+                            outputStream.write('\n');
+                        }
+                        outputStream.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (RuntimeException e) {
+                // ошибки разбора строки MappingIterator заворачивает в непроверяемые исключения
+                if (e instanceof RuntimeJsonMappingException || e.getCause() instanceof JsonProcessingException) {
+                    throw new ValidationException("Некорректная строка импорта лайков: " + e.getMessage());
+                }
+                throw e;
+            }
+        };
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/popular")
     public List<Film> getPopularFilms(
             @RequestParam(name = "count", defaultValue = "10")
@@ -106,9 +222,11 @@ public class FilmController {
 
     @GetMapping("/search")
     public List<Film> searchFilms(@RequestParam String query,
-                                  @RequestParam String by) {
+                                  @RequestParam String by,
+                                  @RequestParam(defaultValue = "substring") String match) {
         String byFields = by.trim().toLowerCase();
-        log.info("GET /films/search?query={}&by={}", query, byFields);
+        String matchMode = match.trim().toLowerCase();
+        log.info("GET /films/search?query={}&by={}&match={}", query, byFields, matchMode);
 
         Set<String> allowed = Set.of("title", "director", "title,director", "director,title");
 
@@ -119,6 +237,11 @@ public class FilmController {
             );
         }
 
-        return filmService.searchFilms(query.trim(), byFields);
+        // match=words — полнотекстовый поиск целых слов, он не заменяет поиск по подстроке
+        return switch (matchMode) {
+            case "substring" -> filmService.searchFilms(query.trim(), byFields);
+            case "words" -> filmService.searchFilmsByWords(query.trim(), byFields);
+            default -> throw new ValidationException("Parameter 'match' must be 'substring' or 'words'");
+        };
     }
 }
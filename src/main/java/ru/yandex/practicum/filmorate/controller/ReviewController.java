@@ -1,13 +1,19 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
+import jakarta.validation.ValidationException;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Positive;
 import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.service.ReviewService;
 
 import java.util.List;
 
+@Validated
 @RestController
 @RequestMapping("/reviews")
 @AllArgsConstructor
@@ -34,12 +40,27 @@ public class ReviewController {
         reviewService.delete(id);
     }
 
+    // Без after — первые count отзывов; курсор следующей страницы "useful:id" приходит в X-Next-Cursor
     @GetMapping
-    public List<Review> getReviews(
+    public ResponseEntity<List<Review>> getReviews(
             @RequestParam(value = "filmId", required = false) Long filmId,
-            @RequestParam(value = "count", defaultValue = "10") Integer count
+            @RequestParam(value = "count", defaultValue = "10")
+            @Positive @Max(FilmController.MAX_PAGE_SIZE) Integer count,
+            @RequestParam(value = "after", required = false) String after
     ) {
-        return reviewService.getReviewsByFilmId(filmId, count);
+        List<Review> page;
+        if (after == null) {
+            page = reviewService.getReviewsByFilmId(filmId, count);
+        } else {
+            long[] cursor = parseCursor(after);
+            page = reviewService.getReviewsPage(filmId, cursor[0], cursor[1], count);
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!page.isEmpty() && page.size() == count) {
+            Review last = page.get(page.size() - 1);
+            response.header(FilmController.NEXT_CURSOR_HEADER, last.getUseful() + ":" + last.getId());
+        }
+        return response.body(page);
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -61,4 +82,15 @@ public class ReviewController {
     public void deleteDislike(@PathVariable Long id, @PathVariable Long userId) {
         reviewService.deleteRate(id, userId, false);
     }
+
+    private long[] parseCursor(String after) {
+        String[] parts = after.split(":");
+        try {
+            if (parts.length == 2) {
+                return new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])};
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new ValidationException("Некорректный курсор отзывов: " + after);
+    }
 }
@@ -1,20 +1,27 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Positive;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.FeedService;
+import ru.yandex.practicum.filmorate.service.FriendSuggestionService;
 import ru.yandex.practicum.filmorate.service.RecommendationService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import java.util.Collection;
 import java.util.List;
 
+@Validated
 @Slf4j
 @RestController
 @RequestMapping("/users")
@@ -23,17 +30,34 @@ public class UserController {
     private final UserService userService;
     private final FeedService feedService;
     private final RecommendationService recommendationService;
+    private final FriendSuggestionService friendSuggestionService;
 
-    public UserController(UserService userService, FeedService feedService, RecommendationService recommendationService) {
+    public UserController(UserService userService, FeedService feedService, RecommendationService recommendationService,
+                          FriendSuggestionService friendSuggestionService) {
         this.userService = userService;
         this.feedService = feedService;
         this.recommendationService = recommendationService;
+        this.friendSuggestionService = friendSuggestionService;
     }
 
     @GetMapping
-    public Collection<User> findAll() {
-        log.info("GET /users — получение всех пользователей");
-        return userService.findAll();
+    public ResponseEntity<Collection<User>> findAll(
+            @RequestParam(name = "limit", required = false)
+            @Positive @Max(FilmController.MAX_PAGE_SIZE) Integer limit,
+            @RequestParam(name = "after", required = false) Long after
+    ) {
+        if (limit == null && after == null) {
+            log.info("GET /users — получение всех пользователей");
+            return ResponseEntity.ok(userService.findAll());
+        }
+        int pageSize = limit != null ? limit : FilmController.DEFAULT_PAGE_SIZE;
+        log.info("GET /users?limit={}&after={} — получение страницы пользователей", pageSize, after);
+        List<User> page = userService.findPage(after, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() == pageSize) {
+            response.header(FilmController.NEXT_CURSOR_HEADER, String.valueOf(page.get(page.size() - 1).getId()));
+        }
+        return response.body(page);
     }
 
     @PostMapping
@@ -46,9 +70,6 @@ public class UserController {
     @PutMapping
     public User update(@Valid @RequestBody User user) {
         log.info("PUT /users — обновление пользователя с ID = {}", user.getId());
-        if (userService.findById(user.getId()) == null) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Пользователь не найден");
-        }
         return userService.update(user);
     }
 
@@ -57,7 +78,6 @@ public class UserController {
             @PathVariable Long id,
             @PathVariable Long friendId) {
         log.info("PUT /users/{}/friends/{} — добавление друга", id, friendId);
-        checkUsersExist(id, friendId);
         userService.addFriend(id, friendId);
     }
 
@@ -66,23 +86,34 @@ public class UserController {
             @PathVariable Long id,
             @PathVariable Long friendId) {
         log.info("DELETE /users/{}/friends/{} — удаление из друзей", id, friendId);
-        checkUsersExist(id, friendId);
         userService.deleteFriend(id, friendId);
     }
 
     @GetMapping("/{id}/friends")
     public List<User> getFriends(@PathVariable Long id) {
         log.info("GET /users/{}/friends — список друзей", id);
-        if (userService.findById(id) == null) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Пользователь не найден");
-        }
         return (List<User>) userService.getFriends(id);
     }
 
+    // Друзья друзей по числу общих друзей; при обрезанном по бюджету обходе — заголовок X-Suggestions-Truncated
+    @GetMapping("/{id}/friends/suggestions")
+    public ResponseEntity<List<FriendSuggestion>> getFriendSuggestions(
+            @PathVariable Long id,
+            @RequestParam(name = "limit", defaultValue = "10")
+            @Positive @Max(FriendSuggestionService.MAX_LIMIT) int limit
+    ) {
+        log.info("GET /users/{}/friends/suggestions?limit={} — подсказки друзей", id, limit);
+        FriendSuggestionService.Suggestions suggestions = friendSuggestionService.suggest(id, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (suggestions.truncated()) {
+            response.header("X-Suggestions-Truncated", "true");
+        }
+        return response.body(suggestions.items());
+    }
+
     @GetMapping("/{id}/friends/common/{otherId}")
     public List<User> getCommonFriends(@PathVariable Long id, @PathVariable Long otherId) {
         log.info("GET /users/{}/friends/common/{} — список общих друзей", id, otherId);
-        checkUsersExist(id, otherId);
         return (List<User>) userService.getCommonFriends(id, otherId);
     }
 
@@ -102,25 +133,43 @@ public class UserController {
     }
 
     @GetMapping("/{id}/recommendations")
-    public List<Film> getRecommendations(@PathVariable Long id) {
-        return recommendationService.getRecommendations(id);
+    public ResponseEntity<List<Film>> getRecommendations(@PathVariable Long id) {
+        RecommendationService.Recommendations recommendations = recommendationService.getRecommendationSnapshot(id);
+        // время расчёта снимка — клиент видит, насколько рекомендации свежие
+        return ResponseEntity.ok()
+                .header("X-Recommendations-Computed-At", recommendations.computedAt().toString())
+                .body(recommendations.films());
     }
 
-    private void checkUsersExist(Long id, Long otherId) {
-        if (userService.findById(id) == null) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Пользователь с id=" + id + " не найден");
+    @GetMapping("/{id}/feed")
+    public ResponseEntity<Collection<Feed>> getUserFeed(
+            @PathVariable Long id,
+            @RequestParam(name = "limit", required = false)
+            @Positive @Max(FilmController.MAX_PAGE_SIZE) Integer limit,
+            @RequestParam(name = "before", required = false) Long before
+    ) {
+        log.info("Запрос ленты событий для пользователя с ID: {}", id);
+        if (limit == null && before == null) {
+            return ResponseEntity.ok(feedService.feeds(id));
         }
-        if (userService.findById(otherId) == null) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Пользователь с id=" + otherId + " не найден");
+        int pageSize = limit != null ? limit : FilmController.DEFAULT_PAGE_SIZE;
+        List<Feed> page = feedService.feedsPage(id, before, pageSize);
+        // курсор на более старые события — id самого раннего события страницы
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() == pageSize) {
+            response.header(FilmController.NEXT_CURSOR_HEADER, String.valueOf(page.get(0).getEventId()));
         }
+        return response.body(page);
     }
 
-    @GetMapping("/{id}/feed")
-    public Collection<Feed> getUserFeed(@PathVariable Long id) {
-        log.info("Запрос ленты событий для пользователя с ID: {}", id);
-        if (userService.findById(id) == null) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Пользователь с id=" + id + " не найден");
-        }
-        return feedService.feeds(id);
+    // Лента активности: свои события и события друзей, от новых к старым
+    @GetMapping("/{id}/timeline")
+    public List<Feed> getUserTimeline(
+            @PathVariable Long id,
+            @RequestParam(name = "limit", defaultValue = "50")
+            @Positive @Max(FilmController.MAX_PAGE_SIZE) int limit
+    ) {
+        log.info("Запрос ленты активности друзей для пользователя с ID: {}", id);
+        return feedService.timeline(id, limit);
     }
 }
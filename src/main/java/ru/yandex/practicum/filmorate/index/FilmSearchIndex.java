@@ -0,0 +1,280 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Триграммный инвертированный индекс по названиям фильмов и именам режиссёров.
+ * Поиск подстроки: пересекаем списки id по всем триграммам запроса, затем проверяем
+ * кандидатов точным contains — семантика та же, что у LOWER(name) LIKE '%q%'.
+ * Запросы короче трёх символов проверяются перебором строк в памяти.
+ * Заполняется из БД при первом обращении, дальше обновляется из FilmService/DirectorService.
+ * Обновления смотрят на loaded только под блокировкой записи, чтобы изменение, пришедшее
+ * во время загрузки, дождалось её конца, а не было отброшено.
+ */
+@Slf4j
+@Component
+public class FilmSearchIndex {
+    private static final int GRAM = 3;
+
+    private final FilmStorage filmStorage;
+    private final DirectorStorage directorStorage;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Integer, String> titles = new HashMap<>();
+    private final Map<String, SortedIntSet> titleGrams = new HashMap<>();
+    private final Map<Integer, String> directorNames = new HashMap<>();
+    private final Map<String, SortedIntSet> directorGrams = new HashMap<>();
+    private final Map<Integer, SortedIntSet> filmsByDirector = new HashMap<>();
+    private final Map<Integer, int[]> directorsByFilm = new HashMap<>();
+    private volatile boolean loaded = false;
+
+    public FilmSearchIndex(FilmStorage filmStorage,
+                           DirectorStorage directorStorage,
+                           PopularFilmsLeaderboard leaderboard) {
+        this.filmStorage = filmStorage;
+        this.directorStorage = directorStorage;
+        this.leaderboard = leaderboard;
+    }
+
+    // id найденных фильмов: лайки по убыванию, затем id — как ORDER BY в SQL-поиске
+    public List<Long> search(String query, boolean byTitle, boolean byDirector) {
+        ensureLoaded();
+        String needle = normalize(query);
+        Set<Integer> found = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            if (byTitle) {
+                found.addAll(match(needle, titles, titleGrams));
+            }
+            if (byDirector) {
+                for (Integer directorId : match(needle, directorNames, directorGrams)) {
+                    SortedIntSet films = filmsByDirector.get(directorId);
+                    if (films == null) continue;
+                    for (int i = 0; i < films.size(); i++) {
+                        found.add(films.get(i));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Long> ranked = new ArrayList<>(found.size());
+        found.forEach(id -> ranked.add(id.longValue()));
+        Map<Long, Long> likes = new HashMap<>();
+        for (Long id : ranked) {
+            likes.put(id, leaderboard.getLikes(id));
+        }
+        ranked.sort(Comparator.comparing((Long id) -> likes.get(id)).reversed()
+                .thenComparing(Comparator.naturalOrder()));
+        return ranked;
+    }
+
+    public void onFilmSaved(Film film) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) return;
+            int filmId = toInt(film.getId());
+            removeFilm(filmId);
+            putFilm(filmId, film.getName());
+            List<Director> directors = film.getDirectors() == null ? List.of() : film.getDirectors();
+            int[] directorIds = directors.stream()
+                    .filter(director -> director.getId() != null)
+                    .mapToInt(director -> toInt(director.getId()))
+                    .distinct()
+                    .toArray();
+            linkDirectors(filmId, directorIds);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onFilmRemoved(long filmId) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) return;
+            removeFilm(toInt(filmId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onDirectorSaved(Director director) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) return;
+            int directorId = toInt(director.getId());
+            removeText(directorId, directorNames, directorGrams);
+            putText(directorId, director.getName(), directorNames, directorGrams);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onDirectorRemoved(long directorId) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) return;
+            int id = toInt(directorId);
+            removeText(id, directorNames, directorGrams);
+            SortedIntSet films = filmsByDirector.remove(id);
+            if (films == null) return;
+            for (int i = 0; i < films.size(); i++) {
+                int filmId = films.get(i);
+                int[] remaining = Arrays.stream(directorsByFilm.getOrDefault(filmId, new int[0]))
+                        .filter(other -> other != id)
+                        .toArray();
+                directorsByFilm.put(filmId, remaining);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private List<Integer> match(String needle, Map<Integer, String> texts, Map<String, SortedIntSet> grams) {
+        List<Integer> result = new ArrayList<>();
+        if (needle.length() < GRAM) {
+            texts.forEach((id, text) -> {
+                if (text.contains(needle)) {
+                    result.add(id);
+                }
+            });
+            return result;
+        }
+
+        // начинаем с самого короткого списка, остальные проверяем бинарным поиском
+        List<SortedIntSet> postings = new ArrayList<>();
+        for (String gram : grams(needle)) {
+            SortedIntSet ids = grams.get(gram);
+            if (ids == null) {
+                return result;
+            }
+            postings.add(ids);
+        }
+        postings.sort(Comparator.comparingInt(SortedIntSet::size));
+        SortedIntSet smallest = postings.get(0);
+        outer:
+        for (int i = 0; i < smallest.size(); i++) {
+            int id = smallest.get(i);
+            for (int p = 1; p < postings.size(); p++) {
+                if (!postings.get(p).contains(id)) continue outer;
+            }
+            if (texts.get(id).contains(needle)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private void putFilm(int filmId, String title) {
+        putText(filmId, title, titles, titleGrams);
+    }
+
+    private void removeFilm(int filmId) {
+        removeText(filmId, titles, titleGrams);
+        linkDirectors(filmId, new int[0]);
+        directorsByFilm.remove(filmId);
+    }
+
+    private void linkDirectors(int filmId, int[] directorIds) {
+        for (int old : directorsByFilm.getOrDefault(filmId, new int[0])) {
+            SortedIntSet films = filmsByDirector.get(old);
+            if (films != null) {
+                films.remove(filmId);
+                if (films.isEmpty()) {
+                    filmsByDirector.remove(old);
+                }
+            }
+        }
+        directorsByFilm.put(filmId, directorIds);
+        for (int directorId : directorIds) {
+            filmsByDirector.computeIfAbsent(directorId, k -> new SortedIntSet()).add(filmId);
+        }
+    }
+
+    private void putText(int id, String text, Map<Integer, String> texts, Map<String, SortedIntSet> grams) {
+        if (text == null) return;
+        String normalized = normalize(text);
+        texts.put(id, normalized);
+        for (String gram : grams(normalized)) {
+            grams.computeIfAbsent(gram, k -> new SortedIntSet()).add(id);
+        }
+    }
+
+    private void removeText(int id, Map<Integer, String> texts, Map<String, SortedIntSet> grams) {
+        String old = texts.remove(id);
+        if (old == null) return;
+        for (String gram : grams(old)) {
+            SortedIntSet ids = grams.get(gram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    grams.remove(gram);
+                }
+            }
+        }
+    }
+
+    private Set<String> grams(String text) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            result.add(text.substring(i, i + GRAM));
+        }
+        return result;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        lock.writeLock().lock();
+        try {
+            if (loaded) return;
+            clear();
+            filmStorage.getFilmTitles().forEach((id, title) -> putFilm(toInt(id), title));
+            for (Director director : directorStorage.getAllDirectors()) {
+                putText(toInt(director.getId()), director.getName(), directorNames, directorGrams);
+            }
+            filmStorage.getFilmDirectorIds().forEach((filmId, directorIds) -> linkDirectors(toInt(filmId),
+                    directorIds.stream().mapToInt(this::toInt).toArray()));
+            loaded = true;
+            log.info("Поисковый индекс загружен: {} фильмов, {} режиссёров", titles.size(), directorNames.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void clear() {
+        titles.clear();
+        titleGrams.clear();
+        directorNames.clear();
+        directorGrams.clear();
+        filmsByDirector.clear();
+        directorsByFilm.clear();
+    }
+
+    private String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private int toInt(long id) {
+        return Math.toIntExact(id);
+    }
+}
@@ -0,0 +1,255 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Suggestion;
+import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.*;
+
+/*
+ * Автодополнение по названиям фильмов и именам режиссёров для /films/suggest.
+ * Ключи — название целиком и каждый его хвост с начала слова, так что «nol» находит
+ * «Christopher Nolan». Вес фильма — число лайков, вес режиссёра — сумма лайков его фильмов.
+ * Запрос читает готовый снимок SuggestTrie и в БД не ходит и не пересобирает его сам.
+ * Изменения фильмов и режиссёров помечают снимок устаревшим; фоновая задача раз в rebuild-delay-ms
+ * пересобирает его один раз на все накопившиеся изменения, а лайки подтягивает пересборка
+ * раз в refresh-interval-ms. Трай строится по копии данных вне монитора, так что запись
+ * не ждёт сборки.
+ */
+@Slf4j
+@Component
+public class FilmSuggestIndex {
+    public static final String FILM = "film";
+    public static final String DIRECTOR = "director";
+    public static final int MAX_LIMIT = 20;
+
+    private final FilmStorage filmStorage;
+    private final DirectorStorage directorStorage;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final int maxEdits;
+
+    private final Map<Long, String> titles = new HashMap<>();
+    private final Map<Long, String> directorNames = new HashMap<>();
+    private final Map<Long, Set<Long>> filmsByDirector = new HashMap<>();
+    private final Map<Long, Set<Long>> directorsByFilm = new HashMap<>();
+    // сборки идут по одной; порядок захвата — buildLock, затем монитор индекса
+    private final Object buildLock = new Object();
+    private volatile Snapshot snapshot;
+    private volatile boolean dirty = false;
+    private volatile boolean loaded = false;
+
+    public FilmSuggestIndex(FilmStorage filmStorage,
+                            DirectorStorage directorStorage,
+                            PopularFilmsLeaderboard leaderboard,
+                            @Value("${filmorate.suggest.max-edits:2}") int maxEdits) {
+        this.filmStorage = filmStorage;
+        this.directorStorage = directorStorage;
+        this.leaderboard = leaderboard;
+        this.maxEdits = maxEdits;
+    }
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = normalize(prefix).strip();
+        if (key.isEmpty()) return List.of();
+        Snapshot current = ensureLoaded();
+        // индекс сбросили, пока шла первая сборка
+        if (current == null) return List.of();
+
+        List<Suggestion> result = new ArrayList<>();
+        for (SuggestTrie.Match match : current.trie().search(key, allowedEdits(key), Math.min(limit, MAX_LIMIT))) {
+            result.add(current.entries().get(match.entryId()));
+        }
+        return result;
+    }
+
+    public void onFilmSaved(Film film) {
+        synchronized (this) {
+            if (!loaded) return;
+            removeFilm(film.getId());
+            titles.put(film.getId(), film.getName());
+            if (film.getDirectors() != null) {
+                for (Director director : film.getDirectors()) {
+                    if (director.getId() != null) {
+                        link(film.getId(), director.getId());
+                    }
+                }
+            }
+            dirty = true;
+        }
+    }
+
+    public void onFilmRemoved(long filmId) {
+        synchronized (this) {
+            if (!loaded) return;
+            removeFilm(filmId);
+            dirty = true;
+        }
+    }
+
+    public void onDirectorSaved(Director director) {
+        synchronized (this) {
+            if (!loaded) return;
+            directorNames.put(director.getId(), director.getName());
+            dirty = true;
+        }
+    }
+
+    public void onDirectorRemoved(long directorId) {
+        synchronized (this) {
+            if (!loaded) return;
+            directorNames.remove(directorId);
+            Set<Long> films = filmsByDirector.remove(directorId);
+            if (films != null) {
+                films.forEach(filmId -> directorsByFilm.get(filmId).remove(directorId));
+            }
+            dirty = true;
+        }
+    }
+
+    public synchronized void invalidate() {
+        loaded = false;
+        dirty = false;
+        snapshot = null;
+        titles.clear();
+        directorNames.clear();
+        filmsByDirector.clear();
+        directorsByFilm.clear();
+    }
+
+    // Пересборка подтягивает изменившиеся лайки: веса в снимке фиксируются на момент сборки
+    @Scheduled(fixedDelayString = "${filmorate.suggest.refresh-interval-ms:60000}")
+    public void refresh() {
+        if (!loaded) return;
+        rebuild(true);
+    }
+
+    // Изменения фильмов и режиссёров, накопившиеся с прошлой сборки, — одной пересборкой
+    @Scheduled(fixedDelayString = "${filmorate.suggest.rebuild-delay-ms:1000}")
+    public void rebuildIfDirty() {
+        if (!loaded || !dirty) return;
+        rebuild(false);
+    }
+
+    // Короткий префикс ищем точно, длинный допускает одну-две опечатки
+    private int allowedEdits(String key) {
+        int edits = key.length() < 4 ? 0 : key.length() < 8 ? 1 : 2;
+        return Math.min(edits, maxEdits);
+    }
+
+    private void removeFilm(long filmId) {
+        titles.remove(filmId);
+        Set<Long> directors = directorsByFilm.remove(filmId);
+        if (directors == null) return;
+        for (Long directorId : directors) {
+            Set<Long> films = filmsByDirector.get(directorId);
+            if (films != null) {
+                films.remove(filmId);
+            }
+        }
+    }
+
+    private void link(long filmId, long directorId) {
+        directorsByFilm.computeIfAbsent(filmId, k -> new HashSet<>()).add(directorId);
+        filmsByDirector.computeIfAbsent(directorId, k -> new HashSet<>()).add(filmId);
+    }
+
+    private void rebuild(boolean force) {
+        synchronized (buildLock) {
+            Map<Long, String> titles;
+            Map<Long, String> directorNames;
+            Map<Long, List<Long>> filmsByDirector = new HashMap<>();
+            synchronized (this) {
+                // пока ждали buildLock, изменения мог собрать предыдущий поток
+                if (!loaded || !force && !dirty) return;
+                titles = new HashMap<>(this.titles);
+                directorNames = new HashMap<>(this.directorNames);
+                this.filmsByDirector.forEach((directorId, films) ->
+                        filmsByDirector.put(directorId, new ArrayList<>(films)));
+                // запись во время сборки снова пометит снимок, и её подхватит следующая пересборка
+                dirty = false;
+            }
+            Snapshot built = build(titles, directorNames, filmsByDirector);
+            synchronized (this) {
+                if (loaded) {
+                    snapshot = built;
+                }
+            }
+        }
+    }
+
+    private Snapshot build(Map<Long, String> titles,
+                           Map<Long, String> directorNames,
+                           Map<Long, List<Long>> filmsByDirector) {
+        List<Suggestion> entries = new ArrayList<>(titles.size() + directorNames.size());
+        List<Long> weights = new ArrayList<>(titles.size() + directorNames.size());
+        SuggestTrie.Builder builder = SuggestTrie.builder();
+
+        titles.forEach((filmId, title) -> {
+            addKeys(builder, title, entries.size());
+            entries.add(new Suggestion(FILM, filmId, title));
+            weights.add(leaderboard.getLikes(filmId));
+        });
+        directorNames.forEach((directorId, name) -> {
+            addKeys(builder, name, entries.size());
+            entries.add(new Suggestion(DIRECTOR, directorId, name));
+            long likes = 0;
+            for (Long filmId : filmsByDirector.getOrDefault(directorId, List.of())) {
+                likes += leaderboard.getLikes(filmId);
+            }
+            weights.add(likes);
+        });
+
+        long[] weightArray = weights.stream().mapToLong(Long::longValue).toArray();
+        return new Snapshot(builder.build(weightArray, MAX_LIMIT), entries);
+    }
+
+    private void addKeys(SuggestTrie.Builder builder, String name, int entryId) {
+        if (name == null) return;
+        String text = normalize(name);
+        for (int i = 0; i < text.length(); i++) {
+            boolean wordStart = Character.isLetterOrDigit(text.charAt(i))
+                    && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)));
+            if (wordStart) {
+                builder.add(text.substring(i), entryId);
+            }
+        }
+    }
+
+    // Первый снимок собирается синхронно: до него отвечать нечем
+    private Snapshot ensureLoaded() {
+        Snapshot current = snapshot;
+        if (current != null) return current;
+        synchronized (buildLock) {
+            if (snapshot != null) return snapshot;
+            synchronized (this) {
+                titles.clear();
+                directorNames.clear();
+                filmsByDirector.clear();
+                directorsByFilm.clear();
+                titles.putAll(filmStorage.getFilmTitles());
+                for (Director director : directorStorage.getAllDirectors()) {
+                    directorNames.put(director.getId(), director.getName());
+                }
+                filmStorage.getFilmDirectorIds().forEach((filmId, directorIds) ->
+                        directorIds.forEach(directorId -> link(filmId, directorId)));
+                loaded = true;
+            }
+            rebuild(true);
+            log.info("Индекс подсказок загружен: {} фильмов, {} режиссёров", titles.size(), directorNames.size());
+            return snapshot;
+        }
+    }
+
+    private String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private record Snapshot(SuggestTrie trie, List<Suggestion> entries) {
+    }
+}
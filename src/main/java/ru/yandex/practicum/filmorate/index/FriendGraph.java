@@ -0,0 +1,279 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Граф дружбы в памяти: у каждого пользователя — отсортированный int-массив тех, кого он
+ * добавил в друзья, и обратный — тех, кто добавил его (нужен, чтобы удалить пользователя
+ * из чужих списков). Общие друзья — слияние двух массивов вместо self-join по user_friends.
+ * Заполняется из БД при первом обращении, дальше обновляется обработчиком outbox и UserService.
+ * Флаг loaded обновления проверяют уже под блокировкой записи: дружба, закоммиченная, пока идёт
+ * загрузка, либо попадёт в прочитанный из БД снимок, либо применится сразу после неё.
+ * Для обхода в ширину (подсказки друзей) граф отдаётся неизменяемым снимком в формате CSR:
+ * все списки смежности подряд в одном int-массиве. Снимок собирается при загрузке графа,
+ * а после изменений его пересобирает фоновая задача раз в rebuild-delay-ms — один раз на все
+ * накопившиеся изменения; запрос берёт готовый снимок и сам его не строит.
+ */
+@Slf4j
+@Component
+public class FriendGraph {
+    private final UserStorage userStorage;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Integer, SortedIntSet> friendsByUser = new HashMap<>();
+    private final Map<Integer, SortedIntSet> followersByUser = new HashMap<>();
+    private volatile boolean loaded = false;
+    // растёт при каждом изменении графа; снимок помнит версию, по которой собран
+    private volatile long version = 0;
+    // растёт при полной перезагрузке и сбросе графа: посчитанное по прежнему графу больше не годится
+    private volatile long epoch = 0;
+    private volatile Csr csr;
+
+    public FriendGraph(UserStorage userStorage) {
+        this.userStorage = userStorage;
+    }
+
+    // Общие друзья по возрастанию id
+    public List<Long> commonFriends(long userId, long otherId) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            SortedIntSet mine = friendsByUser.get(toInt(userId));
+            SortedIntSet theirs = friendsByUser.get(toInt(otherId));
+            if (mine == null || theirs == null) {
+                return Collections.emptyList();
+            }
+            int[] common = mine.intersect(theirs);
+            List<Long> result = new ArrayList<>(common.length);
+            for (int friend : common) {
+                result.add((long) friend);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Неизменяемый снимок графа; его можно обходить без блокировок. После изменений графа
+    // снимок отстаёт от него до фоновой пересборки: version() снимка меньше version() графа
+    public Csr snapshot() {
+        Csr current;
+        // граф могли сбросить сразу после загрузки — тогда загружаем заново
+        while ((current = csr) == null) {
+            ensureLoaded();
+        }
+        return current;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public long epoch() {
+        return epoch;
+    }
+
+    public boolean isFriend(long userId, long friendId) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            SortedIntSet friends = friendsByUser.get(toInt(userId));
+            return friends != null && friends.contains(toInt(friendId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Чьи подсказки друзей меняет изменение списка друзей пользователя: его самого (первый уровень)
+    // и тех, у кого он в друзьях (второй уровень)
+    public Set<Long> affectedUsers(long userId) {
+        lock.readLock().lock();
+        try {
+            Set<Long> users = new HashSet<>();
+            users.add(userId);
+            SortedIntSet followers = followersByUser.get(toInt(userId));
+            if (followers != null) {
+                for (int i = 0; i < followers.size(); i++) {
+                    users.add((long) followers.get(i));
+                }
+            }
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Сборки идут по одной; блокировка чтения держится только на время копирования списков в CSR
+    @Scheduled(fixedDelayString = "${filmorate.friends.suggestions.rebuild-delay-ms:1000}")
+    public synchronized void refreshSnapshot() {
+        Csr current = csr;
+        if (!loaded || (current != null && current.version() == version)) return;
+        lock.readLock().lock();
+        try {
+            if (!loaded) return;
+            csr = buildCsr();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void onFriendAdded(long userId, long friendId) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) return;
+            addFriend(toInt(userId), toInt(friendId));
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onFriendRemoved(long userId, long friendId) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) return;
+            int user = toInt(userId);
+            int friend = toInt(friendId);
+            removeFrom(friendsByUser, user, friend);
+            removeFrom(followersByUser, friend, user);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Дружбы пользователя удалены каскадом в обе стороны
+    public void onUserRemoved(long userId) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) return;
+            int user = toInt(userId);
+            SortedIntSet friends = friendsByUser.remove(user);
+            if (friends != null) {
+                for (int i = 0; i < friends.size(); i++) {
+                    removeFrom(followersByUser, friends.get(i), user);
+                }
+            }
+            SortedIntSet followers = followersByUser.remove(user);
+            if (followers != null) {
+                for (int i = 0; i < followers.size(); i++) {
+                    removeFrom(friendsByUser, followers.get(i), user);
+                }
+            }
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            friendsByUser.clear();
+            followersByUser.clear();
+            csr = null;
+            version++;
+            epoch++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Полная пересборка из готового снимка дружб (userId -> друзья)
+    public void rebuild(Map<Long, Set<Long>> friendsByUserId) {
+        lock.writeLock().lock();
+        try {
+            friendsByUser.clear();
+            followersByUser.clear();
+            for (Map.Entry<Long, Set<Long>> entry : friendsByUserId.entrySet()) {
+                int user = toInt(entry.getKey());
+                for (Long friendId : entry.getValue()) {
+                    addFriend(user, toInt(friendId));
+                }
+            }
+            version++;
+            epoch++;
+            csr = buildCsr();
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        lock.writeLock().lock();
+        try {
+            if (loaded) return;
+            rebuild(userStorage.getAllFriendIds());
+            log.info("Граф дружбы загружен: {} пользователей с друзьями", friendsByUser.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Вызывается под блокировкой чтения или записи
+    private Csr buildCsr() {
+        int[] nodes = friendsByUser.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        int[] offsets = new int[nodes.length + 1];
+        for (int i = 0; i < nodes.length; i++) {
+            offsets[i + 1] = offsets[i] + friendsByUser.get(nodes[i]).size();
+        }
+        int[] targets = new int[offsets[nodes.length]];
+        for (int i = 0; i < nodes.length; i++) {
+            int[] friends = friendsByUser.get(nodes[i]).toArray();
+            System.arraycopy(friends, 0, targets, offsets[i], friends.length);
+        }
+        return new Csr(version, nodes, offsets, targets);
+    }
+
+    private void addFriend(int user, int friend) {
+        friendsByUser.computeIfAbsent(user, k -> new SortedIntSet()).add(friend);
+        followersByUser.computeIfAbsent(friend, k -> new SortedIntSet()).add(user);
+    }
+
+    private void removeFrom(Map<Integer, SortedIntSet> sets, int key, int value) {
+        SortedIntSet set = sets.get(key);
+        if (set == null) return;
+        set.remove(value);
+        if (set.isEmpty()) {
+            sets.remove(key);
+        }
+    }
+
+    private int toInt(long id) {
+        return Math.toIntExact(id);
+    }
+
+    /*
+     * Граф в формате CSR: nodes — отсортированные id пользователей, у которых есть друзья,
+     * друзья пользователя nodes[row] — targets[offsets[row] .. offsets[row + 1]), по возрастанию id.
+     */
+    public record Csr(long version, int[] nodes, int[] offsets, int[] targets) {
+
+        // Номер строки пользователя или -1, если друзей у него нет
+        public int row(long userId) {
+            int pos = Arrays.binarySearch(nodes, Math.toIntExact(userId));
+            return pos >= 0 ? pos : -1;
+        }
+
+        public int degree(int row) {
+            return offsets[row + 1] - offsets[row];
+        }
+
+        public int friend(int row, int index) {
+            return targets[offsets[row] + index];
+        }
+
+        public boolean isFriend(int row, int userId) {
+            return Arrays.binarySearch(targets, offsets[row], offsets[row + 1], userId) >= 0;
+        }
+    }
+}
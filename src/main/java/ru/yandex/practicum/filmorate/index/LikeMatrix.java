@@ -0,0 +1,344 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Матрица «пользователь × фильм» по лайкам, которая живёт в памяти.
+ * Хранится в двух направлениях (фильмы пользователя и пользователи фильма)
+ * на отсортированных int-массивах. Заполняется из БД при первом обращении,
+ * дальше обновляется из FilmService/UserService.
+ * Флаг loaded обновления проверяют уже под блокировкой записи: лайк, закоммиченный, пока идёт
+ * загрузка, либо попадёт в прочитанный из БД снимок, либо применится сразу после неё.
+ * При включённом LSH кандидаты в соседи берутся из корзин MinHash, а не из полного
+ * обратного индекса; найденные кандидаты всё равно ранжируются точной мерой похожести.
+ */
+@Slf4j
+@Component
+public class LikeMatrix {
+    private static final Comparator<Neighbour> BY_SIMILARITY = Comparator
+            .comparingDouble(Neighbour::similarity).reversed()
+            .thenComparingLong(Neighbour::userId);
+
+    private final UserStorage userStorage;
+    private final MinHashLsh lsh;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Integer, SortedIntSet> filmsByUser = new HashMap<>();
+    private final Map<Integer, SortedIntSet> usersByFilm = new HashMap<>();
+    private volatile boolean loaded = false;
+
+    public LikeMatrix(UserStorage userStorage) {
+        this(userStorage, null);
+    }
+
+    public LikeMatrix(UserStorage userStorage, MinHashLsh lsh) {
+        this.userStorage = userStorage;
+        this.lsh = lsh;
+    }
+
+    @Autowired
+    public LikeMatrix(UserStorage userStorage,
+                      @Value("${filmorate.recommendations.lsh.enabled:false}") boolean lshEnabled,
+                      @Value("${filmorate.recommendations.lsh.bands:32}") int bands,
+                      @Value("${filmorate.recommendations.lsh.rows:2}") int rows) {
+        this(userStorage, lshEnabled ? new MinHashLsh(bands, rows, 42L) : null);
+    }
+
+    // Ближайшие по вкусам пользователи: кандидаты — только те, кто лайкал хотя бы один общий фильм
+    public List<Neighbour> topNeighbours(long userId, int limit, Similarity similarity) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return findNeighbours(toInt(userId), limit, similarity);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Фильмы соседей, которых пользователь ещё не лайкал, по убыванию суммарного веса соседей
+    public List<Long> recommend(long userId, int neighbours, Similarity similarity) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            int user = toInt(userId);
+            SortedIntSet mine = filmsByUser.get(user);
+            if (mine == null || mine.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return score(mine, findNeighbours(user, neighbours, similarity));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Пользователи, у которых есть хотя бы один общий лайк с данным, плюс все лайкнувшие фильм
+    public Set<Long> affectedUsers(long filmId, long userId) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Set<Long> result = new HashSet<>();
+            result.add(userId);
+            collect(usersByFilm.get(toInt(filmId)), result);
+            SortedIntSet films = filmsByUser.get(toInt(userId));
+            if (films != null) {
+                for (int i = 0; i < films.size(); i++) {
+                    collect(usersByFilm.get(films.get(i)), result);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Фильмы, которые лайкнули оба пользователя, по убыванию числа лайков, затем по id
+    public List<Long> commonFilms(long userId, long otherId) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            SortedIntSet mine = filmsByUser.get(toInt(userId));
+            SortedIntSet theirs = filmsByUser.get(toInt(otherId));
+            if (mine == null || theirs == null) {
+                return Collections.emptyList();
+            }
+            int[] common = mine.intersect(theirs);
+            List<Long> result = new ArrayList<>(common.length);
+            for (int film : common) {
+                result.add((long) film);
+            }
+            result.sort(Comparator
+                    .comparingInt((Long film) -> usersByFilm.get(film.intValue()).size()).reversed()
+                    .thenComparingLong(film -> film));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void onLikeAdded(long filmId, long userId) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) return;
+            int film = toInt(filmId);
+            int user = toInt(userId);
+            addLike(film, user);
+            if (lsh != null) {
+                lsh.add(user, film);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onLikeRemoved(long filmId, long userId) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) return;
+            int film = toInt(filmId);
+            int user = toInt(userId);
+            removeFrom(filmsByUser, user, film);
+            removeFrom(usersByFilm, film, user);
+            if (lsh != null) {
+                lsh.update(user, filmsByUser.get(user));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onFilmRemoved(long filmId) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) return;
+            int film = toInt(filmId);
+            SortedIntSet users = usersByFilm.remove(film);
+            if (users == null) return;
+            for (int i = 0; i < users.size(); i++) {
+                removeFrom(filmsByUser, users.get(i), film);
+                if (lsh != null) {
+                    lsh.update(users.get(i), filmsByUser.get(users.get(i)));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onUserRemoved(long userId) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) return;
+            int user = toInt(userId);
+            SortedIntSet films = filmsByUser.remove(user);
+            if (lsh != null) {
+                lsh.remove(user);
+            }
+            if (films == null) return;
+            for (int i = 0; i < films.size(); i++) {
+                removeFrom(usersByFilm, films.get(i), user);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            filmsByUser.clear();
+            usersByFilm.clear();
+            if (lsh != null) {
+                lsh.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Полная пересборка из готового снимка лайков (userId -> фильмы)
+    public void rebuild(Map<Long, Set<Long>> likesByUser) {
+        lock.writeLock().lock();
+        try {
+            filmsByUser.clear();
+            usersByFilm.clear();
+            for (Map.Entry<Long, Set<Long>> entry : likesByUser.entrySet()) {
+                int user = toInt(entry.getKey());
+                for (Long filmId : entry.getValue()) {
+                    addLike(toInt(filmId), user);
+                }
+            }
+            if (lsh != null) {
+                lsh.clear();
+                filmsByUser.forEach(lsh::update);
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private List<Neighbour> findNeighbours(int user, int limit, Similarity similarity) {
+        SortedIntSet mine = filmsByUser.get(user);
+        if (mine == null || mine.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        Map<Integer, int[]> commonByUser = lsh != null
+                ? countCommonWithCandidates(mine, lsh.candidates(user))
+                : countCommon(user, mine);
+
+        PriorityQueue<Neighbour> top = new PriorityQueue<>(limit + 1, BY_SIMILARITY.reversed());
+        for (Map.Entry<Integer, int[]> entry : commonByUser.entrySet()) {
+            int other = entry.getKey();
+            double score = similarity.score(entry.getValue()[0], mine.size(), filmsByUser.get(other).size());
+            top.add(new Neighbour(other, score));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<Neighbour> result = new ArrayList<>(top);
+        result.sort(BY_SIMILARITY);
+        return result;
+    }
+
+    // Число общих лайков через обратный индекс фильм -> пользователи (точный перебор)
+    private Map<Integer, int[]> countCommon(int user, SortedIntSet mine) {
+        Map<Integer, int[]> commonByUser = new HashMap<>();
+        for (int i = 0; i < mine.size(); i++) {
+            SortedIntSet likers = usersByFilm.get(mine.get(i));
+            for (int j = 0; j < likers.size(); j++) {
+                int other = likers.get(j);
+                if (other != user) {
+                    commonByUser.computeIfAbsent(other, k -> new int[1])[0]++;
+                }
+            }
+        }
+        return commonByUser;
+    }
+
+    // Точное пересечение только с кандидатами из LSH
+    private Map<Integer, int[]> countCommonWithCandidates(SortedIntSet mine, Set<Integer> candidates) {
+        Map<Integer, int[]> commonByUser = new HashMap<>();
+        for (Integer other : candidates) {
+            SortedIntSet films = filmsByUser.get(other);
+            int common = films == null ? 0 : mine.intersectionSize(films);
+            if (common > 0) {
+                commonByUser.put(other, new int[]{common});
+            }
+        }
+        return commonByUser;
+    }
+
+    private List<Long> score(SortedIntSet mine, List<Neighbour> neighbours) {
+        Map<Integer, double[]> scores = new HashMap<>();
+        for (Neighbour neighbour : neighbours) {
+            SortedIntSet films = filmsByUser.get((int) neighbour.userId());
+            for (int i = 0; i < films.size(); i++) {
+                int film = films.get(i);
+                if (!mine.contains(film)) {
+                    scores.computeIfAbsent(film, k -> new double[1])[0] += neighbour.similarity();
+                }
+            }
+        }
+
+        List<Map.Entry<Integer, double[]>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Comparator
+                .comparingDouble((Map.Entry<Integer, double[]> e) -> e.getValue()[0]).reversed()
+                .thenComparingInt(Map.Entry::getKey));
+
+        List<Long> result = new ArrayList<>(ranked.size());
+        for (Map.Entry<Integer, double[]> entry : ranked) {
+            result.add(entry.getKey().longValue());
+        }
+        return result;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        lock.writeLock().lock();
+        try {
+            if (loaded) return;
+            rebuild(userStorage.getAllUserLikedFilms());
+            log.info("Матрица лайков загружена: {} пользователей, {} фильмов", filmsByUser.size(), usersByFilm.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void collect(SortedIntSet users, Set<Long> target) {
+        if (users == null) return;
+        for (int i = 0; i < users.size(); i++) {
+            target.add((long) users.get(i));
+        }
+    }
+
+    private void addLike(int film, int user) {
+        filmsByUser.computeIfAbsent(user, k -> new SortedIntSet()).add(film);
+        usersByFilm.computeIfAbsent(film, k -> new SortedIntSet()).add(user);
+    }
+
+    private void removeFrom(Map<Integer, SortedIntSet> sets, int key, int value) {
+        SortedIntSet set = sets.get(key);
+        if (set == null) return;
+        set.remove(value);
+        if (set.isEmpty()) {
+            sets.remove(key);
+        }
+    }
+
+    private int toInt(long id) {
+        return Math.toIntExact(id);
+    }
+
+    public record Neighbour(long userId, double similarity) {
+    }
+}
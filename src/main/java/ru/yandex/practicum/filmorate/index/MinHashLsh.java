@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.*;
+
+/*
+ * MinHash-подписи пользователей по лайкнутым фильмам и LSH-индекс по полосам (banding).
+ * Пользователи с большим коэффициентом Жаккара с высокой вероятностью попадают
+ * хотя бы в одну общую корзину, поэтому кандидатов в соседи можно брать из корзин,
+ * не перебирая всех пользователей. Вероятность совпадения полосы при похожести s — s^rows,
+ * вероятность попасть в кандидаты — 1 - (1 - s^rows)^bands.
+ * Класс не потокобезопасен, синхронизация — на стороне владельца (LikeMatrix).
+ */
+public class MinHashLsh {
+    private static final long PRIME = (1L << 31) - 1;
+
+    private final int bands;
+    private final int rows;
+    private final long[] hashA;
+    private final long[] hashB;
+
+    private final Map<Integer, int[]> signatures = new HashMap<>();
+    private final List<Map<Long, SortedIntSet>> buckets;
+
+    public MinHashLsh(int bands, int rows, long seed) {
+        if (bands <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("bands и rows должны быть положительными");
+        }
+        this.bands = bands;
+        this.rows = rows;
+        int hashes = bands * rows;
+        this.hashA = new long[hashes];
+        this.hashB = new long[hashes];
+        Random random = new Random(seed);
+        for (int i = 0; i < hashes; i++) {
+            hashA[i] = 1 + random.nextInt(Integer.MAX_VALUE - 1);
+            hashB[i] = random.nextInt(Integer.MAX_VALUE);
+        }
+        this.buckets = new ArrayList<>(bands);
+        for (int b = 0; b < bands; b++) {
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    // Полный пересчёт подписи пользователя по его текущему набору фильмов
+    public void update(int user, SortedIntSet films) {
+        unindex(user);
+        if (films == null || films.isEmpty()) {
+            signatures.remove(user);
+            return;
+        }
+        int[] signature = new int[hashA.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int i = 0; i < films.size(); i++) {
+            apply(signature, films.get(i));
+        }
+        signatures.put(user, signature);
+        index(user, signature);
+    }
+
+    // Добавление лайка меняет подпись монотонно — пересчитывать все фильмы не нужно
+    public void add(int user, int film) {
+        int[] signature = signatures.get(user);
+        if (signature == null) {
+            signature = new int[hashA.length];
+            Arrays.fill(signature, Integer.MAX_VALUE);
+            signatures.put(user, signature);
+        } else {
+            unindex(user);
+        }
+        apply(signature, film);
+        index(user, signature);
+    }
+
+    public void remove(int user) {
+        unindex(user);
+        signatures.remove(user);
+    }
+
+    public void clear() {
+        signatures.clear();
+        buckets.forEach(Map::clear);
+    }
+
+    // Пользователи, совпавшие с данным хотя бы в одной полосе
+    public Set<Integer> candidates(int user) {
+        int[] signature = signatures.get(user);
+        if (signature == null) {
+            return Collections.emptySet();
+        }
+        Set<Integer> result = new HashSet<>();
+        for (int b = 0; b < bands; b++) {
+            SortedIntSet bucket = buckets.get(b).get(bandKey(signature, b));
+            if (bucket == null) continue;
+            for (int i = 0; i < bucket.size(); i++) {
+                result.add(bucket.get(i));
+            }
+        }
+        result.remove(user);
+        return result;
+    }
+
+    private void apply(int[] signature, int film) {
+        for (int i = 0; i < signature.length; i++) {
+            int hash = (int) ((hashA[i] * film + hashB[i]) % PRIME);
+            if (hash < signature[i]) {
+                signature[i] = hash;
+            }
+        }
+    }
+
+    private void index(int user, int[] signature) {
+        for (int b = 0; b < bands; b++) {
+            buckets.get(b).computeIfAbsent(bandKey(signature, b), k -> new SortedIntSet()).add(user);
+        }
+    }
+
+    private void unindex(int user) {
+        int[] signature = signatures.get(user);
+        if (signature == null) return;
+        for (int b = 0; b < bands; b++) {
+            Map<Long, SortedIntSet> band = buckets.get(b);
+            long key = bandKey(signature, b);
+            SortedIntSet bucket = band.get(key);
+            if (bucket != null) {
+                bucket.remove(user);
+                if (bucket.isEmpty()) {
+                    band.remove(key);
+                }
+            }
+        }
+    }
+
+    private long bandKey(int[] signature, int band) {
+        long key = 1125899906842597L;
+        for (int r = band * rows; r < (band + 1) * rows; r++) {
+            key = 31 * key + signature[r];
+        }
+        return key;
+    }
+}
@@ -0,0 +1,329 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxDispatchLock;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Рейтинг фильмов по количеству лайков, который живёт в памяти.
+ * Заполняется из БД при старте приложения узкими выборками (год, жанры, счётчик лайков),
+ * дальше поддерживается инкрементально из FilmService (лайки, создание/обновление/удаление фильмов).
+ * Порядок тот же, что и у SQL-запроса: лайки по убыванию, затем id по возрастанию.
+ * Счётчики не идемпотентны: под блокировкой разноса outbox читается только снимок лайков,
+ * без событий LIKE, которые ещё ждут разноса, — их диспетчер применит после загрузки ровно один раз.
+ * Изменения фильмов, пришедшие во время загрузки, применяются поверх снимка.
+ */
+@Slf4j
+@Component
+public class PopularFilmsLeaderboard {
+
+    private static final Comparator<Rank> RANK_ORDER = Comparator
+            .comparingLong(Rank::likes).reversed()
+            .thenComparingLong(Rank::filmId);
+
+    private final FilmStorage filmStorage;
+    private final OutboxDispatchLock dispatchLock;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final NavigableSet<Rank> all = new TreeSet<>(RANK_ORDER);
+    private final Map<Integer, NavigableSet<Rank>> byGenre = new HashMap<>();
+    private final Map<Integer, NavigableSet<Rank>> byYear = new HashMap<>();
+    private final Object loadMonitor = new Object();
+    // фильмы, сохранённые (значение — фильм) или удалённые (null) во время загрузки
+    private final Map<Long, Film> changedDuringLoad = new HashMap<>();
+    private final boolean enabled;
+    private volatile boolean loaded = false;
+    private boolean loading = false;
+
+    public PopularFilmsLeaderboard(FilmStorage filmStorage,
+                                   OutboxDispatchLock dispatchLock,
+                                   @Value("${filmorate.popular.leaderboard.enabled:true}") boolean enabled) {
+        this.filmStorage = filmStorage;
+        this.dispatchLock = dispatchLock;
+        this.enabled = enabled;
+    }
+
+    // Первый запрос популярных не платит за загрузку; при ошибке рейтинг загрузится при обращении
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        if (!enabled) return;
+        try {
+            ensureLoaded();
+        } catch (RuntimeException e) {
+            log.error("Не удалось загрузить рейтинг популярных фильмов при старте", e);
+        }
+    }
+
+    public List<Long> getTopIds(int count, Integer genreId, Integer year) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            NavigableSet<Rank> source = all;
+            if (genreId != null) {
+                source = byGenre.getOrDefault(genreId, Collections.emptyNavigableSet());
+            }
+            if (year != null) {
+                NavigableSet<Rank> yearSet = byYear.getOrDefault(year, Collections.emptyNavigableSet());
+                // идём по меньшему из множеств, второе условие проверяем по entry
+                if (genreId == null || yearSet.size() < source.size()) {
+                    source = yearSet;
+                }
+            }
+
+            List<Long> result = new ArrayList<>(Math.min(count, source.size()));
+            for (Rank rank : source) {
+                if (result.size() >= count) break;
+                Entry entry = entries.get(rank.filmId());
+                if (genreId != null && !entry.genreIds().contains(genreId)) continue;
+                if (year != null && entry.year() != year) continue;
+                result.add(rank.filmId());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getLikes(long filmId) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(filmId);
+            return entry == null ? 0 : entry.likes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void onFilmSaved(Film film) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                if (loading) changedDuringLoad.put(film.getId(), film);
+                return;
+            }
+            Entry old = entries.get(film.getId());
+            long likes = old == null ? 0 : old.likes();
+            if (old != null) {
+                unindex(film.getId(), old);
+            }
+            Entry entry = new Entry(film.getReleaseDate().getYear(), genreIds(film), likes);
+            entries.put(film.getId(), entry);
+            index(film.getId(), entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onFilmRemoved(long filmId) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                if (loading) changedDuringLoad.put(filmId, null);
+                return;
+            }
+            Entry old = entries.remove(filmId);
+            if (old != null) {
+                unindex(filmId, old);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onLikeAdded(long filmId) {
+        changeLikes(filmId, 1);
+    }
+
+    public void onLikeRemoved(long filmId) {
+        changeLikes(filmId, -1);
+    }
+
+    // Сбрасывает рейтинг, следующее обращение перечитает его из БД
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Сверяет все фильмы (лайки, год, жанры) с узким снимком из БД — расхождение в любом рейтинге,
+    // включая жанровые и годовые, пересобирает рейтинг сразу, а не на следующем запросе
+    @Scheduled(fixedDelayString = "${filmorate.popular.leaderboard.check-interval-ms:300000}")
+    public void verifyConsistency() {
+        if (!loaded) return;
+        Map<Long, Integer> years = filmStorage.getReleaseYears();
+        Map<Long, Set<Integer>> genres = filmStorage.getFilmGenreIds();
+        List<Long> drifted = new ArrayList<>();
+        dispatchLock.lock();
+        try {
+            Map<Long, Entry> expected = buildEntries(years, genres, filmStorage.getDispatchedLikeCounts());
+            lock.readLock().lock();
+            try {
+                if (!loaded) return;
+                Set<Long> filmIds = new HashSet<>(expected.keySet());
+                filmIds.addAll(entries.keySet());
+                for (Long filmId : filmIds) {
+                    if (!Objects.equals(expected.get(filmId), entries.get(filmId))) {
+                        drifted.add(filmId);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        } finally {
+            dispatchLock.unlock();
+        }
+        if (!drifted.isEmpty()) {
+            log.warn("Рейтинг популярных фильмов разошёлся с БД по {} фильмам, пересобираем: {}",
+                    drifted.size(), drifted.subList(0, Math.min(10, drifted.size())));
+            invalidate();
+            ensureLoaded();
+        }
+    }
+
+    private void changeLikes(long filmId, int delta) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) return;
+            Entry old = entries.get(filmId);
+            if (old == null) return;
+            unindex(filmId, old);
+            Entry entry = new Entry(old.year(), old.genreIds(), Math.max(0, old.likes() + delta));
+            entries.put(filmId, entry);
+            index(filmId, entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Порядок блокировок: загрузка, разнос outbox, рейтинг — у диспетчера тот же хвост: разнос, затем рейтинг
+    private void ensureLoaded() {
+        if (loaded) return;
+        synchronized (loadMonitor) {
+            if (loaded) return;
+            lock.writeLock().lock();
+            try {
+                loading = true;
+                changedDuringLoad.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            try {
+                Map<Long, Integer> years = filmStorage.getReleaseYears();
+                Map<Long, Set<Integer>> genres = filmStorage.getFilmGenreIds();
+                dispatchLock.lock();
+                try {
+                    Map<Long, Long> likeCounts = filmStorage.getDispatchedLikeCounts();
+                    install(buildEntries(years, genres, likeCounts));
+                } finally {
+                    dispatchLock.unlock();
+                }
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    loading = false;
+                    changedDuringLoad.clear();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            log.info("Рейтинг популярных фильмов загружен: {} фильмов", entries.size());
+        }
+    }
+
+    private void install(Map<Long, Entry> snapshot) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            entries.putAll(snapshot);
+            entries.forEach(this::index);
+            loaded = true;
+            changedDuringLoad.forEach((filmId, film) -> {
+                if (film == null) {
+                    onFilmRemoved(filmId);
+                } else {
+                    onFilmSaved(film);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Map<Long, Entry> buildEntries(Map<Long, Integer> years, Map<Long, Set<Integer>> genres,
+                                          Map<Long, Long> likeCounts) {
+        Map<Long, Entry> result = new HashMap<>();
+        years.forEach((filmId, year) -> result.put(filmId, new Entry(year,
+                genres.getOrDefault(filmId, Collections.emptySet()),
+                Math.max(0, likeCounts.getOrDefault(filmId, 0L)))));
+        return result;
+    }
+
+    private void index(long filmId, Entry entry) {
+        Rank rank = new Rank(filmId, entry.likes());
+        all.add(rank);
+        byYear.computeIfAbsent(entry.year(), k -> new TreeSet<>(RANK_ORDER)).add(rank);
+        for (Integer genreId : entry.genreIds()) {
+            byGenre.computeIfAbsent(genreId, k -> new TreeSet<>(RANK_ORDER)).add(rank);
+        }
+    }
+
+    private void unindex(long filmId, Entry entry) {
+        Rank rank = new Rank(filmId, entry.likes());
+        all.remove(rank);
+        removeFrom(byYear, entry.year(), rank);
+        for (Integer genreId : entry.genreIds()) {
+            removeFrom(byGenre, genreId, rank);
+        }
+    }
+
+    private void removeFrom(Map<Integer, NavigableSet<Rank>> buckets, Integer key, Rank rank) {
+        NavigableSet<Rank> bucket = buckets.get(key);
+        if (bucket == null) return;
+        bucket.remove(rank);
+        if (bucket.isEmpty()) {
+            buckets.remove(key);
+        }
+    }
+
+    private void clear() {
+        entries.clear();
+        all.clear();
+        byGenre.clear();
+        byYear.clear();
+    }
+
+    private Set<Integer> genreIds(Film film) {
+        if (film.getGenres() == null || film.getGenres().isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<Integer> ids = new HashSet<>();
+        for (Genre genre : film.getGenres()) {
+            if (genre != null && genre.getId() != null) {
+                ids.add(genre.getId());
+            }
+        }
+        return ids;
+    }
+
+    private record Rank(long filmId, long likes) {
+    }
+
+    private record Entry(int year, Set<Integer> genreIds, long likes) {
+    }
+}
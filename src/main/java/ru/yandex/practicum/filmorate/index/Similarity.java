@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.index;
+
+/*
+ * Мера похожести двух пользователей по их лайкам.
+ * OVERLAP — просто число общих фильмов (поведение исходного алгоритма).
+ */
+public enum Similarity {
+    OVERLAP {
+        @Override
+        public double score(int common, int sizeA, int sizeB) {
+            return common;
+        }
+    },
+    JACCARD {
+        @Override
+        public double score(int common, int sizeA, int sizeB) {
+            int union = sizeA + sizeB - common;
+            return union == 0 ? 0 : (double) common / union;
+        }
+    },
+    COSINE {
+        @Override
+        public double score(int common, int sizeA, int sizeB) {
+            if (sizeA == 0 || sizeB == 0) return 0;
+            return common / Math.sqrt((double) sizeA * sizeB);
+        }
+    };
+
+    public abstract double score(int common, int sizeA, int sizeB);
+}
@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Arrays;
+
+/*
+ * Компактное множество int на отсортированном массиве.
+ * Поиск и вставка — бинарным поиском, без упаковки в Integer.
+ * Класс не потокобезопасен, синхронизация — на стороне владельца.
+ */
+public class SortedIntSet {
+    private static final int[] EMPTY = new int[0];
+
+    private int[] values;
+    private int size;
+
+    public SortedIntSet() {
+        this.values = EMPTY;
+    }
+
+    public boolean add(int value) {
+        int pos = Arrays.binarySearch(values, 0, size, value);
+        if (pos >= 0) return false;
+        int insertAt = -pos - 1;
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(4, size + (size >> 1)));
+        }
+        System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+        values[insertAt] = value;
+        size++;
+        return true;
+    }
+
+    public boolean remove(int value) {
+        int pos = Arrays.binarySearch(values, 0, size, value);
+        if (pos < 0) return false;
+        System.arraycopy(values, pos + 1, values, pos, size - pos - 1);
+        size--;
+        return true;
+    }
+
+    public boolean contains(int value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    // Размер пересечения — слиянием двух отсортированных массивов
+    public int intersectionSize(SortedIntSet other) {
+        int i = 0;
+        int j = 0;
+        int common = 0;
+        while (i < size && j < other.size) {
+            int a = values[i];
+            int b = other.values[j];
+            if (a == b) {
+                common++;
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return common;
+    }
+
+    // Само пересечение, по возрастанию — тем же слиянием
+    public int[] intersect(SortedIntSet other) {
+        int[] common = new int[Math.min(size, other.size)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < size && j < other.size) {
+            int a = values[i];
+            int b = other.values[j];
+            if (a == b) {
+                common[n++] = a;
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, n);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int get(int index) {
+        return values[index];
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
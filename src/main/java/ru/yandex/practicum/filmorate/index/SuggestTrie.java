@@ -0,0 +1,172 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.*;
+
+/*
+ * Неизменяемое сжатое префиксное дерево (radix trie) для автодополнения.
+ * Каждый узел хранит top-K записей своего поддерева по весу, поэтому ответ на префикс —
+ * это спуск до узла и чтение готового списка, без обхода поддерева.
+ * Нечёткий поиск: спуск со строкой матрицы Левенштейна, ветви с min(row) > maxEdits отсекаются.
+ */
+public final class SuggestTrie {
+    private final Node root;
+    private final long[] weights;
+
+    private SuggestTrie(Node root, long[] weights) {
+        this.root = root;
+        this.weights = weights;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Записи, у которых какой-то ключ начинается с префикса на расстоянии не больше maxEdits:
+    // сначала точнее, затем тяжелее, затем по id
+    public List<Match> search(String prefix, int maxEdits, int limit) {
+        int n = prefix.length();
+        if (n == 0) return List.of();
+        int[] row = new int[n + 1];
+        for (int i = 0; i <= n; i++) {
+            row[i] = i;
+        }
+        Map<Integer, Integer> best = new HashMap<>();
+        for (Node child : root.children) {
+            walk(child, prefix, row, maxEdits, Integer.MAX_VALUE, best);
+        }
+
+        List<Match> matches = new ArrayList<>(best.size());
+        best.forEach((id, edits) -> matches.add(new Match(id, edits)));
+        matches.sort(Comparator.comparingInt(Match::edits)
+                .thenComparing(Comparator.comparingLong((Match m) -> weights[m.entryId()]).reversed())
+                .thenComparingInt(Match::entryId));
+        return matches.size() > limit ? matches.subList(0, limit) : matches;
+    }
+
+    private void walk(Node node, String prefix, int[] prevRow, int maxEdits, int matched,
+                      Map<Integer, Integer> best) {
+        int n = prefix.length();
+        int[] row = prevRow;
+        for (int c = 0; c < node.label.length(); c++) {
+            row = nextRow(row, prefix, node.label.charAt(c));
+            int min = Arrays.stream(row).min().orElseThrow();
+            if (row[n] <= maxEdits && row[n] < matched) {
+                // всё поддерево узла продолжает совпавший префикс
+                matched = row[n];
+                for (int id : node.top) {
+                    best.merge(id, matched, Math::min);
+                }
+            }
+            // дальше расстояние не станет меньше уже найденного или выйдет за границу
+            if (min > maxEdits || min >= matched) return;
+        }
+        for (Node child : node.children) {
+            walk(child, prefix, row, maxEdits, matched, best);
+        }
+    }
+
+    private int[] nextRow(int[] prev, String prefix, char ch) {
+        int[] row = new int[prev.length];
+        row[0] = prev[0] + 1;
+        for (int i = 1; i < row.length; i++) {
+            int cost = prefix.charAt(i - 1) == ch ? 0 : 1;
+            row[i] = Math.min(Math.min(row[i - 1] + 1, prev[i] + 1), prev[i - 1] + cost);
+        }
+        return row;
+    }
+
+    public record Match(int entryId, int edits) {
+    }
+
+    private static final class Node {
+        private final String label;
+        private final Node[] children;
+        private final int[] top;
+
+        private Node(String label, Node[] children, int[] top) {
+            this.label = label;
+            this.children = children;
+            this.top = top;
+        }
+    }
+
+    public static final class Builder {
+        private final MutableNode root = new MutableNode("");
+
+        private Builder() {
+        }
+
+        public Builder add(String key, int entryId) {
+            MutableNode node = root;
+            int i = 0;
+            while (i < key.length()) {
+                MutableNode child = node.child(key.charAt(i));
+                if (child == null) {
+                    child = new MutableNode(key.substring(i));
+                    node.children.add(child);
+                    child.terminals.add(entryId);
+                    return this;
+                }
+                int common = 0;
+                while (common < child.label.length() && i + common < key.length()
+                        && child.label.charAt(common) == key.charAt(i + common)) {
+                    common++;
+                }
+                if (common < child.label.length()) {
+                    // ключ расходится посреди ребра — делим ребро
+                    MutableNode middle = new MutableNode(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    middle.children.add(child);
+                    node.children.set(node.children.indexOf(child), middle);
+                    child = middle;
+                }
+                i += common;
+                node = child;
+            }
+            node.terminals.add(entryId);
+            return this;
+        }
+
+        // weights — вес записи по её id, topK — сколько лучших записей держит каждый узел
+        public SuggestTrie build(long[] weights, int topK) {
+            return new SuggestTrie(freeze(root, weights, topK), weights);
+        }
+
+        private Node freeze(MutableNode node, long[] weights, int topK) {
+            Node[] children = new Node[node.children.size()];
+            Set<Integer> candidates = new HashSet<>(node.terminals);
+            for (int i = 0; i < children.length; i++) {
+                children[i] = freeze(node.children.get(i), weights, topK);
+                for (int id : children[i].top) {
+                    candidates.add(id);
+                }
+            }
+            int[] top = candidates.stream()
+                    .sorted(Comparator.comparingLong((Integer id) -> weights[id]).reversed()
+                            .thenComparing(Comparator.naturalOrder()))
+                    .limit(topK)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            return new Node(node.label, children, top);
+        }
+    }
+
+    private static final class MutableNode {
+        private String label;
+        private final List<MutableNode> children = new ArrayList<>();
+        private final List<Integer> terminals = new ArrayList<>();
+
+        private MutableNode(String label) {
+            this.label = label;
+        }
+
+        private MutableNode child(char first) {
+            for (MutableNode child : children) {
+                if (child.label.charAt(0) == first) {
+                    return child;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Подсказка «возможно, вы знакомы»: друг друга и число общих друзей с ним
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FriendSuggestion {
+
+    private User user;
+
+    private int mutualFriends;
+}
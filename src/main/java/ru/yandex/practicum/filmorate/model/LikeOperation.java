@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Элемент пакетного импорта лайков: op — ADD или REMOVE
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LikeOperation {
+
+    private Long filmId;
+
+    private Long userId;
+
+    private String op;
+}
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * Итог одного элемента пакетного импорта лайков:
+ * ADDED / REMOVED — данные изменились, UNCHANGED — лайк уже был (или его не было),
+ * FILM_NOT_FOUND / USER_NOT_FOUND — элемент пропущен, INVALID — не заполнены поля или неизвестная операция.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LikeOperationResult {
+
+    private Long filmId;
+
+    private Long userId;
+
+    private String op;
+
+    private String status;
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+// Доменное событие в outbox; пишется только когда запрос действительно изменил данные
+@Data
+@Builder
+public class OutboxEvent {
+    private long id;
+    private String eventType;
+    private String operation;
+    private long userId;
+    private long entityId;
+    private long createdAt;
+}
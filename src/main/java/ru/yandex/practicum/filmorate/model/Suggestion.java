@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Подсказка автодополнения: фильм или режиссёр без полного агрегата
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Suggestion {
+
+    private String type;
+
+    private Long id;
+
+    private String name;
+}
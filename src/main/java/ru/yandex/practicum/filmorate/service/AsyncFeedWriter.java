@@ -0,0 +1,275 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxStorage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+ * Фоновая запись событий ленты. Запрос кладёт событие в ограниченную очередь,
+ * единственный поток-писатель забирает их пачками до flush-size (или пока не пройдёт
+ * flush-interval-ms) и в одной транзакции пишет одним batch-запросом, раскладывает по лентам друзей
+ * и удаляет строки outbox, из которых пришли события: пока событие не записано, строка остаётся
+ * в outbox с feed_pending и после перезапуска дописывается в ленту заново.
+ * Переполненная очередь блокирует запрос — это и есть обратное давление; очередь FIFO
+ * и писатель один, поэтому eventId у событий одного пользователя растут в порядке действий.
+ * Чтение ленты пользователя сначала дожидается записи его собственных событий, поставленных
+ * в очередь до него, но не дольше flush-timeout-ms и только пока писатель жив; дальше чтение
+ * отдаёт то, что уже записано. Чужие события в очереди чтение не ждут. События попадают в очередь
+ * из опроса outbox, поэтому запрос, изменивший данные, платит только за строку outbox в своей
+ * транзакции, а ещё не разнесённые события чтение не ждёт.
+ * Неудачная пачка повторяется до max-attempts раз; если так и не записалась, события
+ * считаются потерянными (не записанными) и попадают в лог — чтение ленты из-за них не падает;
+ * их строки outbox остаются и дописываются при следующем запуске.
+ * При остановке приложения очередь дописывается до конца.
+ */
+@Slf4j
+@Component
+public class AsyncFeedWriter implements DisposableBean {
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+    // метка остановки: встаёт в очередь последней, всё до неё писатель успевает записать
+    private static final Pending STOP = new Pending(Feed.builder().build(), 0);
+
+    private final FeedStorage feedStorage;
+    private final TimelineService timelineService;
+    private final OutboxStorage outboxStorage;
+    private final TransactionTemplate writeTransaction;
+    private final boolean enabled;
+    private final int flushSize;
+    private final long flushIntervalMs;
+    private final long flushTimeoutMs;
+    private final int maxAttempts;
+    private final BlockingQueue<Pending> queue;
+    private final Object progress = new Object();
+    private final Thread writer;
+
+    // прогресс по авторам событий; запись удаляется, когда всё поставленное обработано
+    private final Map<Long, UserProgress> progressByUser = new HashMap<>();
+
+    public AsyncFeedWriter(FeedStorage feedStorage,
+                           TimelineService timelineService,
+                           OutboxStorage outboxStorage,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${filmorate.feed.async.enabled:false}") boolean enabled,
+                           @Value("${filmorate.feed.async.queue-capacity:10000}") int queueCapacity,
+                           @Value("${filmorate.feed.async.flush-size:500}") int flushSize,
+                           @Value("${filmorate.feed.async.flush-interval-ms:50}") long flushIntervalMs,
+                           @Value("${filmorate.feed.async.flush-timeout-ms:5000}") long flushTimeoutMs,
+                           @Value("${filmorate.feed.async.max-attempts:3}") int maxAttempts) {
+        this.feedStorage = feedStorage;
+        this.timelineService = timelineService;
+        this.outboxStorage = outboxStorage;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.flushSize = flushSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.flushTimeoutMs = flushTimeoutMs;
+        this.maxAttempts = maxAttempts;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        if (enabled) {
+            writer = new Thread(this::run, "feed-writer");
+            writer.setDaemon(true);
+            writer.start();
+            log.info("Асинхронная запись ленты включена: очередь {}, пачка {}, интервал {} мс",
+                    queueCapacity, flushSize, flushIntervalMs);
+        } else {
+            writer = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // outboxId — строка outbox, которая удаляется вместе с записью события
+    public void submit(Feed event, long outboxId) {
+        long userId = event.getUserId();
+        // событие учитывается до того, как попадёт в очередь: писатель может записать его сразу
+        synchronized (progress) {
+            progressByUser.computeIfAbsent(userId, id -> new UserProgress()).submitted++;
+        }
+        boolean queued = false;
+        try {
+            // очередь под блокировкой: порядок в ней совпадает с порядком вызовов
+            synchronized (queue) {
+                // без живого писателя очередь не разберут — не ждём место в ней вечно
+                while (!queue.offer(new Pending(event, outboxId), flushIntervalMs, TimeUnit.MILLISECONDS)) {
+                    checkWriterAlive();
+                }
+                queued = true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Запись события ленты прервана", e);
+        } finally {
+            if (!queued) {
+                synchronized (progress) {
+                    UserProgress user = progressByUser.get(userId);
+                    user.submitted--;
+                    forgetIfDone(userId, user);
+                    progress.notifyAll();
+                }
+            }
+        }
+    }
+
+    // Ждёт, пока будут записаны события пользователя, поставленные в очередь до вызова;
+    // сбои записи только логируются — чтение ленты не должно из-за них падать
+    public void flush(long userId) {
+        if (!enabled) return;
+        synchronized (progress) {
+            UserProgress user = progressByUser.get(userId);
+            if (user == null) return;
+            // запись удаляется только когда всё обработано, поэтому ждать можно на ней самой
+            long target = user.submitted;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushTimeoutMs);
+            // событие, которое так и не встало в очередь, снимается с submitted — его не ждём
+            while (user.processed < Math.min(target, user.submitted)) {
+                if (!writer.isAlive()) {
+                    log.warn("Поток записи ленты остановлен, лента пользователя {} отдаётся без ожидания", userId);
+                    return;
+                }
+                long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (left <= 0) {
+                    log.warn("Запись ленты пользователя {} не завершилась за {} мс, отдаём записанное",
+                            userId, flushTimeoutMs);
+                    return;
+                }
+                try {
+                    progress.wait(Math.min(flushIntervalMs, left));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (!enabled) return;
+        synchronized (queue) {
+            queue.offer(STOP, SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+        writer.join(SHUTDOWN_TIMEOUT_MS);
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.remove(STOP);
+        if (!rest.isEmpty()) {
+            write(rest);
+        }
+        log.info("Асинхронная запись ленты остановлена");
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(flushSize);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                Pending first = queue.take();
+                if (first == STOP) return;
+                batch.add(first);
+                // добираем пачку, пока не наберётся flushSize или не выйдет интервал
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < flushSize) {
+                    long left = deadline - System.nanoTime();
+                    Pending next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    if (next == STOP) {
+                        stopping = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void checkWriterAlive() {
+        if (!writer.isAlive()) {
+            throw new IllegalStateException("Поток записи ленты остановлен");
+        }
+    }
+
+    // Вставка, раскладка и удаление строк outbox — одна транзакция: повтор после отката не задваивает события
+    private void write(List<Pending> batch) {
+        List<Feed> events = batch.stream().map(Pending::event).toList();
+        List<Long> outboxIds = batch.stream().map(Pending::outboxId).toList();
+        boolean done = false;
+        try {
+            done = retry(() -> writeTransaction.execute(status -> {
+                feedStorage.insertEvents(new ArrayList<>(events)).forEach(timelineService::publish);
+                outboxStorage.delete(outboxIds);
+                return true;
+            }), batch.size()) != null;
+        } finally {
+            synchronized (progress) {
+                for (Feed event : events) {
+                    long userId = event.getUserId();
+                    UserProgress user = progressByUser.get(userId);
+                    user.processed++;
+                    forgetIfDone(userId, user);
+                }
+                if (!done) {
+                    log.error("Потеряны события ленты: {}", events);
+                }
+                progress.notifyAll();
+            }
+        }
+    }
+
+    private <T> T retry(Supplier<T> action, int batchSize) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (RuntimeException e) {
+                log.warn("Не удалось записать {} событий ленты, попытка {} из {}", batchSize, attempt, maxAttempts, e);
+                if (attempt >= maxAttempts) {
+                    return null;
+                }
+            }
+            try {
+                Thread.sleep(flushIntervalMs * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    private void forgetIfDone(long userId, UserProgress user) {
+        if (user.processed == user.submitted) {
+            progressByUser.remove(userId);
+        }
+    }
+
+    // Номера событий пользователя по порядку очереди: сколько поставлено, сколько обработано писателем
+    // (записано или потеряно)
+    private static final class UserProgress {
+        private long submitted;
+        private long processed;
+    }
+
+    private record Pending(Feed event, long outboxId) {
+    }
+}
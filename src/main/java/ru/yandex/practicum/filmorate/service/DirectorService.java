@@ -2,7 +2,10 @@ package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.cache.FilmCache;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
 
@@ -11,10 +14,19 @@ import java.util.List;
 @Service
 public class DirectorService {
     private final DirectorStorage directorStorage;
+    private final FilmCache filmCache;
+    private final FilmSearchIndex searchIndex;
+    private final FilmSuggestIndex suggestIndex;
 
     @Autowired
-    public DirectorService(DirectorStorage directorStorage) {
+    public DirectorService(DirectorStorage directorStorage,
+                           FilmCache filmCache,
+                           FilmSearchIndex searchIndex,
+                           FilmSuggestIndex suggestIndex) {
         this.directorStorage = directorStorage;
+        this.filmCache = filmCache;
+        this.searchIndex = searchIndex;
+        this.suggestIndex = suggestIndex;
     }
 
     public List<Director> getAllDirectors() {
@@ -30,16 +42,27 @@ public class DirectorService {
     }
 
     public Director createDirector(Director director) {
-        return directorStorage.createDirector(director);
+        Director created = directorStorage.createDirector(director);
+        searchIndex.onDirectorSaved(created);
+        suggestIndex.onDirectorSaved(created);
+        return created;
     }
 
     public Director updateDirector(Director director) {
         getDirectorById(director.getId());
-        return directorStorage.updateDirector(director);
+        Director updated = directorStorage.updateDirector(director);
+        // имя режиссёра входит в закешированные фильмы
+        filmCache.invalidateByDirector(director.getId());
+        searchIndex.onDirectorSaved(updated);
+        suggestIndex.onDirectorSaved(updated);
+        return updated;
     }
 
     public void deleteDirector(Long id) {
         getDirectorById(id);
         directorStorage.deleteDirector(id);
+        filmCache.invalidateByDirector(id);
+        searchIndex.onDirectorRemoved(id);
+        suggestIndex.onDirectorRemoved(id);
     }
 }
@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.OutboxEvent;
+
+import java.util.List;
+
+// Каждое событие outbox — запись в ленте пользователя; пишется первым, в транзакции диспетчера.
+// В асинхронном режиме события уходят писателю только после коммита, когда строки помечены feed_pending
+@Component
+@Order(1)
+@RequiredArgsConstructor
+public class FeedOutboxHandler implements OutboxHandler {
+    private final FeedService feedService;
+
+    @Override
+    public void handle(List<OutboxEvent> events) {
+        if (!feedService.isAsync()) {
+            feedService.record(events);
+        }
+    }
+
+    @Override
+    public void afterCommit(List<OutboxEvent> events) {
+        if (feedService.isAsync()) {
+            events.forEach(feedService::submit);
+        }
+    }
+}
@@ -4,55 +4,67 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Feed;
-import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.OutboxEvent;
 import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
-import java.util.stream.Collectors;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class FeedService {
     private final FeedStorage feedStorage;
     private final UserStorage userStorage;
+    private final TimelineService timelineService;
+    private final AsyncFeedWriter asyncWriter;
 
     public Collection<Feed> feeds(Long id) {
-        userStorage.findById(id)
-                .orElseThrow(() -> new NotFoundException("User " + id + " not found"));
-        return feedStorage.feeds(id).stream()
-                .sorted(Comparator
-                        .comparing(Feed::getTimestamp)
-                        .thenComparing(Feed::getEventId))
-                .collect(Collectors.toList());
+        checkUserExists(id);
+        asyncWriter.flush(id);
+        return feedStorage.feeds(id);
     }
 
-    public void addFriend(long userId, long friendToAddId) {
-        feedStorage.addFriend(userId, friendToAddId);
+    public List<Feed> feedsPage(Long id, Long beforeEventId, int limit) {
+        checkUserExists(id);
+        asyncWriter.flush(id);
+        return feedStorage.feedsPage(id, beforeEventId, limit);
     }
 
-    public void deleteFriend(long userId, long friendId) {
-        feedStorage.deleteFriend(userId, friendId);
+    public List<Feed> timeline(Long id, int limit) {
+        asyncWriter.flush(id);
+        return timelineService.getTimeline(id, limit);
     }
 
-    public void likeFromUser(long filmId, long userId) {
-        feedStorage.likeFromUser(filmId, userId);
+    public boolean isAsync() {
+        return asyncWriter.isEnabled();
     }
 
-    public void unlikeFromUser(long filmId, long userId) {
-        feedStorage.unlikeFromUser(filmId, userId);
+    // События из outbox пишутся пачкой сразу, в транзакции диспетчера
+    public void record(List<OutboxEvent> events) {
+        feedStorage.insertEvents(new ArrayList<>(events.stream().map(this::toFeed).toList()))
+                .forEach(timelineService::publish);
     }
 
-    public void deleteReview(long reviewId, Long userId) {
-        feedStorage.deleteReview(reviewId, userId);
+    // Асинхронный режим: писатель удалит строку outbox, когда запишет событие
+    public void submit(OutboxEvent event) {
+        asyncWriter.submit(toFeed(event), event.getId());
     }
 
-    public void addReview(Review review) {
-        feedStorage.addReview(review);
+    private void checkUserExists(Long id) {
+        if (!userStorage.existsById(id)) {
+            throw new NotFoundException("User " + id + " not found");
+        }
     }
 
-    public void updateReview(Review review) {
-        feedStorage.updateReview(review);
+    private Feed toFeed(OutboxEvent event) {
+        return Feed.builder()
+                .timestamp(event.getCreatedAt())
+                .userId((int) event.getUserId())
+                .eventType(event.getEventType())
+                .operation(event.getOperation())
+                .entityId((int) event.getEntityId())
+                .build();
     }
 }
@@ -1,22 +1,31 @@
 package ru.yandex.practicum.filmorate.service;
 
+import jakarta.validation.ValidationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.dao.DataAccessException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.cache.FilmCache;
+import ru.yandex.practicum.filmorate.cache.ReviewTopCache;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.index.PopularFilmsLeaderboard;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.User;
-import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
+import ru.yandex.practicum.filmorate.model.Suggestion;
+import ru.yandex.practicum.filmorate.storage.film.FilmFullTextSearch;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,9 +36,20 @@ public class FilmService {
     private final UserStorage userStorage;
     private final MpaStorage mpaStorage;
     private final GenreStorage genreStorage;
-    private final DirectorStorage directorStorage;
     private final DirectorService directorService;
-    private final FeedService feedService;
+    private final OutboxService outboxService;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final LikeMatrix likeMatrix;
+    private final RecommendationService recommendationService;
+    private final FilmCache filmCache;
+    private final ReviewTopCache reviewCache;
+    private final FilmSearchIndex searchIndex;
+    private final FilmFullTextSearch fullTextSearch;
+    private final FilmSuggestIndex suggestIndex;
+    private final boolean leaderboardEnabled;
+    private final boolean searchIndexEnabled;
+    private final boolean fullTextSearchEnabled;
+    private final boolean commonIndexEnabled;
 
     @Autowired
     public FilmService(
@@ -37,17 +57,39 @@ public class FilmService {
             @Qualifier("userDbStorage") UserStorage userStorage,
             @Qualifier("mpaDbStorage") MpaStorage mpaStorage,
             @Qualifier("genreDbStorage") GenreStorage genreStorage,
-            DirectorStorage directorStorage,
             DirectorService directorService,
-            FeedService feedService
+            OutboxService outboxService,
+            PopularFilmsLeaderboard leaderboard,
+            LikeMatrix likeMatrix,
+            RecommendationService recommendationService,
+            FilmCache filmCache,
+            ReviewTopCache reviewCache,
+            FilmSearchIndex searchIndex,
+            FilmFullTextSearch fullTextSearch,
+            FilmSuggestIndex suggestIndex,
+            @Value("${filmorate.popular.leaderboard.enabled:true}") boolean leaderboardEnabled,
+            @Value("${filmorate.search.index.enabled:true}") boolean searchIndexEnabled,
+            @Value("${filmorate.search.fulltext.enabled:false}") boolean fullTextSearchEnabled,
+            @Value("${filmorate.common.index.enabled:true}") boolean commonIndexEnabled
     ) {
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
         this.mpaStorage = mpaStorage;
         this.genreStorage = genreStorage;
-        this.directorStorage = directorStorage;
         this.directorService = directorService;
-        this.feedService = feedService;
+        this.outboxService = outboxService;
+        this.leaderboard = leaderboard;
+        this.likeMatrix = likeMatrix;
+        this.recommendationService = recommendationService;
+        this.filmCache = filmCache;
+        this.reviewCache = reviewCache;
+        this.searchIndex = searchIndex;
+        this.fullTextSearch = fullTextSearch;
+        this.suggestIndex = suggestIndex;
+        this.leaderboardEnabled = leaderboardEnabled;
+        this.searchIndexEnabled = searchIndexEnabled;
+        this.fullTextSearchEnabled = fullTextSearchEnabled;
+        this.commonIndexEnabled = commonIndexEnabled;
     }
 
     public Film create(Film film) {
@@ -76,12 +118,15 @@ public class FilmService {
         if (film.getDirectors() != null && !film.getDirectors().isEmpty()) {
             updateFilmDirectors(film);
         }
+        leaderboard.onFilmSaved(film);
+        searchIndex.onFilmSaved(film);
+        suggestIndex.onFilmSaved(film);
 
         return findById(saved.getId());
     }
 
     public Film update(Film film) {
-        getFilmOrThrow(film.getId());
+        checkFilmExists(film.getId());
         normalizeGenres(film);
         filmStorage.update(film);
         filmStorage.saveFilmGenres(film);
@@ -89,6 +134,10 @@ public class FilmService {
         if (film.getDirectors() != null && !film.getDirectors().isEmpty()) {
             updateFilmDirectors(film);
         }
+        filmCache.invalidate(film.getId());
+        leaderboard.onFilmSaved(film);
+        searchIndex.onFilmSaved(film);
+        suggestIndex.onFilmSaved(film);
         return findById(film.getId());
     }
 
@@ -100,149 +149,167 @@ public class FilmService {
         }
     }
 
+    // Жанры, MPA и режиссёры для всех списков подгружает FilmDbStorage пачкой
     public Collection<Film> findAll() {
-        List<Film> films = filmStorage.findAll();
-
-        if (films.isEmpty()) {
-            return films;
-        }
-
-        // Собираем ID всех фильмов
-        Set<Long> filmIds = films.stream()
-                .map(Film::getId)
-                .collect(Collectors.toSet());
-
-        // Достаём всех режиссёров одним запросом
-        Map<Long, List<Director>> directorsByFilm = directorStorage.getDirectorsByFilmIds(filmIds);
+        return filmStorage.findAll();
+    }
 
-        // Расставляем режиссёров фильмам
-        for (Film film : films) {
-            film.setDirectors(directorsByFilm.getOrDefault(film.getId(), new ArrayList<>()));
-        }
+    public List<Film> findPage(Long afterId, int limit) {
+        return filmStorage.findPage(afterId, limit);
+    }
 
-        return films;
+    public void exportAll(Consumer<Film> consumer) {
+        filmStorage.streamAll(consumer);
     }
 
     public Film findById(Long filmId) {
-        Film film = getFilmOrThrow(filmId);
-        film.setDirectors(directorStorage.getFilmDirectors(filmId.intValue()));
+        Film film = filmCache.get(filmId, id -> filmStorage.findById(id).orElse(null));
+        if (film == null) {
+            throw new NotFoundException("Film " + filmId + " not found");
+        }
         return film;
     }
 
+    // Лайк и событие outbox фиксируются вместе; рейтинг, рекомендации и лента обновляются диспетчером.
+    // Повторный лайк и отмена отсутствующего ничего не меняют — события для них нет
+    @Transactional
     public void putLike(Long filmId, Long userId) {
-        getUserOrThrow(userId);
-        getFilmOrThrow(filmId);
-        try {
-            filmStorage.addLike(filmId, userId);
-        } catch (DataAccessException ignored) {
+        checkUserExists(userId);
+        checkFilmExists(filmId);
+        if (filmStorage.addLike(filmId, userId)) {
+            outboxService.record("LIKE", "ADD", userId, filmId);
         }
-        feedService.likeFromUser(filmId, userId);
     }
 
+    @Transactional
     public void deleteLike(Long filmId, Long userId) {
-        getUserOrThrow(userId);
-        getFilmOrThrow(filmId);
-        filmStorage.removeLike(filmId, userId);
-        feedService.unlikeFromUser(filmId, userId);
+        checkUserExists(userId);
+        checkFilmExists(filmId);
+        if (filmStorage.removeLike(filmId, userId)) {
+            outboxService.record("LIKE", "REMOVE", userId, filmId);
+        }
     }
 
     public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
         if (count <= 0) return Collections.emptyList();
 
-        List<Film> films = filmStorage.getPopularFilms(count, genreId, year);
-
-        if (films.isEmpty()) {
-            return films;
-        }
-
-        // Получаем ID всех фильмов
-        Set<Long> filmIds = films.stream()
-                .map(Film::getId)
-                .collect(Collectors.toSet());
-
-        // Загружаем всех режиссёров одним запросом
-        Map<Long, List<Director>> directorsByFilm = directorStorage.getDirectorsByFilmIds(filmIds);
-
-        // Расставляем режиссёров по фильмам
-        for (Film film : films) {
-            film.setDirectors(directorsByFilm.getOrDefault(film.getId(), new ArrayList<>()));
+        if (leaderboardEnabled) {
+            return findFilmsInOrder(leaderboard.getTopIds(count, genreId, year));
         }
-
-        return films;
+        return filmStorage.getPopularFilms(count, genreId, year);
     }
 
     public List<Film> getFilmsByDirectorSorted(Long directorId, String sortBy) {
         // 404 если нет
         directorService.getDirectorById(directorId);
 
-        List<Film> films;
         if (sortBy.equals("year")) {
-            films = filmStorage.getFilmsByDirectorSortedByYear(directorId);
+            return filmStorage.getFilmsByDirectorSortedByYear(directorId);
         } else if (sortBy.equals("likes")) {
-            films = filmStorage.getFilmsByDirectorSortedByLikes(directorId);
+            return filmStorage.getFilmsByDirectorSortedByLikes(directorId);
         } else {
             throw new IllegalArgumentException("Недопустимый параметр сортировки: " + sortBy);
         }
-
-        for (Film film : films) {
-            film.setDirectors(directorStorage.getFilmDirectors(film.getId().intValue()));
-        }
-        return films;
     }
 
     public int removeById(Long filmId) {
-        return filmStorage.removeById(filmId);
+        int removed = filmStorage.removeById(filmId);
+        filmCache.invalidate(filmId);
+        if (removed > 0) {
+            leaderboard.onFilmRemoved(filmId);
+            likeMatrix.onFilmRemoved(filmId);
+            searchIndex.onFilmRemoved(filmId);
+            suggestIndex.onFilmRemoved(filmId);
+            // отзывы фильма удалены каскадом
+            reviewCache.invalidateFilm(filmId);
+        }
+        return removed;
     }
 
     public List<Film> getCommonFilms(Long userId, Long friendId) {
-        getUserOrThrow(userId);
-        getUserOrThrow(friendId);
+        checkUsersExist(userId, friendId);
 
-        List<Film> films = filmStorage.findCommonFilms(userId, friendId);
+        if (commonIndexEnabled) {
+            // как и в SQL-варианте, общих фильмов с самим собой нет
+            if (userId.equals(friendId)) {
+                return new ArrayList<>();
+            }
+            return findFilmsInOrder(likeMatrix.commonFilms(userId, friendId));
+        }
+        return filmStorage.findCommonFilms(userId, friendId);
+    }
 
-        if (films.isEmpty()) {
-            return films;
+    // Поиск по подстроке: триграммный индекс в памяти или LIKE-запросы к БД
+    public List<Film> searchFilms(String query, String by) {
+        if (searchIndexEnabled) {
+            return findFilmsInOrder(searchIndex.search(query, searchesTitle(by), !by.equals("title")));
         }
+        return switch (by) {
+            case "title" -> filmStorage.searchByTitle(query);
+            case "director" -> filmStorage.searchByDirector(query);
+            case "title,director", "director,title" -> filmStorage.searchByTitleAndDirector(query);
+            default -> throw new IllegalArgumentException(
+                    "Parameter 'by' must be 'title', 'director', or both separated by comma."
+            );
+        };
+    }
 
-        // Достаём все ID фильмов
-        Set<Long> filmIds = films.stream()
-                .map(Film::getId)
-                .collect(Collectors.toSet());
+    // Поиск целых слов по полнотекстовому индексу H2 с ранжированием по релевантности
+    public List<Film> searchFilmsByWords(String query, String by) {
+        if (!fullTextSearchEnabled) {
+            throw new ValidationException("Search by words is not enabled");
+        }
+        return findFilmsInOrder(fullTextSearch.search(query, searchesTitle(by), !by.equals("title")));
+    }
 
-        // Получаем всех режиссёров одним запросом
-        Map<Long, List<Director>> directorsByFilm = directorStorage.getDirectorsByFilmIds(filmIds);
+    public List<Suggestion> suggest(String prefix, int limit) {
+        return suggestIndex.suggest(prefix, limit);
+    }
 
-        // Расставляем режиссёров
-        for (Film film : films) {
-            film.setDirectors(directorsByFilm.getOrDefault(film.getId(), new ArrayList<>()));
+    private List<Film> findFilmsInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Film> byId = filmStorage.findFilmsByIds(new LinkedHashSet<>(ids)).stream()
+                .collect(Collectors.toMap(Film::getId, f -> f));
+        List<Film> films = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Film film = byId.get(id);
+            if (film != null) {
+                films.add(film);
+            }
         }
-
         return films;
     }
 
-    public List<Film> searchFilms(String query, String by) {
-        List<Film> films = switch (by) {
-            case "title" -> filmStorage.searchByTitle(query);
-            case "director" -> filmStorage.searchByDirector(query);
-            case "title,director", "director,title" -> filmStorage.searchByTitleAndDirector(query);
+    private boolean searchesTitle(String by) {
+        return switch (by) {
+            case "title", "title,director", "director,title" -> true;
+            case "director" -> false;
             default -> throw new IllegalArgumentException(
                     "Parameter 'by' must be 'title', 'director', or both separated by comma."
             );
         };
-        for (Film film : films) {
-            film.setDirectors(directorStorage.getFilmDirectors(film.getId().intValue()));
+    }
+
+    // Для проверок достаточно индексного SELECT EXISTS — фильм с жанрами и режиссёрами не собираем
+    private void checkFilmExists(long id) {
+        if (!filmStorage.existsById(id)) {
+            throw new NotFoundException("Film " + id + " not found");
         }
-        return films;
     }
 
-    private Film getFilmOrThrow(long id) {
-        return filmStorage.findById(id)
-                .orElseThrow(() -> new NotFoundException("Film " + id + " not found"));
+    private void checkUserExists(long id) {
+        if (!userStorage.existsById(id)) {
+            throw new NotFoundException("User " + id + " not found");
+        }
     }
 
-    private User getUserOrThrow(long id) {
-        return userStorage.findById(id)
-                .orElseThrow(() -> new NotFoundException("User " + id + " not found"));
+    // Оба пользователя — одним запросом IN (...); кого нет, уточняем только при ошибке
+    private void checkUsersExist(long userId, long otherId) {
+        if (userStorage.existAll(List.of(userId, otherId))) return;
+        checkUserExists(userId);
+        checkUserExists(otherId);
     }
 
     private void normalizeGenres(Film film) {
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.model.OutboxEvent;
+
+import java.util.List;
+
+// Подписка подгружает историю автора в ленту активности и добавляет ребро в граф дружбы, отписка — убирает их.
+// Лента активности — в транзакции диспетчера, граф в памяти и сброс подсказок друзей — после её коммита
+@Component
+@Order(3)
+@RequiredArgsConstructor
+public class FriendOutboxHandler implements OutboxHandler {
+    private final TimelineService timelineService;
+    private final FriendGraph friendGraph;
+    private final FriendSuggestionService suggestionService;
+
+    @Override
+    public void handle(List<OutboxEvent> events) {
+        for (OutboxEvent event : events) {
+            if (!"FRIEND".equals(event.getEventType())) continue;
+            if ("ADD".equals(event.getOperation())) {
+                timelineService.onFollow(event.getUserId(), event.getEntityId());
+            } else {
+                timelineService.onUnfollow(event.getUserId(), event.getEntityId());
+            }
+        }
+    }
+
+    @Override
+    public void afterCommit(List<OutboxEvent> events) {
+        for (OutboxEvent event : events) {
+            if (!"FRIEND".equals(event.getEventType())) continue;
+            if ("ADD".equals(event.getOperation())) {
+                friendGraph.onFriendAdded(event.getUserId(), event.getEntityId());
+            } else {
+                friendGraph.onFriendRemoved(event.getUserId(), event.getEntityId());
+            }
+            suggestionService.onFriendshipChanged(event.getUserId());
+        }
+    }
+}
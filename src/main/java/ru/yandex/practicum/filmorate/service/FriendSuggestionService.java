@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.cache.CacheStatsProvider;
+import ru.yandex.practicum.filmorate.cache.LruCache;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+ * Подсказки друзей для GET /users/{id}/friends/suggestions: друзья друзей, которых пользователь
+ * ещё не добавил, по убыванию числа общих друзей (при равенстве — по id).
+ * Обход в ширину на два уровня по CSR-снимку графа дружбы. Чтобы пользователь с тысячами
+ * друзей не давал всплесков задержки, обход ограничен числом просмотренных рёбер и бюджетом
+ * времени: при исчерпании возвращается ранжирование по уже просмотренной части (truncated).
+ * Лучшие K отбираются кучей размера K.
+ * Снимок графа пересобирается в фоне, поэтому после изменения дружбы он может отставать:
+ * тех, кто уже стал другом, отбрасываем по живому графу, а ранжирование по отставшему снимку
+ * не кешируем. В кеш попадает только полное ранжирование по актуальному снимку; изменение дружбы
+ * сбрасывает его только у затронутых пользователей (см. FriendGraph.affectedUsers).
+ */
+@Slf4j
+@Service
+public class FriendSuggestionService implements CacheStatsProvider {
+    public static final int MAX_LIMIT = 100;
+
+    private static final Comparator<Candidate> BY_RANK = Comparator
+            .comparingInt(Candidate::mutualFriends).reversed()
+            .thenComparingInt(Candidate::userId);
+    // проверяем часы не на каждом ребре
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
+
+    private final FriendGraph friendGraph;
+    private final UserStorage userStorage;
+    private final long timeBudgetNanos;
+    private final int maxVisits;
+    private final LruCache<Long, Ranking> cache;
+
+    public FriendSuggestionService(FriendGraph friendGraph,
+                                   @Qualifier("userDbStorage") UserStorage userStorage,
+                                   @Value("${filmorate.friends.suggestions.time-budget-ms:50}") long timeBudgetMs,
+                                   @Value("${filmorate.friends.suggestions.max-visits:200000}") int maxVisits,
+                                   @Value("${filmorate.friends.suggestions.cache-size:10000}") int cacheSize) {
+        this.friendGraph = friendGraph;
+        this.userStorage = userStorage;
+        this.timeBudgetNanos = timeBudgetMs * 1_000_000;
+        this.maxVisits = maxVisits;
+        this.cache = new LruCache<>("friend-suggestions", cacheSize);
+    }
+
+    public Suggestions suggest(long userId, int limit) {
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException("User " + userId + " not found");
+        }
+        FriendGraph.Csr graph = friendGraph.snapshot();
+        long epoch = friendGraph.epoch();
+        Ranking cached = cache.peek(userId);
+        if (cached != null && cached.epoch() != epoch) {
+            cache.invalidate(userId);
+        }
+        // кеш считается на MAX_LIMIT кандидатов, поэтому подходит для любого limit
+        Ranking[] uncached = new Ranking[1];
+        Ranking ranking = cache.get(userId, id -> {
+            Ranking computed = rank(graph, id, MAX_LIMIT, epoch);
+            // обрезка зависит от нагрузки, а отставший снимок — от момента запроса: такое не кешируем
+            if (computed.truncated() || graph.version() != friendGraph.version() || epoch != friendGraph.epoch()) {
+                uncached[0] = computed;
+                return null;
+            }
+            return computed;
+        });
+        if (ranking == null) {
+            ranking = uncached[0];
+        }
+
+        List<Candidate> top = ranking.candidates().stream()
+                .filter(candidate -> !friendGraph.isFriend(userId, candidate.userId()))
+                .limit(limit)
+                .toList();
+        Map<Long, User> users = userStorage.findByIds(top.stream().map(c -> (long) c.userId()).toList()).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        List<FriendSuggestion> result = new ArrayList<>(top.size());
+        for (Candidate candidate : top) {
+            User user = users.get((long) candidate.userId());
+            if (user != null) {
+                result.add(new FriendSuggestion(user, candidate.mutualFriends()));
+            }
+        }
+        return new Suggestions(result, ranking.truncated());
+    }
+
+    // Вызывается после того, как изменение попало в FriendGraph
+    public void onFriendshipChanged(long userId) {
+        friendGraph.affectedUsers(userId).forEach(cache::invalidate);
+    }
+
+    // Пользователь мог быть кандидатом у кого угодно на расстоянии двух рёбер — сбрасываем всё
+    public void onUserRemoved() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public List<LruCache.Stats> cacheStats() {
+        return List.of(cache.stats());
+    }
+
+    Ranking rank(FriendGraph.Csr graph, long userId, int limit, long epoch) {
+        int row = graph.row(userId);
+        if (row < 0) {
+            return new Ranking(epoch, List.of(), false);
+        }
+        int self = Math.toIntExact(userId);
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        Map<Integer, int[]> mutual = new HashMap<>();
+        int visits = 0;
+        boolean truncated = false;
+
+        // уровень 1 — друзья, уровень 2 — их друзья; сам пользователь и его друзья не предлагаются
+        scan:
+        for (int i = 0; i < graph.degree(row); i++) {
+            int friendRow = graph.row(graph.friend(row, i));
+            if (friendRow < 0) continue;
+            for (int j = 0; j < graph.degree(friendRow); j++) {
+                if (++visits > maxVisits
+                        || (visits % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() > deadline)) {
+                    truncated = true;
+                    break scan;
+                }
+                int candidate = graph.friend(friendRow, j);
+                if (candidate != self && !graph.isFriend(row, candidate)) {
+                    mutual.computeIfAbsent(candidate, k -> new int[1])[0]++;
+                }
+            }
+        }
+        if (truncated) {
+            log.debug("Подсказки друзей для пользователя {} посчитаны не полностью: {} рёбер", userId, visits);
+        }
+
+        // худший из лучших K — на вершине кучи
+        PriorityQueue<Candidate> top = new PriorityQueue<>(limit + 1, BY_RANK.reversed());
+        for (Map.Entry<Integer, int[]> entry : mutual.entrySet()) {
+            top.add(new Candidate(entry.getKey(), entry.getValue()[0]));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<Candidate> ranked = new ArrayList<>(top);
+        ranked.sort(BY_RANK);
+        return new Ranking(epoch, List.copyOf(ranked), truncated);
+    }
+
+    record Candidate(int userId, int mutualFriends) {
+    }
+
+    record Ranking(long epoch, List<Candidate> candidates, boolean truncated) {
+    }
+
+    public record Suggestions(List<FriendSuggestion> items, boolean truncated) {
+    }
+}
@@ -0,0 +1,151 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeOperationResult;
+import ru.yandex.practicum.filmorate.model.OutboxEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/*
+ * Пакетный импорт лайков для POST /films/likes:batch. Операции читаются порциями по chunk-size,
+ * каждая порция — одна транзакция: существование фильмов и пользователей проверяется двумя
+ * запросами IN (...), лайки пишутся batch-запросами, события ленты уходят в outbox одной пачкой.
+ * Элементы с несуществующим фильмом или пользователем пропускаются, остальные применяются;
+ * итог возвращается по каждому элементу в исходном порядке — целиком или порциями по мере коммита,
+ * чтобы NDJSON-импорт не копил ответ в памяти. Событие пишется только для
+ * элементов, изменивших данные, — так же, как при одиночном PUT/DELETE /films/{id}/like/{userId}.
+ */
+@Slf4j
+@Service
+public class LikeBatchService {
+    static final String ADD = "ADD";
+    static final String REMOVE = "REMOVE";
+
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final OutboxService outboxService;
+    private final TransactionTemplate chunkTransaction;
+    private final int chunkSize;
+
+    public LikeBatchService(@Qualifier("filmDbStorage") FilmStorage filmStorage,
+                            @Qualifier("userDbStorage") UserStorage userStorage,
+                            OutboxService outboxService,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${filmorate.likes.batch.chunk-size:1000}") int chunkSize) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.outboxService = outboxService;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    public List<LikeOperationResult> apply(Iterator<LikeOperation> operations) {
+        List<LikeOperationResult> results = new ArrayList<>();
+        apply(operations, results::addAll);
+        return results;
+    }
+
+    // Итог каждой порции отдаётся в onChunk сразу после её коммита; возвращает число операций
+    public int apply(Iterator<LikeOperation> operations, Consumer<List<LikeOperationResult>> onChunk) {
+        int processed = 0;
+        List<LikeOperation> chunk = new ArrayList<>(chunkSize);
+        while (operations.hasNext()) {
+            chunk.add(operations.next());
+            if (chunk.size() == chunkSize) {
+                onChunk.accept(applyChunk(chunk));
+                processed += chunk.size();
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            onChunk.accept(applyChunk(chunk));
+            processed += chunk.size();
+        }
+        log.info("Пакетный импорт лайков: обработано {} операций", processed);
+        return processed;
+    }
+
+    private List<LikeOperationResult> applyChunk(List<LikeOperation> chunk) {
+        return chunkTransaction.execute(status -> {
+            Set<Long> filmIds = new HashSet<>();
+            Set<Long> userIds = new HashSet<>();
+            for (LikeOperation operation : chunk) {
+                if (isValid(operation)) {
+                    filmIds.add(operation.getFilmId());
+                    userIds.add(operation.getUserId());
+                }
+            }
+            Set<Long> existingFilms = filmStorage.findExistingIds(filmIds);
+            Set<Long> existingUsers = userStorage.findExistingIds(userIds);
+
+            List<LikeOperationResult> results = new ArrayList<>(chunk.size());
+            List<LikeOperation> applicable = new ArrayList<>();
+            List<LikeOperationResult> applicableResults = new ArrayList<>();
+            for (LikeOperation operation : chunk) {
+                if (!isValid(operation)) {
+                    results.add(operation == null
+                            ? new LikeOperationResult(null, null, null, "INVALID")
+                            : new LikeOperationResult(operation.getFilmId(), operation.getUserId(),
+                            operation.getOp(), "INVALID"));
+                    continue;
+                }
+                LikeOperationResult result = new LikeOperationResult(
+                        operation.getFilmId(), operation.getUserId(), operation.getOp(), null);
+                if (!existingUsers.contains(operation.getUserId())) {
+                    result.setStatus("USER_NOT_FOUND");
+                } else if (!existingFilms.contains(operation.getFilmId())) {
+                    result.setStatus("FILM_NOT_FOUND");
+                } else {
+                    applicable.add(operation);
+                    applicableResults.add(result);
+                }
+                results.add(result);
+            }
+            if (applicable.isEmpty()) {
+                return results;
+            }
+
+            boolean[] changed = filmStorage.applyLikes(applicable);
+            long now = System.currentTimeMillis();
+            List<OutboxEvent> events = new ArrayList<>(applicable.size());
+            for (int i = 0; i < applicable.size(); i++) {
+                LikeOperation operation = applicable.get(i);
+                boolean add = ADD.equals(operation.getOp());
+                if (!changed[i]) {
+                    applicableResults.get(i).setStatus("UNCHANGED");
+                    continue;
+                }
+                applicableResults.get(i).setStatus(add ? "ADDED" : "REMOVED");
+                events.add(OutboxEvent.builder()
+                        .eventType("LIKE")
+                        .operation(operation.getOp())
+                        .userId(operation.getUserId())
+                        .entityId(operation.getFilmId())
+                        .createdAt(now)
+                        .build());
+            }
+            outboxService.recordAll(events);
+            return results;
+        });
+    }
+
+    private boolean isValid(LikeOperation operation) {
+        return operation != null
+                && operation.getFilmId() != null
+                && operation.getUserId() != null
+                && (ADD.equals(operation.getOp()) || REMOVE.equals(operation.getOp()));
+    }
+}
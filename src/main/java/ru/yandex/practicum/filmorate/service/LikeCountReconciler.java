@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.index.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+/*
+ * Периодически сверяет films.like_count с таблицей film_likes
+ * и исправляет расхождения (например, после каскадного удаления пользователя).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikeCountReconciler {
+    private final FilmStorage filmStorage;
+    private final PopularFilmsLeaderboard leaderboard;
+
+    @Scheduled(fixedDelayString = "${filmorate.likes.reconcile-interval-ms:600000}")
+    public void reconcile() {
+        int fixed = filmStorage.reconcileLikeCounts();
+        if (fixed > 0) {
+            log.warn("Исправлен счётчик лайков у {} фильмов", fixed);
+            leaderboard.invalidate();
+        }
+    }
+}
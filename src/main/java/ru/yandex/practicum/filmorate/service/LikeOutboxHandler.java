@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.index.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.model.OutboxEvent;
+
+import java.util.List;
+
+// Лайки, реально изменившие данные, обновляют рейтинг популярных, матрицу лайков и рекомендации.
+// Счётчики рейтинга не идемпотентны, поэтому меняются только после коммита пачки
+@Component
+@Order(2)
+@RequiredArgsConstructor
+public class LikeOutboxHandler implements OutboxHandler {
+    private final PopularFilmsLeaderboard leaderboard;
+    private final LikeMatrix likeMatrix;
+    private final RecommendationService recommendationService;
+
+    @Override
+    public void afterCommit(List<OutboxEvent> events) {
+        for (OutboxEvent event : events) {
+            if (!"LIKE".equals(event.getEventType())) continue;
+            long filmId = event.getEntityId();
+            long userId = event.getUserId();
+            if ("ADD".equals(event.getOperation())) {
+                leaderboard.onLikeAdded(filmId);
+                likeMatrix.onLikeAdded(filmId, userId);
+            } else {
+                leaderboard.onLikeRemoved(filmId);
+                likeMatrix.onLikeRemoved(filmId, userId);
+            }
+            recommendationService.onLikeChanged(filmId, userId);
+        }
+    }
+}
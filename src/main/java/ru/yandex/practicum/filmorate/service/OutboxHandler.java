@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.model.OutboxEvent;
+
+import java.util.List;
+
+// Получатель пачки событий из outbox; пачка в порядке записи, события других типов пропускаются
+public interface OutboxHandler {
+
+    // Запись в БД в транзакции диспетчера: откатывается вместе с удалением пачки и при повторе не задваивается
+    default void handle(List<OutboxEvent> events) {
+    }
+
+    // Изменения в памяти (рейтинги, индексы) — ровно один раз, после коммита транзакции диспетчера
+    default void afterCommit(List<OutboxEvent> events) {
+    }
+}
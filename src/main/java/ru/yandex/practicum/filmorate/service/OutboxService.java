@@ -0,0 +1,230 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.OutboxEvent;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxDispatchLock;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxStorage;
+
+import java.util.List;
+
+/*
+ * Transactional outbox. Сервис пишет событие в таблицу outbox в той же транзакции, что и лайк,
+ * дружбу или отзыв: откат изменения откатывает и событие, событие без изменения не появится.
+ * Диспетчер забирает пачку самых старых событий и в отдельной транзакции делает только работу с БД:
+ * обработчики пишут ленту и ленты друзей, пачка удаляется из outbox (в асинхронном режиме ленты —
+ * помечается feed_pending, и строки удаляет писатель вместе с записанными событиями). Изменения в памяти
+ * (рейтинг, матрица лайков, рекомендации, граф дружбы) обработчики применяют после коммита — откат
+ * и повтор пачки их не задваивают. Разносит события периодический опрос, запрос платит только
+ * за INSERT в outbox. При dispatch-on-commit поток запроса после коммита сам разносит события
+ * своей транзакции, и следующий GET видит результат, — но только если они стоят в голове очереди
+ * и диспетчер свободен: чужие события и занятую блокировку он оставляет опросу и не ждёт.
+ * Если пачка не разносится, события разносятся по одному до первой ошибки; событие, которое
+ * не разнеслось max-attempts раз, откладывается (parked) и больше не держит очередь.
+ * Строки feed_pending, оставшиеся от прошлого запуска (остановка или потерянная пачка писателя),
+ * первый разнос после старта дописывает в ленту: остальные их эффекты уже пересобраны из БД.
+ * Диспетчер в приложении один: пачки разносятся строго по очереди под OutboxDispatchLock.
+ */
+@Slf4j
+@Service
+public class OutboxService {
+    private final OutboxStorage outboxStorage;
+    private final List<OutboxHandler> handlers;
+    private final FeedService feedService;
+    private final TransactionTemplate dispatchTransaction;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final boolean dispatchOnCommit;
+    private final OutboxDispatchLock dispatchLock;
+    private boolean feedRecovered = false;
+
+    public OutboxService(OutboxStorage outboxStorage,
+                         List<OutboxHandler> handlers,
+                         FeedService feedService,
+                         OutboxDispatchLock dispatchLock,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${filmorate.outbox.batch-size:500}") int batchSize,
+                         @Value("${filmorate.outbox.max-attempts:5}") int maxAttempts,
+                         @Value("${filmorate.outbox.dispatch-on-commit:false}") boolean dispatchOnCommit) {
+        this.outboxStorage = outboxStorage;
+        this.handlers = handlers;
+        this.feedService = feedService;
+        this.dispatchLock = dispatchLock;
+        this.dispatchTransaction = new TransactionTemplate(transactionManager);
+        // после коммита исходной транзакции её соединение ещё привязано к потоку — нужна новая
+        this.dispatchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.dispatchOnCommit = dispatchOnCommit;
+    }
+
+    // Вызывается внутри транзакции, меняющей данные
+    public void record(String eventType, String operation, long userId, long entityId) {
+        recordAll(List.of(OutboxEvent.builder()
+                .eventType(eventType)
+                .operation(operation)
+                .userId(userId)
+                .entityId(entityId)
+                .createdAt(System.currentTimeMillis())
+                .build()));
+    }
+
+    // Пачка событий одним batch-запросом
+    public void recordAll(List<OutboxEvent> events) {
+        if (events.isEmpty()) return;
+        outboxStorage.addAll(events);
+        if (!dispatchOnCommit) return;
+        List<Long> ids = events.stream().map(OutboxEvent::getId).toList();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatchRecorded(ids);
+                }
+            });
+        } else {
+            dispatchRecorded(ids);
+        }
+    }
+
+    // События одной транзакции, если они в голове очереди: порядок с более старыми событиями сохраняется
+    private void dispatchRecorded(List<Long> ids) {
+        if (!dispatchLock.tryLock()) return;
+        try {
+            // строки прошлого запуска дописывает опрос
+            if (!feedRecovered) return;
+            List<OutboxEvent> batch = dispatchTransaction.execute(status -> {
+                List<OutboxEvent> head = outboxStorage.findBatch(ids.size());
+                if (!head.stream().map(OutboxEvent::getId).toList().equals(ids)) {
+                    return null;
+                }
+                process(head);
+                return head;
+            });
+            if (batch != null) {
+                applyCommitted(batch);
+            }
+        } catch (RuntimeException e) {
+            // повтор и откладывание сбойных событий — забота опроса
+            log.warn("Не удалось разнести события outbox после коммита, их разнесёт опрос", e);
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.outbox.poll-interval-ms:1000}")
+    public void dispatchPending() {
+        int dispatched;
+        do {
+            dispatched = dispatchBatch();
+        } while (dispatched == batchSize);
+    }
+
+    // Разносит одну пачку и возвращает, сколько событий ушло из головы очереди (разнесены или отложены)
+    public int dispatchBatch() {
+        dispatchLock.lock();
+        try {
+            try {
+                recoverPendingFeed();
+            } catch (RuntimeException e) {
+                log.error("Не удалось дописать в ленту события outbox прошлого запуска", e);
+                return 0;
+            }
+            List<OutboxEvent> batch;
+            try {
+                batch = dispatchTransaction.execute(status -> {
+                    List<OutboxEvent> found = outboxStorage.findBatch(batchSize);
+                    process(found);
+                    return found;
+                });
+            } catch (RuntimeException e) {
+                log.warn("Не удалось разнести пачку событий outbox, разносим по одному", e);
+                return dispatchOneByOne();
+            }
+            if (batch == null) return 0;
+            applyCommitted(batch);
+            return batch.size();
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    // Порядок сохраняется: на первом неразнесённом событии останавливаемся, дальше идём, только если оно отложено
+    private int dispatchOneByOne() {
+        int done = 0;
+        try {
+            for (OutboxEvent event : outboxStorage.findBatch(batchSize)) {
+                if (!dispatchOne(event)) break;
+                done++;
+            }
+        } catch (RuntimeException e) {
+            log.error("Не удалось разнести события outbox по одному", e);
+        }
+        return done;
+    }
+
+    // true — событие ушло из очереди: разнесено или отложено
+    private boolean dispatchOne(OutboxEvent event) {
+        try {
+            dispatchTransaction.executeWithoutResult(status -> process(List.of(event)));
+        } catch (RuntimeException e) {
+            if (!outboxStorage.recordFailure(event.getId(), maxAttempts)) {
+                log.error("Не удалось разнести событие outbox {}", event, e);
+                return false;
+            }
+            log.error("Событие outbox отложено после {} попыток: {}", maxAttempts, event, e);
+            return true;
+        }
+        applyCommitted(List.of(event));
+        return true;
+    }
+
+    // До первого разноса в этом запуске feed_pending означает только строки прошлого запуска
+    private void recoverPendingFeed() {
+        if (feedRecovered) return;
+        List<OutboxEvent> pending = outboxStorage.findFeedPending();
+        if (!pending.isEmpty()) {
+            log.warn("Дописываем в ленту {} событий outbox прошлого запуска", pending.size());
+            if (feedService.isAsync()) {
+                pending.forEach(feedService::submit);
+            } else {
+                dispatchTransaction.executeWithoutResult(status -> {
+                    feedService.record(pending);
+                    outboxStorage.delete(pending.stream().map(OutboxEvent::getId).toList());
+                });
+            }
+        }
+        feedRecovered = true;
+    }
+
+    private void process(List<OutboxEvent> events) {
+        if (events.isEmpty()) return;
+        handlers.forEach(handler -> handler.handle(events));
+        List<Long> ids = events.stream().map(OutboxEvent::getId).toList();
+        if (feedService.isAsync()) {
+            outboxStorage.markFeedPending(ids);
+        } else {
+            outboxStorage.delete(ids);
+        }
+    }
+
+    // Пачка уже закоммичена: сбой одного обработчика не мешает остальным и не возвращает пачку в очередь
+    private void applyCommitted(List<OutboxEvent> events) {
+        if (events.isEmpty()) return;
+        for (OutboxHandler handler : handlers) {
+            try {
+                handler.afterCommit(events);
+            } catch (RuntimeException e) {
+                log.error("Обработчик {} не применил {} событий outbox", handler.getClass().getSimpleName(),
+                        events.size(), e);
+            }
+        }
+    }
+}
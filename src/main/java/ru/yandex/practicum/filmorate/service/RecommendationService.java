@@ -1,66 +1,137 @@
 package ru.yandex.practicum.filmorate.service;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.cache.RecommendationSnapshotStore;
+import ru.yandex.practicum.filmorate.cache.RecommendationSnapshotStore.Snapshot;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.index.Similarity;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class RecommendationService {
     private final UserStorage userStorage;
     private final FilmStorage filmStorage;
+    private final LikeMatrix likeMatrix;
+    private final RecommendationSnapshotStore snapshots;
+    private final Similarity similarity;
+    private final int neighbours;
+    private final boolean serveStale;
+    private final Duration snapshotTtl;
+    private final int idleTtls;
 
-    public RecommendationService(UserStorage userStorage, FilmStorage filmStorage) {
+    public RecommendationService(UserStorage userStorage,
+                                 FilmStorage filmStorage,
+                                 LikeMatrix likeMatrix,
+                                 RecommendationSnapshotStore snapshots,
+                                 @Value("${filmorate.recommendations.similarity:overlap}") String similarity,
+                                 @Value("${filmorate.recommendations.neighbours:1}") int neighbours,
+                                 @Value("${filmorate.recommendations.snapshots.serve-stale:false}") boolean serveStale,
+                                 @Value("${filmorate.recommendations.snapshots.ttl-ms:600000}") long snapshotTtlMs,
+                                 @Value("${filmorate.recommendations.snapshots.idle-ttls:3}") int idleTtls) {
         this.userStorage = userStorage;
         this.filmStorage = filmStorage;
+        this.likeMatrix = likeMatrix;
+        this.snapshots = snapshots;
+        this.similarity = Similarity.valueOf(similarity.trim().toUpperCase());
+        this.neighbours = neighbours;
+        this.serveStale = serveStale;
+        this.snapshotTtl = Duration.ofMillis(snapshotTtlMs);
+        this.idleTtls = idleTtls;
     }
 
     public List<Film> getRecommendations(Long userId) {
-        // 1. Проверяем, что пользователь существует
-        userStorage.findById(userId)
-                .orElseThrow(() -> new NotFoundException("User " + userId + " not found"));
+        return getRecommendationSnapshot(userId).films();
+    }
 
-        // 2. Забираем все лайки всех пользователей одним запросом
-        Map<Long, Set<Long>> userLikesMap = userStorage.getAllUserLikedFilms();
+    public Recommendations getRecommendationSnapshot(Long userId) {
+        // 1. Проверяем, что пользователь существует
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException("User " + userId + " not found");
+        }
 
-        // 3. Лайки текущего пользователя
-        Set<Long> userLikes = userLikesMap.getOrDefault(userId, Collections.emptySet());
+        // 2. Берём готовый снимок; холодного пользователя (и «грязного», если устаревшие данные не разрешены)
+        //    считаем сразу
+        Snapshot snapshot = snapshots.get(userId);
+        if (snapshot == null || (!serveStale && snapshots.isDirty(userId))) {
+            snapshot = recompute(userId);
+        }
 
-        Long similarUserId = null;
-        int maxCommon = 0;
+        // 3. Загружаем все фильмы одним запросом, сохраняя порядок рекомендаций
+        List<Long> recommendedIds = snapshot.filmIds();
+        if (recommendedIds.isEmpty()) {
+            return new Recommendations(Collections.emptyList(), snapshot.computedAt());
+        }
+        Map<Long, Film> films = filmStorage.findFilmsByIds(new LinkedHashSet<>(recommendedIds)).stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+        List<Film> ordered = recommendedIds.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return new Recommendations(ordered, snapshot.computedAt());
+    }
 
-        // 4. Находим пользователя с максимальным пересечением лайков
-        for (Map.Entry<Long, Set<Long>> entry : userLikesMap.entrySet()) {
-            Long otherId = entry.getKey();
-            if (otherId.equals(userId)) continue;
+    // Вызывается после изменения лайка: помечает снимки всех, на кого он мог повлиять
+    public void onLikeChanged(long filmId, long userId) {
+        snapshots.markDirty(likeMatrix.affectedUsers(filmId, userId));
+    }
 
-            Set<Long> otherLikes = entry.getValue();
-            Set<Long> common = new HashSet<>(userLikes);
-            common.retainAll(otherLikes);
+    public void onUserRemoved(long userId) {
+        snapshots.remove(userId);
+    }
 
-            if (common.size() > maxCommon) {
-                maxCommon = common.size();
-                similarUserId = otherId;
+    // Фоновый пересчёт «грязных» и устаревших снимков; кого не читали idleTtls сроков жизни — забываем
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.snapshots.refresh-interval-ms:30000}")
+    public void refreshSnapshots() {
+        Instant now = Instant.now();
+        int evicted = snapshots.evictIdle(now.minus(snapshotTtl.multipliedBy(idleTtls)));
+        if (evicted > 0) {
+            log.debug("Удалены неиспользуемые снимки рекомендаций: {}", evicted);
+        }
+        Instant expiredBefore = now.minus(snapshotTtl);
+        Set<Long> users = new HashSet<>(snapshots.dirtyUsers());
+        for (Long userId : snapshots.activeUsers()) {
+            Instant computedAt = snapshots.computedAt(userId);
+            if (computedAt != null && computedAt.isBefore(expiredBefore)) {
+                users.add(userId);
             }
         }
-
-        // 5. Если похожего пользователя нет — рекомендаций нет
-        if (similarUserId == null) {
-            return Collections.emptyList();
+        for (Long userId : users) {
+            recompute(userId);
         }
+        if (!users.isEmpty()) {
+            log.debug("Пересчитаны рекомендации для {} пользователей", users.size());
+        }
+    }
 
-        // 6. Фильмы похожего пользователя, которых нет у userId
-        Set<Long> recommendedIds = new HashSet<>(userLikesMap.get(similarUserId));
-        recommendedIds.removeAll(userLikes);
-
-        if (recommendedIds.isEmpty()) {
-            return Collections.emptyList();
+    private Snapshot recompute(long userId) {
+        // отметка снимается до расчёта: изменение во время расчёта снова пометит пользователя,
+        // даже если это его первый снимок, и сохранённый снимок останется «грязным»
+        snapshots.startCompute(userId);
+        try {
+            Snapshot snapshot = new Snapshot(
+                    List.copyOf(likeMatrix.recommend(userId, neighbours, similarity)),
+                    Instant.now()
+            );
+            snapshots.put(userId, snapshot);
+            return snapshot;
+        } finally {
+            snapshots.finishCompute(userId);
         }
+    }
 
-        // 7. Загружаем все фильмы одним запросом
-        return filmStorage.findFilmsByIds(recommendedIds);
+    public record Recommendations(List<Film> films, Instant computedAt) {
     }
 }
@@ -4,6 +4,10 @@ import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.cache.ReviewTopCache;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
@@ -19,15 +23,20 @@ public class ReviewService {
     private final ReviewStorage reviewStorage;
     private final UserStorage userStorage;
     private final FilmStorage filmStorage;
-    private final FeedService feedService;
+    private final OutboxService outboxService;
+    private final ReviewTopCache reviewCache;
 
+    @Transactional
     public Review create(Review review) {
-        userStorage.findById(review.getUserId())
-                .orElseThrow(() -> new NotFoundException("User " + review.getUserId() + " not found"));
-        filmStorage.findById(review.getFilmId())
-                .orElseThrow(() -> new NotFoundException("Film " + review.getFilmId() + " not found"));
+        checkUserExists(review.getUserId());
+        if (!filmStorage.existsById(review.getFilmId())) {
+            throw new NotFoundException("Film " + review.getFilmId() + " not found");
+        }
         Review rev = reviewStorage.create(review);
-        feedService.addReview(rev);
+        // у нового отзыва голосов ещё нет
+        rev.setUseful(0);
+        refreshCacheAfterCommit(rev);
+        outboxService.record("REVIEW", "ADD", rev.getUserId(), rev.getId());
         return rev;
     }
 
@@ -39,40 +48,82 @@ public class ReviewService {
         }
     }
 
+    @Transactional
     public Review update(Review review) {
         // 404 если нет
         findById(review.getId());
         Review rev = reviewStorage.update(review);
-        feedService.updateReview(rev);
+        refreshCacheAfterCommit(rev);
+        outboxService.record("REVIEW", "UPDATE", rev.getUserId(), rev.getId());
         return rev;
     }
 
+    @Transactional
     public void delete(Long id) {
         // достаём, чтобы гарантировать 404 и знать userId для фида
         Review existing = findById(id);
-        feedService.deleteReview(id, existing.getUserId());
         int rows = reviewStorage.delete(id);
         if (rows == 0) {
             throw new NotFoundException("Отзыв с id=" + id + " не найден");
         }
+        refreshCacheAfterCommit(existing);
+        outboxService.record("REVIEW", "REMOVE", existing.getUserId(), id);
     }
 
     public List<Review> getReviewsByFilmId(Long id, int count) {
-        // по желанию можно проверить существование фильма
+        if (reviewCache.covers(count)) {
+            return reviewCache.getTop(id, count, reviewStorage::getReviewsByFilmId);
+        }
         return reviewStorage.getReviewsByFilmId(id, count);
     }
 
+    public List<Review> getReviewsPage(Long filmId, long afterUseful, long afterId, int count) {
+        return reviewStorage.getReviewsPage(filmId, afterUseful, afterId, count);
+    }
+
+    @Transactional
     public void putRate(Long id, Long userId, Boolean isUseful) {
-        userStorage.findById(userId)
-                .orElseThrow(() -> new NotFoundException("User " + userId + " not found"));
-        findById(id);
+        checkUserExists(userId);
+        Review review = findById(id);
         reviewStorage.putRate(id, userId, isUseful);
+        refreshCacheAfterCommit(review);
     }
 
+    @Transactional
     public void deleteRate(Long id, Long userId, Boolean isUseful) {
-        userStorage.findById(userId)
-                .orElseThrow(() -> new NotFoundException("User " + userId + " not found"));
-        findById(id);
+        checkUserExists(userId);
+        Review review = findById(id);
         reviewStorage.deleteRate(id, userId, isUseful);
+        refreshCacheAfterCommit(review);
+    }
+
+    // Кеш топа правится только после коммита: откатанный отзыв или голос в него не попадает.
+    // Отзыв перечитывается, поэтому порядок коммитов конкурирующих голосов не важен
+    private void refreshCacheAfterCommit(Review review) {
+        Runnable refresh = () -> reviewCache.refresh(review, this::findCommitted);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refresh.run();
+                }
+            });
+        } else {
+            refresh.run();
+        }
+    }
+
+    private Review findCommitted(Long id) {
+        try {
+            return reviewStorage.findById(id);
+        } catch (EmptyResultDataAccessException e) {
+            return null;
+        }
+    }
+
+    private void checkUserExists(Long userId) {
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException("User " + userId + " not found");
+        }
     }
 }
@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.timeline.TimelineStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.*;
+
+/*
+ * Лента активности друзей. Событие при записи раскладывается в таблицу timelines
+ * автору и всем, кто добавил его в друзья (fan-out on write), чтение — один диапазон по индексу.
+ * У авторов с числом подписчиков больше fanout-threshold события не раскладываются:
+ * читатель добирает их из feeds в момент чтения (fan-out on read) и сливает со своей лентой.
+ */
+@Slf4j
+@Service
+public class TimelineService {
+    private final TimelineStorage timelineStorage;
+    private final FeedStorage feedStorage;
+    private final UserStorage userStorage;
+    private final int maxLength;
+    private final int fanOutThreshold;
+
+    public TimelineService(TimelineStorage timelineStorage,
+                           FeedStorage feedStorage,
+                           @Qualifier("userDbStorage") UserStorage userStorage,
+                           @Value("${filmorate.timeline.max-length:500}") int maxLength,
+                           @Value("${filmorate.timeline.fanout-threshold:1000}") int fanOutThreshold) {
+        this.timelineStorage = timelineStorage;
+        this.feedStorage = feedStorage;
+        this.userStorage = userStorage;
+        this.maxLength = maxLength;
+        this.fanOutThreshold = fanOutThreshold;
+    }
+
+    public void publish(Feed event) {
+        long authorId = event.getUserId();
+        // подписчиков популярного автора не читаем: его события читатели добирают сами
+        if (timelineStorage.countFollowers(authorId) > fanOutThreshold) {
+            timelineStorage.fanOut(event, List.of(authorId));
+            return;
+        }
+        List<Long> followers = timelineStorage.findFollowerIds(authorId);
+        List<Long> recipients = new ArrayList<>(followers.size() + 1);
+        recipients.add(authorId);
+        recipients.addAll(followers);
+        timelineStorage.fanOut(event, recipients);
+    }
+
+    public void onFollow(long userId, long authorId) {
+        if (timelineStorage.countFollowers(authorId) <= fanOutThreshold) {
+            timelineStorage.backfill(userId, authorId, maxLength);
+        }
+    }
+
+    public void onUnfollow(long userId, long authorId) {
+        timelineStorage.removeAuthor(userId, authorId);
+    }
+
+    public List<Feed> getTimeline(long userId, int limit) {
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException("User " + userId + " not found");
+        }
+        int size = Math.min(limit, maxLength);
+        List<Feed> timeline = timelineStorage.findTimeline(userId, size);
+
+        List<Long> popularAuthors = timelineStorage.findFollowedAuthorsOver(userId, fanOutThreshold);
+        if (popularAuthors.isEmpty()) {
+            return timeline;
+        }
+        // сливаем материализованную ленту с событиями популярных авторов, дубли — по eventId
+        Map<Integer, Feed> merged = new HashMap<>();
+        timeline.forEach(event -> merged.put(event.getEventId(), event));
+        feedStorage.findRecentByAuthors(popularAuthors, size)
+                .forEach(event -> merged.putIfAbsent(event.getEventId(), event));
+        return merged.values().stream()
+                .sorted(Comparator.comparingLong(Feed::getTimestamp).reversed()
+                        .thenComparing(Comparator.comparingInt(Feed::getEventId).reversed()))
+                .limit(size)
+                .toList();
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.timeline.trim-interval-ms:60000}")
+    public void trim() {
+        int removed = timelineStorage.trim(maxLength);
+        if (removed > 0) {
+            log.info("Ленты активности обрезаны до {} событий: удалено {} записей", maxLength, removed);
+        }
+    }
+}
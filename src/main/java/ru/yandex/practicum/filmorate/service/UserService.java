@@ -3,24 +3,53 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.cache.ReviewTopCache;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.index.PopularFilmsLeaderboard;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.util.Collection;
+import java.util.List;
 
 @Service
 @Slf4j
 public class UserService {
 
     private final UserStorage userStorage;
-    private final FeedService feedService;
+    private final OutboxService outboxService;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final LikeMatrix likeMatrix;
+    private final RecommendationService recommendationService;
+    private final ReviewTopCache reviewCache;
+    private final FriendGraph friendGraph;
+    private final FriendSuggestionService suggestionService;
+    private final boolean commonIndexEnabled;
 
     @Autowired
-    public UserService(@Qualifier("userDbStorage") UserStorage userStorage, FeedService feedService) {
+    public UserService(@Qualifier("userDbStorage") UserStorage userStorage,
+                       OutboxService outboxService,
+                       PopularFilmsLeaderboard leaderboard,
+                       LikeMatrix likeMatrix,
+                       RecommendationService recommendationService,
+                       ReviewTopCache reviewCache,
+                       FriendGraph friendGraph,
+                       FriendSuggestionService suggestionService,
+                       @Value("${filmorate.common.index.enabled:true}") boolean commonIndexEnabled) {
         this.userStorage = userStorage;
-        this.feedService = feedService;
+        this.outboxService = outboxService;
+        this.leaderboard = leaderboard;
+        this.likeMatrix = likeMatrix;
+        this.recommendationService = recommendationService;
+        this.reviewCache = reviewCache;
+        this.friendGraph = friendGraph;
+        this.suggestionService = suggestionService;
+        this.commonIndexEnabled = commonIndexEnabled;
     }
 
     public User create(User user) {
@@ -30,7 +59,7 @@ public class UserService {
 
     public User update(User user) {
         postProcessName(user);
-        getUserOrThrow(user.getId());
+        checkUserExists(user.getId());
         return userStorage.update(user);
     }
 
@@ -39,43 +68,60 @@ public class UserService {
         return userStorage.findAll();
     }
 
+    public List<User> findPage(Long afterId, int limit) {
+        return userStorage.findPage(afterId, limit);
+    }
+
     public User findById(Long id) {
         log.info("Поиск пользователя по id={}", id);
         return getUserOrThrow(id);
     }
 
+    @Transactional
     public void addFriend(Long userId, Long friendId) {
         log.info("Пользователь {} добавляет в друзья пользователя {}", userId, friendId);
-        getUserOrThrow(userId);
-        getUserOrThrow(friendId);
+        checkUsersExist(userId, friendId);
         userStorage.addFriend(userId, friendId);
-        feedService.addFriend(userId, friendId);
+        outboxService.record("FRIEND", "ADD", userId, friendId);
     }
 
+    @Transactional
     public void deleteFriend(Long userId, Long friendId) {
         log.info("Пользователь {} удаляет из друзей пользователя {}", userId, friendId);
-        getUserOrThrow(userId);
-        getUserOrThrow(friendId);
+        checkUsersExist(userId, friendId);
         userStorage.removeFriend(userId, friendId);
-        feedService.deleteFriend(userId, friendId);
+        outboxService.record("FRIEND", "REMOVE", userId, friendId);
     }
 
     public Collection<User> getFriends(Long userId) {
         log.info("Запрошен список друзей пользователя {}", userId);
-        getUserOrThrow(userId);
+        checkUserExists(userId);
         return userStorage.getFriends(userId);
     }
 
     public Collection<User> getCommonFriends(Long userId, Long otherId) {
         log.info("Запрошен список общих друзей пользователей {} и {}", userId, otherId);
-        getUserOrThrow(userId);
-        getUserOrThrow(otherId);
+        checkUsersExist(userId, otherId);
+        if (commonIndexEnabled) {
+            return userStorage.findByIds(friendGraph.commonFriends(userId, otherId));
+        }
         return userStorage.getCommonFriends(userId, otherId);
     }
 
     public int removeById(Long userId) {
         log.info("Запрос на удаление пользователя {}", userId);
-        return userStorage.removeById(userId);
+        int removed = userStorage.removeById(userId);
+        if (removed > 0) {
+            // лайки пользователя удалены каскадом — рейтинг перечитается из БД
+            leaderboard.invalidate();
+            likeMatrix.onUserRemoved(userId);
+            recommendationService.onUserRemoved(userId);
+            friendGraph.onUserRemoved(userId);
+            suggestionService.onUserRemoved();
+            // отзывы пользователя удалены каскадом, фильмы могли быть в любых списках
+            reviewCache.invalidateAll();
+        }
+        return removed;
     }
 
     private void postProcessName(User user) {
@@ -88,4 +134,18 @@ public class UserService {
         return userStorage.findById(id)
                 .orElseThrow(() -> new NotFoundException("User " + id + " not found"));
     }
+
+    // Проверка без загрузки строки — индексный SELECT EXISTS
+    private void checkUserExists(long id) {
+        if (!userStorage.existsById(id)) {
+            throw new NotFoundException("User " + id + " not found");
+        }
+    }
+
+    // Оба пользователя — одним запросом IN (...); кого нет, уточняем только при ошибке
+    private void checkUsersExist(long userId, long otherId) {
+        if (userStorage.existAll(List.of(userId, otherId))) return;
+        checkUserExists(userId);
+        checkUserExists(otherId);
+    }
 }
@@ -1,40 +1,56 @@
 package ru.yandex.practicum.filmorate.storage.director;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.cache.CacheStatsProvider;
+import ru.yandex.practicum.filmorate.cache.LruCache;
 import ru.yandex.practicum.filmorate.model.Director;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.stream.Collectors;
 
+// Режиссёры меняются редко: чтения по id и полный список идут через кеш,
+// который сбрасывается при любом изменении
 @Repository
-public class DirectorDbStorage implements DirectorStorage {
+public class DirectorDbStorage implements DirectorStorage, CacheStatsProvider {
+    private static final String ALL = "all";
+
     private final JdbcTemplate jdbcTemplate;
+    private final LruCache<Long, Director> byId;
+    private final LruCache<String, List<Director>> all;
 
-    public DirectorDbStorage(JdbcTemplate jdbcTemplate) {
+    public DirectorDbStorage(JdbcTemplate jdbcTemplate,
+                             @Value("${filmorate.cache.reference.max-size:1000}") int maxSize) {
         this.jdbcTemplate = jdbcTemplate;
+        this.byId = new LruCache<>("directors", maxSize);
+        this.all = new LruCache<>("directors.all", 1);
     }
 
     @Override
     public List<Director> getAllDirectors() {
-        String sql = "SELECT * FROM directors";
-        return jdbcTemplate.query(sql, this::mapRowToDirector);
+        return all.get(ALL, key -> {
+            String sql = "SELECT * FROM directors";
+            return List.copyOf(jdbcTemplate.query(sql, this::mapRowToDirector));
+        });
     }
 
     @Override
     public Director getDirectorById(Long id) {
-        try {
-            String sql = "SELECT * FROM directors WHERE director_id = ?";
-            return jdbcTemplate.queryForObject(sql, this::mapRowToDirector, id);
-        } catch (EmptyResultDataAccessException e) {
-            return null; // Возвращаем null, чтобы сервис мог выбросить NotFoundException
-        }
+        // Возвращаем null, чтобы сервис мог выбросить NotFoundException
+        return byId.get(id, key -> {
+            try {
+                String sql = "SELECT * FROM directors WHERE director_id = ?";
+                return jdbcTemplate.queryForObject(sql, this::mapRowToDirector, key);
+            } catch (EmptyResultDataAccessException e) {
+                return null;
+            }
+        });
     }
 
     @Override
@@ -48,6 +64,7 @@ public class DirectorDbStorage implements DirectorStorage {
         }, keyHolder);
 
         director.setId((long) Objects.requireNonNull(keyHolder.getKey()).intValue());
+        all.invalidateAll();
         return director;
     }
 
@@ -55,6 +72,8 @@ public class DirectorDbStorage implements DirectorStorage {
     public Director updateDirector(Director director) {
         String sql = "UPDATE directors SET name = ? WHERE director_id = ?";
         jdbcTemplate.update(sql, director.getName(), director.getId());
+        byId.invalidate(director.getId());
+        all.invalidateAll();
         return director;
     }
 
@@ -62,14 +81,8 @@ public class DirectorDbStorage implements DirectorStorage {
     public void deleteDirector(Long id) {
         String sql = "DELETE FROM directors WHERE director_id = ?";
         jdbcTemplate.update(sql, id);
-    }
-
-    @Override
-    public List<Director> getFilmDirectors(int filmId) {
-        String sql = "SELECT d.* FROM directors d " +
-                "JOIN film_directors fd ON d.director_id = fd.director_id " +
-                "WHERE fd.film_id = ?";
-        return jdbcTemplate.query(sql, this::mapRowToDirector, filmId);
+        byId.invalidate(id);
+        all.invalidateAll();
     }
 
     @Override
@@ -84,39 +97,15 @@ public class DirectorDbStorage implements DirectorStorage {
         jdbcTemplate.update(sql, filmId);
     }
 
+    @Override
+    public List<LruCache.Stats> cacheStats() {
+        return List.of(byId.stats(), all.stats());
+    }
+
     private Director mapRowToDirector(ResultSet rs, int rowNum) throws SQLException {
         return new Director(
                 (long) rs.getInt("director_id"),
                 rs.getString("name")
         );
     }
-
-    public Map<Long, List<Director>> getDirectorsByFilmIds(Set<Long> filmIds) {
-        if (filmIds == null || filmIds.isEmpty()) {
-            return Collections.emptyMap();
-        }
-
-        String placeholders = filmIds.stream()
-                .map(id -> "?")
-                .collect(Collectors.joining(","));
-
-        String sql = """
-                SELECT fd.film_id, d.director_id, d.name
-                FROM film_directors fd
-                JOIN directors d ON d.director_id = fd.director_id
-                WHERE fd.film_id IN (""" + placeholders + ")";
-
-        Map<Long, List<Director>> result = new HashMap<>();
-
-        jdbcTemplate.query(sql, filmIds.toArray(), rs -> {
-            long filmId = rs.getLong("film_id");
-            Director director = new Director(
-                    rs.getLong("director_id"),
-                    rs.getString("name")
-            );
-            result.computeIfAbsent(filmId, k -> new ArrayList<>()).add(director);
-        });
-
-        return result;
-    }
-}
\ No newline at end of file
+}
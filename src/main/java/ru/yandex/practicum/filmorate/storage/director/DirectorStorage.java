@@ -3,8 +3,6 @@ package ru.yandex.practicum.filmorate.storage.director;
 import ru.yandex.practicum.filmorate.model.Director;
 
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 public interface DirectorStorage {
     List<Director> getAllDirectors();
@@ -17,11 +15,7 @@ public interface DirectorStorage {
 
     void deleteDirector(Long id);
 
-    List<Director> getFilmDirectors(int filmId);
-
     void addFilmDirector(int filmId, int directorId);
 
     void removeFilmDirectors(int filmId);
-
-    Map<Long, List<Director>> getDirectorsByFilmIds(Set<Long> filmIds);
 }
@@ -1,18 +1,26 @@
 package ru.yandex.practicum.filmorate.storage.feed;
 
+import jakarta.validation.ValidationException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.Review;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 @Slf4j
 @Component("feedDbStorage")
@@ -20,50 +28,80 @@ import java.util.Collection;
 public class FeedDbStorage implements FeedStorage {
     private final JdbcTemplate jdbcTemplate;
 
-    public void addFriend(long userId, long friendToAddId) throws NotFoundException {
+    public Feed addFriend(long userId, long friendToAddId) throws NotFoundException {
         String action = "ADD";
-        addOrRemoveFriend(userId, friendToAddId, action);
+        return addOrRemoveFriend(userId, friendToAddId, action);
     }
 
-    public void deleteFriend(long userId, long friendId) throws NotFoundException {
+    public Feed deleteFriend(long userId, long friendId) throws NotFoundException {
         String action = "REMOVE";
-        addOrRemoveFriend(userId, friendId, action);
+        return addOrRemoveFriend(userId, friendId, action);
     }
 
-    public void likeFromUser(long filmId, long userId) {
+    public Feed likeFromUser(long filmId, long userId) {
         String action = "ADD";
-        addOrRemoveLikeFromUser(userId, filmId, action);
+        return addOrRemoveLikeFromUser(userId, filmId, action);
     }
 
-    public void unlikeFromUser(long filmId, long userId) {
+    public Feed unlikeFromUser(long filmId, long userId) {
         String action = "REMOVE";
-        addOrRemoveLikeFromUser(userId, filmId, action);
+        return addOrRemoveLikeFromUser(userId, filmId, action);
     }
 
-    public void addReview(Review review) {
+    public Feed addReview(Review review) {
         String action = "ADD";
-        addOrUpdateReview(review, action);
+        return addOrUpdateReview(review, action);
     }
 
-    public void updateReview(Review review) {
+    public Feed updateReview(Review review) {
         String action = "UPDATE";
-        addOrUpdateReview(review, action);
+        return addOrUpdateReview(review, action);
     }
 
-    public void deleteReview(Long reviewId, long userId) {
-        Timestamp timestamp = new Timestamp(System.currentTimeMillis());
-        String sqlQuery =
-                "insert into feeds(userId, timestamp, eventType, operation, entityId)" +
-                        " values(?,?, ?, ?,?)";
-        jdbcTemplate.update(sqlQuery, userId, timestamp.getTime(), "REVIEW", "REMOVE", reviewId);
-
+    public Feed deleteReview(Long reviewId, long userId) {
+        return insertEvent(userId, "REVIEW", "REMOVE", reviewId);
     }
 
     public Collection<Feed> feeds(Long id) {
-        String sqlQuery = "select timestamp, userId, eventType, operation, eventId, entityId from feeds where userId = ?";
+        String sqlQuery = "select timestamp, userId, eventType, operation, eventId, entityId from feeds " +
+                "where userId = ? order by timestamp, eventId";
         return jdbcTemplate.query(sqlQuery, this::mapRowToFeed, id);
     }
 
+    public List<Feed> feedsPage(Long id, Long beforeEventId, int limit) {
+        // берём limit последних событий до курсора по убыванию и возвращаем их в хронологическом порядке
+        if (beforeEventId == null) {
+            String sqlQuery = "select * from (" +
+                    "select timestamp, userId, eventType, operation, eventId, entityId from feeds " +
+                    "where userId = ? order by timestamp desc, eventId desc limit ?" +
+                    ") page order by timestamp, eventId";
+            return jdbcTemplate.query(sqlQuery, this::mapRowToFeed, id, limit);
+        }
+        List<Long> cursor = jdbcTemplate.queryForList(
+                "select timestamp from feeds where eventId = ? and userId = ?", Long.class, beforeEventId, id);
+        // курсор берётся только из выданной этому пользователю страницы; иначе пустая страница выглядела бы концом ленты
+        if (cursor.isEmpty()) {
+            throw new ValidationException("Некорректный курсор ленты: " + beforeEventId);
+        }
+        long timestamp = cursor.get(0);
+        String sqlQuery = "select * from (" +
+                "select timestamp, userId, eventType, operation, eventId, entityId from feeds " +
+                "where userId = ? and (timestamp < ? or (timestamp = ? and eventId < ?)) " +
+                "order by timestamp desc, eventId desc limit ?" +
+                ") page order by timestamp, eventId";
+        return jdbcTemplate.query(sqlQuery, this::mapRowToFeed, id, timestamp, timestamp, beforeEventId, limit);
+    }
+
+    public List<Feed> findRecentByAuthors(Collection<Long> authorIds, int limit) {
+        if (authorIds.isEmpty()) return List.of();
+        String placeholders = String.join(",", Collections.nCopies(authorIds.size(), "?"));
+        String sqlQuery = "select timestamp, userId, eventType, operation, eventId, entityId from feeds " +
+                "where userId in (" + placeholders + ") order by timestamp desc, eventId desc limit ?";
+        List<Object> params = new ArrayList<>(authorIds);
+        params.add(limit);
+        return jdbcTemplate.query(sqlQuery, this::mapRowToFeed, params.toArray());
+    }
+
     private Feed mapRowToFeed(ResultSet rs, int rowNum) throws SQLException {
         return Feed.builder()
                 .timestamp(rs.getLong("timestamp"))
@@ -75,30 +113,73 @@ public class FeedDbStorage implements FeedStorage {
                 .build();
     }
 
-    private void addOrRemoveLikeFromUser(long userId, long filmId, String action) {
-        Timestamp timestamp = new Timestamp(System.currentTimeMillis());
-        String sqlQuery = "insert into feeds(userId, timestamp, eventType, operation, entityId)" +
-                "values(?, ?, ?, ?, ?)";
-        jdbcTemplate.update(sqlQuery, userId, timestamp.getTime(), "LIKE", action, filmId);
+    private Feed addOrRemoveLikeFromUser(long userId, long filmId, String action) {
+        return insertEvent(userId, "LIKE", action, filmId);
     }
 
-    private void addOrUpdateReview(Review review, String action) {
-        Timestamp timestamp = new Timestamp(System.currentTimeMillis());
-        String sqlQuery =
-                "insert into feeds(userId, timestamp, eventType, operation, entityId)" +
-                        " values(?,?, ?, ?,?)";
-        jdbcTemplate.update(sqlQuery, review.getUserId(), timestamp.getTime(), "REVIEW", action, review.getId());
+    private Feed addOrUpdateReview(Review review, String action) {
+        return insertEvent(review.getUserId(), "REVIEW", action, review.getId());
     }
 
-    private void addOrRemoveFriend(long userId, long friendId, String action) throws NotFoundException {
-        Timestamp timestamp = new Timestamp(System.currentTimeMillis());
-        String sqlQuery =
-                "insert into feeds(userId, timestamp, eventType, operation, entityId)\n" +
-                        "values(?, ?, ?, ?, ?)";
+    private Feed addOrRemoveFriend(long userId, long friendId, String action) throws NotFoundException {
         try {
-            jdbcTemplate.update(sqlQuery, userId, timestamp.getTime(), "FRIEND", action, friendId);
+            return insertEvent(userId, "FRIEND", action, friendId);
         } catch (DataAccessException e) {
             throw new NotFoundException(e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    // Пакетная запись одним executeBatch; eventId присваиваются в порядке списка
+    public List<Feed> insertEvents(List<Feed> events) {
+        if (events.isEmpty()) return events;
+        String sqlQuery =
+                "insert into feeds(userId, timestamp, eventType, operation, entityId)" +
+                        " values(?, ?, ?, ?, ?)";
+        return jdbcTemplate.execute((ConnectionCallback<List<Feed>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sqlQuery, new String[]{"EVENTID"})) {
+                for (Feed event : events) {
+                    ps.setLong(1, event.getUserId());
+                    ps.setLong(2, event.getTimestamp());
+                    ps.setString(3, event.getEventType());
+                    ps.setString(4, event.getOperation());
+                    ps.setLong(5, event.getEntityId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next()) {
+                        events.get(i++).setEventId(keys.getInt(1));
+                    }
+                }
+            }
+            return events;
+        });
+    }
+
+    // Событие возвращается с присвоенным eventId — по нему запись раскладывается по лентам друзей
+    private Feed insertEvent(long userId, String eventType, String operation, long entityId) {
+        Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+        String sqlQuery =
+                "insert into feeds(userId, timestamp, eventType, operation, entityId)" +
+                        " values(?, ?, ?, ?, ?)";
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sqlQuery, new String[]{"EVENTID"});
+            ps.setLong(1, userId);
+            ps.setLong(2, timestamp.getTime());
+            ps.setString(3, eventType);
+            ps.setString(4, operation);
+            ps.setLong(5, entityId);
+            return ps;
+        }, keyHolder);
+        return Feed.builder()
+                .timestamp(timestamp.getTime())
+                .userId((int) userId)
+                .eventType(eventType)
+                .operation(operation)
+                .eventId(keyHolder.getKey().intValue())
+                .entityId((int) entityId)
+                .build();
+    }
+}
@@ -5,22 +5,33 @@ import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.Review;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface FeedStorage {
 
-    void addFriend(long userId, long friendToAddId) throws NotFoundException;
+    Feed addFriend(long userId, long friendToAddId) throws NotFoundException;
 
-    void deleteFriend(long userId, long friendId) throws NotFoundException;
+    Feed deleteFriend(long userId, long friendId) throws NotFoundException;
 
-    void likeFromUser(long filmId, long userId);
+    Feed likeFromUser(long filmId, long userId);
 
-    void unlikeFromUser(long filmId, long userId);
+    Feed unlikeFromUser(long filmId, long userId);
 
-    void addReview(Review review);
+    Feed addReview(Review review);
 
-    void deleteReview(Long reviewId, long userId);
+    Feed deleteReview(Long reviewId, long userId);
 
-    void updateReview(Review review);
+    Feed updateReview(Review review);
+
+    // Записывает готовые события пачкой и проставляет им eventId
+    List<Feed> insertEvents(List<Feed> events);
 
     Collection<Feed> feeds(Long id);
+
+    // До limit событий строго раньше события beforeEventId (null — самые свежие), в хронологическом порядке;
+    // курсор, которого нет в ленте этого пользователя, — ValidationException
+    List<Feed> feedsPage(Long id, Long beforeEventId, int limit);
+
+    // Последние события указанных авторов, от новых к старым
+    List<Feed> findRecentByAuthors(Collection<Long> authorIds, int limit);
 }
\ No newline at end of file
@@ -1,27 +1,68 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 
 import java.sql.Date;
 import java.sql.*;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Repository
 public class FilmDbStorage implements FilmStorage {
-    private final JdbcTemplate jdbcTemplate;
+    // MERGE без WHEN MATCHED вставляет только отсутствующий лайк: 1 — добавлен, 0 — уже был
+    private static final String MERGE_LIKE_SQL =
+            "MERGE INTO film_likes t USING (VALUES (CAST(? AS INT), CAST(? AS INT))) s(film_id, user_id) " +
+            "ON t.film_id = s.film_id AND t.user_id = s.user_id " +
+            "WHEN NOT MATCHED THEN INSERT (film_id, user_id) VALUES (s.film_id, s.user_id)";
+    // Фильм вместе с жанрами и режиссёрами одним запросом: списки собираются в массивы
+    // коррелированными подзапросами с ARRAY_AGG, порядок элементов в парных массивах совпадает
+    private static final String AGGREGATE_SELECT = """
+            SELECT f.id,
+                   f.name,
+                   f.description,
+                   f.release_date,
+                   f.duration,
+                   f.mpa_id,
+                   m.name AS mpa_name,
+                   (SELECT ARRAY_AGG(g.id ORDER BY g.id)
+                    FROM film_genres fg JOIN genres g ON g.id = fg.genre_id
+                    WHERE fg.film_id = f.id) AS genre_ids,
+                   (SELECT ARRAY_AGG(g.name ORDER BY g.id)
+                    FROM film_genres fg JOIN genres g ON g.id = fg.genre_id
+                    WHERE fg.film_id = f.id) AS genre_names,
+                   (SELECT ARRAY_AGG(d.director_id ORDER BY d.director_id)
+                    FROM film_directors fd JOIN directors d ON d.director_id = fd.director_id
+                    WHERE fd.film_id = f.id) AS director_ids,
+                   (SELECT ARRAY_AGG(d.name ORDER BY d.director_id)
+                    FROM film_directors fd JOIN directors d ON d.director_id = fd.director_id
+                    WHERE fd.film_id = f.id) AS director_names
+            FROM films f
+            LEFT JOIN mpa m ON m.id = f.mpa_id
+            """;
 
-    public FilmDbStorage(JdbcTemplate jdbcTemplate) {
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean aggregateQuery;
+    private final int exportFetchSize;
 
+    public FilmDbStorage(JdbcTemplate jdbcTemplate,
+                         @Value("${filmorate.films.aggregate-query.enabled:true}") boolean aggregateQuery,
+                         @Value("${filmorate.films.export.fetch-size:500}") int exportFetchSize) {
         this.jdbcTemplate = jdbcTemplate;
+        this.aggregateQuery = aggregateQuery;
+        this.exportFetchSize = exportFetchSize;
     }
 
     @Override
@@ -57,6 +98,9 @@ public class FilmDbStorage implements FilmStorage {
 
     @Override
     public List<Film> findAll() {
+        if (aggregateQuery) {
+            return jdbcTemplate.query(AGGREGATE_SELECT, this::mapRowToFilmAggregate);
+        }
         String selectAllQuery = """
                 SELECT f.id,
                        f.name,
@@ -68,18 +112,118 @@ public class FilmDbStorage implements FilmStorage {
                 FROM films f
                 LEFT JOIN mpa m ON m.id = f.mpa_id
                 """;
-        List<Film> films = jdbcTemplate.query(selectAllQuery, this::mapRowToFilm);
-        if (films.isEmpty()) return films;
-        Set<Long> ids = films.stream().map(Film::getId).collect(java.util.stream.Collectors.toSet());
-        Map<Long, Set<Genre>> genresByFilm = loadGenresByFilmIds(ids);
-        for (Film f : films) {
-            f.setGenres(genresByFilm.getOrDefault(f.getId(), java.util.Collections.emptySet()));
+        return enrich(jdbcTemplate.query(selectAllQuery, this::mapRowToFilm));
+    }
+
+    @Override
+    public List<Film> findPage(Long afterId, int limit) {
+        // keyset по первичному ключу: каждая страница — ограниченный диапазон индекса, без OFFSET
+        long after = afterId == null ? 0 : afterId;
+        if (aggregateQuery) {
+            return jdbcTemplate.query(AGGREGATE_SELECT + "WHERE f.id > ? ORDER BY f.id LIMIT ?",
+                    this::mapRowToFilmAggregate, after, limit);
         }
-        return films;
+        String sql = """
+                SELECT f.id,
+                       f.name,
+                       f.description,
+                       f.release_date,
+                       f.duration,
+                       f.mpa_id,
+                       m.name AS mpa_name
+                FROM films f
+                LEFT JOIN mpa m ON m.id = f.mpa_id
+                WHERE f.id > ?
+                ORDER BY f.id
+                LIMIT ?
+                """;
+        return enrich(jdbcTemplate.query(sql, this::mapRowToFilm, after, limit));
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> consumer) {
+        // Три курсора только вперёд, все отсортированы по film_id: фильмы, жанры и режиссёры
+        // сливаются за один проход (sorted-merge), в памяти держится только текущий фильм.
+        // Сортировка везде совпадает с первичным ключом, иначе H2 сортирует всю выборку до первой строки
+        String filmsSql = """
+                SELECT f.id, f.name, f.description, f.release_date, f.duration, f.mpa_id, m.name AS mpa_name
+                FROM films f
+                LEFT JOIN mpa m ON m.id = f.mpa_id
+                ORDER BY f.id
+                """;
+        String genresSql = """
+                SELECT fg.film_id, g.id, g.name
+                FROM film_genres fg
+                JOIN genres g ON g.id = fg.genre_id
+                ORDER BY fg.film_id, fg.genre_id
+                """;
+        String directorsSql = """
+                SELECT fd.film_id, d.director_id, d.name
+                FROM film_directors fd
+                JOIN directors d ON d.director_id = fd.director_id
+                ORDER BY fd.film_id, fd.director_id
+                """;
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            // встроенная H2 без ленивого режима вычисляет весь результат в executeQuery;
+            // соединение вернётся в пул, поэтому настройка снимается в finally
+            setLazyQueryExecution(connection, true);
+            try (PreparedStatement films = forwardOnly(connection, filmsSql);
+                 PreparedStatement genres = forwardOnly(connection, genresSql);
+                 PreparedStatement directors = forwardOnly(connection, directorsSql);
+                 ResultSet filmRows = films.executeQuery();
+                 ResultSet genreRows = genres.executeQuery();
+                 ResultSet directorRows = directors.executeQuery()) {
+                boolean hasGenre = genreRows.next();
+                boolean hasDirector = directorRows.next();
+                int rowNumber = 0;
+                while (filmRows.next()) {
+                    Film film = mapRowToFilm(filmRows, rowNumber++);
+                    long filmId = film.getId();
+                    film.setDirectors(new ArrayList<>());
+
+                    // строки связей без фильма (не бывает при внешних ключах) просто пропускаются
+                    while (hasGenre && genreRows.getLong("film_id") <= filmId) {
+                        if (genreRows.getLong("film_id") == filmId) {
+                            film.getGenres().add(new Genre(genreRows.getInt("id"), genreRows.getString("name")));
+                        }
+                        hasGenre = genreRows.next();
+                    }
+                    while (hasDirector && directorRows.getLong("film_id") <= filmId) {
+                        if (directorRows.getLong("film_id") == filmId) {
+                            film.getDirectors().add(new Director(directorRows.getLong("director_id"),
+                                    directorRows.getString("name")));
+                        }
+                        hasDirector = directorRows.next();
+                    }
+                    consumer.accept(film);
+                }
+            } finally {
+                setLazyQueryExecution(connection, false);
+            }
+            return null;
+        });
+    }
+
+    private void setLazyQueryExecution(Connection connection, boolean lazy) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET LAZY_QUERY_EXECUTION " + lazy);
+        }
+    }
+
+    private PreparedStatement forwardOnly(Connection connection, String sql) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(exportFetchSize);
+        return statement;
     }
 
     @Override
     public Optional<Film> findById(Long filmId) {
+        if (aggregateQuery) {
+            return jdbcTemplate.query(AGGREGATE_SELECT + "WHERE f.id = ?", this::mapRowToFilmAggregate, filmId)
+                    .stream().findFirst();
+        }
         String sql = """
                 SELECT f.id,
                        f.name,
@@ -92,16 +236,7 @@ public class FilmDbStorage implements FilmStorage {
                 LEFT JOIN mpa m ON m.id = f.mpa_id
                 WHERE f.id = ?
                 """;
-        try {
-            Film film = jdbcTemplate.queryForObject(sql, this::mapRowToFilm, filmId);
-            Map<Long, Set<Genre>> genresByFilm = loadGenresByFilmIds(java.util.Set.of(film.getId()));
-            film.setGenres(new java.util.LinkedHashSet<>(
-                    genresByFilm.getOrDefault(film.getId(), java.util.Collections.emptySet())
-            ));
-            return java.util.Optional.of(film);
-        } catch (org.springframework.dao.EmptyResultDataAccessException e) {
-            return java.util.Optional.empty();
-        }
+        return enrich(jdbcTemplate.query(sql, this::mapRowToFilm, filmId)).stream().findFirst();
     }
 
     @Override
@@ -110,6 +245,10 @@ public class FilmDbStorage implements FilmStorage {
             return Collections.emptyList();
         }
         String placeholders = String.join(",", Collections.nCopies(filmIds.size(), "?"));
+        if (aggregateQuery) {
+            return jdbcTemplate.query(AGGREGATE_SELECT + "WHERE f.id IN (" + placeholders + ")",
+                    this::mapRowToFilmAggregate, filmIds.toArray());
+        }
         String sql = """
                     SELECT f.id,
                            f.name,
@@ -123,23 +262,170 @@ public class FilmDbStorage implements FilmStorage {
                     WHERE f.id IN (%s)
                 """.formatted(placeholders);
 
-        List<Film> films = jdbcTemplate.query(sql, this::mapRowToFilm, filmIds.toArray());
+        return enrich(jdbcTemplate.query(sql, this::mapRowToFilm, filmIds.toArray()));
+    }
+
+    @Override
+    @Transactional
+    public boolean addLike(Long filmId, Long userId) {
+        lockFilms(List.of(filmId));
+        if (jdbcTemplate.update(MERGE_LIKE_SQL, filmId, userId) == 0) {
+            return false;
+        }
+        jdbcTemplate.update("UPDATE films SET like_count = like_count + 1 WHERE id = ?", filmId);
+        return true;
+    }
 
-        loadGenresForFilms(films);
+    @Override
+    @Transactional
+    public boolean removeLike(Long filmId, Long userId) {
+        lockFilms(List.of(filmId));
+        String deleteLikeQuery = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
+        if (jdbcTemplate.update(deleteLikeQuery, filmId, userId) == 0) {
+            return false;
+        }
+        jdbcTemplate.update("UPDATE films SET like_count = like_count - 1 WHERE id = ?", filmId);
+        return true;
+    }
 
-        return films;
+    // Лайки одного фильма меняются по очереди: без блокировки два одновременных MERGE одной пары
+    // оба не находят строку, и второй падает на первичном ключе. Фильмы блокируются по возрастанию
+    // id, поэтому пакет и одиночный лайк не ждут друг друга по кругу
+    private void lockFilms(Collection<Long> filmIds) {
+        if (filmIds.isEmpty()) return;
+        List<Long> sorted = filmIds.stream().distinct().sorted().toList();
+        String placeholders = String.join(",", Collections.nCopies(sorted.size(), "?"));
+        jdbcTemplate.queryForList("SELECT id FROM films WHERE id IN (" + placeholders + ") ORDER BY id FOR UPDATE",
+                Long.class, sorted.toArray());
     }
 
     @Override
-    public void addLike(Long filmId, Long userId) {
-        String insertLikeQuery = "INSERT INTO film_likes(film_id, user_id) VALUES (?, ?)";
-        jdbcTemplate.update(insertLikeQuery, filmId, userId);
+    @Transactional
+    public boolean[] applyLikes(List<LikeOperation> operations) {
+        boolean[] changed = new boolean[operations.size()];
+        Map<Long, Long> likeDeltas = new HashMap<>();
+        lockFilms(operations.stream().map(LikeOperation::getFilmId).toList());
+        // подряд идущие операции одного типа уходят одним batch-запросом; внутри пачки строки
+        // обрабатываются по очереди, поэтому повтор пары в пакете видит результат предыдущей
+        int from = 0;
+        while (from < operations.size()) {
+            boolean add = "ADD".equals(operations.get(from).getOp());
+            int to = from;
+            while (to < operations.size() && add == "ADD".equals(operations.get(to).getOp())) {
+                to++;
+            }
+            List<LikeOperation> run = operations.subList(from, to);
+            String sql = add ? MERGE_LIKE_SQL : "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
+            int[] counts = jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setLong(1, run.get(i).getFilmId());
+                    ps.setLong(2, run.get(i).getUserId());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return run.size();
+                }
+            });
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    changed[from + i] = true;
+                    likeDeltas.merge(run.get(i).getFilmId(), add ? 1L : -1L, Long::sum);
+                }
+            }
+            from = to;
+        }
+        // счётчики — по одному UPDATE на фильм, а не на лайк
+        List<Object[]> updates = likeDeltas.entrySet().stream()
+                .filter(e -> e.getValue() != 0)
+                .map(e -> new Object[]{e.getValue(), e.getKey()})
+                .toList();
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE films SET like_count = like_count + ? WHERE id = ?", updates);
+        }
+        return changed;
     }
 
     @Override
-    public void removeLike(Long filmId, Long userId) {
-        String deleteLikeQuery = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
-        jdbcTemplate.update(deleteLikeQuery, filmId, userId);
+    public boolean existsById(Long filmId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS(SELECT 1 FROM films WHERE id = ?)", Boolean.class, filmId));
+    }
+
+    @Override
+    public Set<Long> findExistingIds(Collection<Long> filmIds) {
+        if (filmIds == null || filmIds.isEmpty()) {
+            return Set.of();
+        }
+        String placeholders = String.join(",", Collections.nCopies(filmIds.size(), "?"));
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM films WHERE id IN (" + placeholders + ")", Long.class, filmIds.toArray()));
+    }
+
+    @Override
+    public Map<Long, Long> getDispatchedLikeCounts() {
+        // отложенные (parked) события не разносятся никогда, а ждущие ленты (feed_pending) уже разнесены
+        String sql = "SELECT f.id, f.like_count - COALESCE(p.delta, 0) AS likes " +
+                "FROM films f " +
+                "LEFT JOIN (SELECT entity_id, SUM(CASE WHEN operation = 'ADD' THEN 1 ELSE -1 END) AS delta " +
+                "           FROM outbox " +
+                "           WHERE event_type = 'LIKE' " +
+                "             AND parked = FALSE AND feed_pending = FALSE " +
+                "           GROUP BY entity_id) p ON p.entity_id = f.id " +
+                "WHERE f.like_count > 0 OR p.delta IS NOT NULL";
+        Map<Long, Long> result = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            result.put(rs.getLong("id"), rs.getLong("likes"));
+        });
+        return result;
+    }
+
+    @Override
+    public Map<Long, String> getFilmTitles() {
+        Map<Long, String> result = new HashMap<>();
+        jdbcTemplate.query("SELECT id, name FROM films", rs -> {
+            result.put(rs.getLong("id"), rs.getString("name"));
+        });
+        return result;
+    }
+
+    @Override
+    public Map<Long, Integer> getReleaseYears() {
+        Map<Long, Integer> result = new HashMap<>();
+        jdbcTemplate.query("SELECT id, EXTRACT(YEAR FROM release_date) AS release_year FROM films", rs -> {
+            result.put(rs.getLong("id"), rs.getInt("release_year"));
+        });
+        return result;
+    }
+
+    @Override
+    public Map<Long, Set<Integer>> getFilmGenreIds() {
+        Map<Long, Set<Integer>> result = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, genre_id FROM film_genres", rs -> {
+            result.computeIfAbsent(rs.getLong("film_id"), k -> new HashSet<>()).add(rs.getInt("genre_id"));
+        });
+        return result;
+    }
+
+    @Override
+    public Map<Long, List<Long>> getFilmDirectorIds() {
+        Map<Long, List<Long>> result = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, director_id FROM film_directors", rs -> {
+            result.computeIfAbsent(rs.getLong("film_id"), k -> new ArrayList<>()).add(rs.getLong("director_id"));
+        });
+        return result;
+    }
+
+    @Override
+    public int reconcileLikeCounts() {
+        // Пересчитываем счётчик только там, где он разошёлся с film_likes
+        String sql = """
+                UPDATE films f
+                SET like_count = (SELECT COUNT(*) FROM film_likes fl WHERE fl.film_id = f.id)
+                WHERE f.like_count <> (SELECT COUNT(*) FROM film_likes fl WHERE fl.film_id = f.id)
+                """;
+        return jdbcTemplate.update(sql);
     }
 
     private Film mapRowToFilm(ResultSet resultSet, int rowNumber) throws SQLException {
@@ -164,6 +450,40 @@ public class FilmDbStorage implements FilmStorage {
         return film;
     }
 
+    private Film mapRowToFilmAggregate(ResultSet resultSet, int rowNumber) throws SQLException {
+        Film film = mapRowToFilm(resultSet, rowNumber);
+
+        Object[] genreIds = arrayOf(resultSet, "genre_ids");
+        Object[] genreNames = arrayOf(resultSet, "genre_names");
+        Set<Genre> genres = new LinkedHashSet<>();
+        for (int i = 0; i < genreIds.length; i++) {
+            genres.add(new Genre(((Number) genreIds[i]).intValue(), (String) genreNames[i]));
+        }
+        film.setGenres(genres);
+
+        Object[] directorIds = arrayOf(resultSet, "director_ids");
+        Object[] directorNames = arrayOf(resultSet, "director_names");
+        List<Director> directors = new ArrayList<>(directorIds.length);
+        for (int i = 0; i < directorIds.length; i++) {
+            directors.add(new Director(((Number) directorIds[i]).longValue(), (String) directorNames[i]));
+        }
+        film.setDirectors(directors);
+        return film;
+    }
+
+    // ARRAY_AGG по пустому набору строк возвращает NULL
+    private Object[] arrayOf(ResultSet resultSet, String column) throws SQLException {
+        Array array = resultSet.getArray(column);
+        if (array == null) {
+            return new Object[0];
+        }
+        try {
+            return (Object[]) array.getArray();
+        } finally {
+            array.free();
+        }
+    }
+
     public void saveFilmGenres(Film film) {
         String deleteSql = "DELETE FROM film_genres WHERE film_id = ?";
         jdbcTemplate.update(deleteSql, film.getId());
@@ -198,27 +518,21 @@ public class FilmDbStorage implements FilmStorage {
 
     public List<Film> getPopularFilms(int count) {
         String sql = """
-                SELECT f.id, f.name, f.description, f.release_date, f.duration, f.mpa_id, m.name AS mpa_name, COUNT(fl.user_id) AS likes
+                SELECT f.id, f.name, f.description, f.release_date, f.duration, f.mpa_id, m.name AS mpa_name
                 FROM films f
-                LEFT JOIN film_likes fl ON f.id = fl.film_id
                 LEFT JOIN mpa m ON f.mpa_id = m.id
-                GROUP BY f.id, f.name, f.description, f.release_date, f.duration, f.mpa_id, m.name
-                ORDER BY likes DESC
+                ORDER BY f.like_count DESC, f.id
                 LIMIT ?
                 """;
 
         List<Film> films = jdbcTemplate.query(sql, this::mapRowToFilm, count);
 
-        if (films.isEmpty()) return films;
-
-        loadGenresForFilms(films);
-
-        return films;
+        return enrich(films);
     }
 
     public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
         // 1. Получаем ID популярных фильмов
-        List<Long> topIds = fetchPopularIds(count, genreId, year);
+        List<Long> topIds = getPopularFilmIds(count, genreId, year);
         if (topIds.isEmpty()) return Collections.emptyList();
 
         // 2. Загружаем фильмы
@@ -247,28 +561,15 @@ public class FilmDbStorage implements FilmStorage {
         }
         films.sort(Comparator.comparingInt(f -> rank.getOrDefault(f.getId(), Integer.MAX_VALUE)));
 
-        // 3. Подгружаем жанры
-        Set<Long> ids = films.stream().map(Film::getId).collect(Collectors.toSet());
-        Map<Long, Set<Genre>> genresByFilm = loadGenresByFilmIds(ids);
-        for (Film f : films) {
-            f.setGenres(genresByFilm.getOrDefault(f.getId(), Collections.emptySet()));
-        }
-
-        // 4. Подгружаем режиссёров
-        Map<Long, Set<Director>> directorsByFilm = loadDirectorsByFilmIds(ids);
-        for (Film f : films) {
-            Set<Director> directors = directorsByFilm.getOrDefault(f.getId(), Collections.emptySet());
-            f.setDirectors(new ArrayList<>(directors));
-        }
-
-        return films;
+        // 3. Подгружаем жанры и режиссёров
+        return enrich(films);
     }
 
-    private List<Long> fetchPopularIds(int count, Integer genreId, Integer year) {
+    @Override
+    public List<Long> getPopularFilmIds(int count, Integer genreId, Integer year) {
         StringBuilder sql = new StringBuilder("""
                 SELECT f.id
                 FROM films f
-                LEFT JOIN film_likes fl ON fl.film_id = f.id
                 """);
 
         List<Object> params = new ArrayList<>();
@@ -293,8 +594,7 @@ public class FilmDbStorage implements FilmStorage {
         }
 
         sql.append("""
-                GROUP BY f.id
-                ORDER BY COUNT(fl.user_id) DESC, f.id
+                ORDER BY f.like_count DESC, f.id
                 LIMIT ?
                 """);
         params.add(count);
@@ -306,60 +606,6 @@ public class FilmDbStorage implements FilmStorage {
         );
     }
 
-    private Map<Long, Set<Genre>> loadGenresByFilmIds(Set<Long> filmIds) {
-        if (filmIds == null || filmIds.isEmpty()) {
-            return Collections.emptyMap();
-        }
-
-        String placeholders = filmIds.stream()
-                .map(id -> "?")
-                .collect(Collectors.joining(","));
-
-        String sql = """
-                SELECT fg.film_id, g.id, g.name
-                FROM film_genres fg
-                JOIN genres g ON g.id = fg.genre_id
-                WHERE fg.film_id IN (""" + placeholders + ")";
-
-        Map<Long, Set<Genre>> result = new HashMap<>();
-        jdbcTemplate.query(sql, filmIds.toArray(), rs -> {
-            long filmId = rs.getLong("film_id");
-            Genre genre = new Genre(rs.getInt("id"), rs.getString("name"));
-            result.computeIfAbsent(filmId, k -> new LinkedHashSet<>()).add(genre);
-        });
-
-        return result;
-    }
-
-    private Map<Long, Set<Director>> loadDirectorsByFilmIds(Set<Long> filmIds) {
-        if (filmIds == null || filmIds.isEmpty()) {
-            return Collections.emptyMap();
-        }
-
-        String placeholders = filmIds.stream()
-                .map(id -> "?")
-                .collect(Collectors.joining(","));
-
-        String sql = """
-                SELECT fd.film_id, d.director_id, d.name
-                FROM film_directors fd
-                JOIN directors d ON d.director_id = fd.director_id
-                WHERE fd.film_id IN (""" + placeholders + ")";
-
-        Map<Long, Set<Director>> result = new HashMap<>();
-
-        jdbcTemplate.query(sql, filmIds.toArray(), rs -> {
-            long filmId = rs.getLong("film_id");
-            Director director = new Director(
-                    rs.getLong("director_id"),
-                    rs.getString("name")
-            );
-            result.computeIfAbsent(filmId, k -> new LinkedHashSet<>()).add(director);
-        });
-
-        return result;
-    }
-
     @Override
     public List<Film> getFilmsByDirectorSortedByYear(Long directorId) {
         String sql = """
@@ -373,33 +619,23 @@ public class FilmDbStorage implements FilmStorage {
 
         List<Film> films = jdbcTemplate.query(sql, this::mapRowToFilm, directorId);
 
-        if (!films.isEmpty()) {
-            loadGenresForFilms(films);
-        }
-
-        return films;
+        return enrich(films);
     }
 
     @Override
     public List<Film> getFilmsByDirectorSortedByLikes(Long directorId) {
         String sql = """
-                SELECT f.id, f.name, f.description, f.release_date, f.duration, f.mpa_id, m.name AS mpa_name, COUNT(fl.user_id) AS likes
+                SELECT f.id, f.name, f.description, f.release_date, f.duration, f.mpa_id, m.name AS mpa_name
                 FROM films f
                 JOIN film_directors fd ON f.id = fd.film_id
                 LEFT JOIN mpa m ON f.mpa_id = m.id
-                LEFT JOIN film_likes fl ON f.id = fl.film_id
                 WHERE fd.director_id = ?
-                GROUP BY f.id, f.name, f.description, f.release_date, f.duration, f.mpa_id, m.name
-                ORDER BY likes DESC
+                ORDER BY f.like_count DESC, f.id
                 """;
 
         List<Film> films = jdbcTemplate.query(sql, this::mapRowToFilm, directorId);
 
-        if (!films.isEmpty()) {
-            loadGenresForFilms(films);
-        }
-
-        return films;
+        return enrich(films);
     }
 
     @Override
@@ -437,21 +673,12 @@ public class FilmDbStorage implements FilmStorage {
                      GROUP BY film_id
                      HAVING COUNT(user_id) = 2
                 ) common_likes ON common_likes.film_id = f.id
-                JOIN (
-                     SELECT film_id, COUNT(*) AS total_likes
-                     FROM film_likes
-                     GROUP BY film_id
-                ) fl ON fl.film_id = f.id
-                ORDER BY fl.total_likes DESC
+                ORDER BY f.like_count DESC, f.id
                 """;
 
         List<Film> films = jdbcTemplate.query(sql, this::mapRowToFilm, userId, friendId);
 
-        if (films.isEmpty()) return films;
-
-        loadGenresForFilms(films);
-
-        return films;
+        return enrich(films);
     }
 
     @Override
@@ -464,27 +691,18 @@ public class FilmDbStorage implements FilmStorage {
                 f.duration,
                 f.mpa_id,
                 m.name AS mpa_name,
-                fl.total_likes
+                f.like_count
                 FROM films f
                 JOIN mpa m ON f.mpa_id = m.id
-                LEFT JOIN (
-                       SELECT film_id, COUNT(*) AS total_likes
-                       FROM film_likes
-                       GROUP BY film_id
-                ) fl ON fl.film_id = f.id
                 WHERE LOWER(f.name) LIKE ?
-                ORDER BY fl.total_likes DESC
+                ORDER BY f.like_count DESC, f.id
                 """;
         String likeQuery = "%" + query.toLowerCase() + "%";
 
 
         List<Film> films = jdbcTemplate.query(sql, this::mapRowToFilm, likeQuery);
 
-        if (films.isEmpty()) return films;
-
-        loadGenresForFilms(films);
-
-        return films;
+        return enrich(films);
     }
 
     @Override
@@ -497,26 +715,17 @@ public class FilmDbStorage implements FilmStorage {
                 f.duration,
                 f.mpa_id,
                 m.name AS mpa_name,
-                fl.total_likes
+                f.like_count
                 FROM films f
                 JOIN mpa m ON f.mpa_id = m.id
                 JOIN film_directors fd ON f.id = fd.film_id
                 JOIN directors d ON fd.director_id = d.director_id
-                LEFT JOIN (
-                       SELECT film_id, COUNT(*) AS total_likes
-                       FROM film_likes
-                       GROUP BY film_id
-                ) fl ON fl.film_id = f.id
                 WHERE LOWER(d.name) LIKE ?
-                ORDER BY fl.total_likes DESC
+                ORDER BY f.like_count DESC, f.id
                 """;
         String likeQuery = "%" + query.toLowerCase() + "%";
         List<Film> films = jdbcTemplate.query(sql, this::mapRowToFilm, likeQuery);
-        if (films.isEmpty()) return films;
-
-        loadGenresForFilms(films);
-
-        return films;
+        return enrich(films);
     }
 
     @Override
@@ -529,42 +738,57 @@ public class FilmDbStorage implements FilmStorage {
                 f.duration,
                 f.mpa_id,
                 m.name AS mpa_name,
-                fl.total_likes
+                f.like_count
                 FROM films f
                 JOIN mpa m ON f.mpa_id = m.id
                 LEFT JOIN film_directors fd ON f.id = fd.film_id
                 LEFT JOIN directors d ON fd.director_id = d.director_id
-                LEFT JOIN (
-                       SELECT film_id, COUNT(*) AS total_likes
-                       FROM film_likes
-                       GROUP BY film_id
-                ) fl ON fl.film_id = f.id
                 WHERE LOWER(f.name) LIKE ? OR LOWER(d.name) LIKE ?
-                ORDER BY fl.total_likes DESC
+                ORDER BY f.like_count DESC, f.id
                 """;
         String likeQuery = "%" + query.toLowerCase() + "%";
         List<Film> films = jdbcTemplate.query(sql, this::mapRowToFilm, likeQuery, likeQuery);
-        if (films.isEmpty()) return films;
-
-        loadGenresForFilms(films);
-
-        return films;
+        return enrich(films);
     }
 
-    private void loadGenresForFilms(List<Film> films) {
-        if (films.isEmpty()) return;
-
-        // Собираем ID фильмов
-        Set<Long> filmIds = films.stream()
-                .map(Film::getId)
-                .collect(Collectors.toSet());
-
-        // Одним запросом тянем все жанры
-        Map<Long, Set<Genre>> genresByFilm = loadGenresByFilmIds(filmIds);
+    // Единый этап дозагрузки для любых списков фильмов: жанры и режиссёры тянутся
+    // одним запросом каждые на всю пачку, MPA уже пришёл в основном запросе через JOIN
+    private List<Film> enrich(List<Film> films) {
+        if (films.isEmpty()) return films;
 
-        // Расставляем жанры для каждого фильма
+        Map<Long, Film> byId = new HashMap<>();
         for (Film film : films) {
-            film.setGenres(genresByFilm.getOrDefault(film.getId(), Collections.emptySet()));
+            film.setGenres(new LinkedHashSet<>());
+            film.setDirectors(new ArrayList<>());
+            byId.put(film.getId(), film);
         }
+        Object[] ids = byId.keySet().toArray();
+        String placeholders = String.join(",", Collections.nCopies(ids.length, "?"));
+
+        String genresSql = """
+                SELECT fg.film_id, g.id, g.name
+                FROM film_genres fg
+                JOIN genres g ON g.id = fg.genre_id
+                WHERE fg.film_id IN (%s)
+                ORDER BY fg.film_id, g.id
+                """.formatted(placeholders);
+        jdbcTemplate.query(genresSql, rs -> {
+            byId.get(rs.getLong("film_id")).getGenres()
+                    .add(new Genre(rs.getInt("id"), rs.getString("name")));
+        }, ids);
+
+        String directorsSql = """
+                SELECT fd.film_id, d.director_id, d.name
+                FROM film_directors fd
+                JOIN directors d ON d.director_id = fd.director_id
+                WHERE fd.film_id IN (%s)
+                ORDER BY fd.film_id, d.director_id
+                """.formatted(placeholders);
+        jdbcTemplate.query(directorsSql, rs -> {
+            byId.get(rs.getLong("film_id")).getDirectors()
+                    .add(new Director(rs.getLong("director_id"), rs.getString("name")));
+        }, ids);
+
+        return films;
     }
 }
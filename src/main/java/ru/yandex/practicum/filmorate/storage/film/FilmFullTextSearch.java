@@ -0,0 +1,217 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/*
+ * Полнотекстовый поиск фильмов на встроенном индексе H2 (org.h2.fulltext.FullText).
+ * Индексы FILMS(NAME, DESCRIPTION) и DIRECTORS(NAME) создаются при старте, только если режим
+ * включён (filmorate.search.fulltext.enabled); дальше H2 поддерживает их сам триггерами на вставку,
+ * изменение и удаление строк. Триггеры замедляют каждую запись в films и directors, поэтому
+ * при выключенном режиме индексы, оставшиеся в файле БД от прошлого запуска, удаляются вместе с триггерами.
+ * FT_SEARCH_DATA перечитывает каждую найденную строку по одной: редкое слово находится быстрее,
+ * чем LIKE, а частое — заметно медленнее. Ищутся целые слова, а не подстроки, поэтому поиск
+ * вызывается только по явному запросу (match=words), а не вместо обычного.
+ * Каждое слово запроса ищется через FT_SEARCH_DATA отдельно: слова могут оказаться в разных
+ * таблицах («nolan inception» — режиссёр и название). Фильм подходит, если каждое слово нашлось
+ * в нём самом или у одного из его режиссёров.
+ * Нативный индекс H2 не считает релевантность (score всегда 1), поэтому кандидатов ранжируем сами:
+ * слово в названии весит больше, чем в имени режиссёра или в описании, при равной релевантности
+ * выше фильм с большим числом лайков.
+ */
+@Slf4j
+@Component
+public class FilmFullTextSearch implements InitializingBean {
+    private static final int TITLE_WEIGHT = 3;
+    private static final int DIRECTOR_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    // У обеих таблиц ключ — один столбец id, он приходит первым элементом KEYS
+    private static final String FT_SQL = """
+            SELECT "TABLE" AS tbl, KEYS[1] AS id
+            FROM FT_SEARCH_DATA(?, 0, 0)
+            WHERE "SCHEMA" = 'PUBLIC'
+            """;
+
+    private static final String DIRECTOR_FILMS_SQL = """
+            SELECT film_id, director_id
+            FROM film_directors
+            WHERE director_id IN (%s)
+            """;
+
+    private static final String CANDIDATES_SQL = """
+            SELECT f.id,
+                   f.name,
+                   f.description,
+                   f.like_count,
+                   (SELECT LISTAGG(d.name, ' ')
+                    FROM film_directors fd
+                    JOIN directors d ON d.director_id = fd.director_id
+                    WHERE fd.film_id = f.id) AS director_names
+            FROM films f
+            WHERE %s
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+
+    public FilmFullTextSearch(JdbcTemplate jdbcTemplate,
+                              @Value("${filmorate.search.fulltext.enabled:false}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (enabled) {
+            createIndexes();
+        } else {
+            dropIndexes();
+        }
+    }
+
+    // Создаёт недостающие индексы; FT_CREATE_INDEX сразу индексирует строки, которые уже есть в таблице
+    public void createIndexes() {
+        jdbcTemplate.execute("CREATE ALIAS IF NOT EXISTS FT_INIT FOR 'org.h2.fulltext.FullText.init'");
+        jdbcTemplate.execute("CALL FT_INIT()");
+        if (!indexExists("FILMS")) {
+            jdbcTemplate.execute("CALL FT_CREATE_INDEX('PUBLIC', 'FILMS', 'NAME,DESCRIPTION')");
+        }
+        if (!indexExists("DIRECTORS")) {
+            jdbcTemplate.execute("CALL FT_CREATE_INDEX('PUBLIC', 'DIRECTORS', 'NAME')");
+        }
+        log.info("Полнотекстовые индексы фильмов и режиссёров готовы");
+    }
+
+    // Удаляет индексы и их триггеры, если полнотекстовый поиск когда-то включали
+    public void dropIndexes() {
+        if (!ftSchemaExists()) return;
+        jdbcTemplate.execute("CALL FT_DROP_ALL()");
+        log.info("Полнотекстовые индексы удалены: режим поиска выключен");
+    }
+
+    // id найденных фильмов: релевантность по убыванию, затем лайки по убыванию, затем id
+    public List<Long> search(String query, boolean byTitle, boolean byDirector) {
+        Set<String> words = words(query);
+        if (words.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // слово -> фильмы, где оно нашлось само, и режиссёры, у которых оно в имени
+        Map<String, Set<Long>> filmsByWord = new HashMap<>();
+        Map<String, Set<Long>> directorsByWord = new HashMap<>();
+        for (String word : words) {
+            Set<Long> films = new HashSet<>();
+            Set<Long> directors = new HashSet<>();
+            jdbcTemplate.query(FT_SQL, rs -> {
+                String table = rs.getString("tbl");
+                if (byTitle && table.equals("FILMS")) {
+                    films.add(Long.parseLong(rs.getString("id")));
+                } else if (byDirector && table.equals("DIRECTORS")) {
+                    directors.add(Long.parseLong(rs.getString("id")));
+                }
+            }, word);
+            if (films.isEmpty() && directors.isEmpty()) {
+                return new ArrayList<>();
+            }
+            filmsByWord.put(word, films);
+            directorsByWord.put(word, directors);
+        }
+
+        Set<Long> allDirectors = new HashSet<>();
+        directorsByWord.values().forEach(allDirectors::addAll);
+        Map<Long, Set<Long>> filmsByDirector = new HashMap<>();
+        if (!allDirectors.isEmpty()) {
+            jdbcTemplate.query(DIRECTOR_FILMS_SQL.formatted(placeholders(allDirectors.size())), rs -> {
+                filmsByDirector.computeIfAbsent(rs.getLong("director_id"), k -> new HashSet<>())
+                        .add(rs.getLong("film_id"));
+            }, allDirectors.toArray());
+        }
+
+        Set<Long> candidates = null;
+        for (String word : words) {
+            Set<Long> matched = new HashSet<>(filmsByWord.get(word));
+            for (Long directorId : directorsByWord.get(word)) {
+                matched.addAll(filmsByDirector.getOrDefault(directorId, Set.of()));
+            }
+            if (candidates == null) {
+                candidates = matched;
+            } else {
+                candidates.retainAll(matched);
+            }
+            if (candidates.isEmpty()) {
+                return new ArrayList<>();
+            }
+        }
+        List<Object> params = new ArrayList<>(candidates);
+
+        Map<Long, Integer> relevance = new HashMap<>();
+        Map<Long, Integer> likes = new HashMap<>();
+        jdbcTemplate.query(CANDIDATES_SQL.formatted("f.id IN (" + placeholders(params.size()) + ")"), rs -> {
+            long id = rs.getLong("id");
+            Set<String> title = words(rs.getString("name"));
+            Set<String> directors = words(rs.getString("director_names"));
+            Set<String> description = words(rs.getString("description"));
+            int score = 0;
+            for (String word : words) {
+                if (byTitle && title.contains(word)) {
+                    score += TITLE_WEIGHT;
+                } else if (byDirector && directors.contains(word)) {
+                    score += DIRECTOR_WEIGHT;
+                } else if (byTitle && description.contains(word)) {
+                    score += DESCRIPTION_WEIGHT;
+                }
+            }
+            // ноль — строка индекса устарела (TRUNCATE идёт мимо триггеров), фильм не подходит
+            if (score > 0) {
+                relevance.put(id, score);
+                likes.put(id, rs.getInt("like_count"));
+            }
+        }, params.toArray());
+
+        List<Long> ranked = new ArrayList<>(relevance.keySet());
+        ranked.sort(Comparator.comparing((Long id) -> relevance.get(id)).reversed()
+                .thenComparing(Comparator.comparing((Long id) -> likes.get(id)).reversed())
+                .thenComparing(Comparator.naturalOrder()));
+        return ranked;
+    }
+
+    // Полная перестройка индексов — нужна после TRUNCATE или массовой заливки в обход триггеров
+    public void reindex() {
+        jdbcTemplate.execute("CALL FT_REINDEX()");
+        log.info("Полнотекстовый индекс фильмов перестроен");
+    }
+
+    private boolean ftSchemaExists() {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SCHEMATA WHERE SCHEMA_NAME = 'FT'", Integer.class);
+        return count != null && count > 0;
+    }
+
+    private boolean indexExists(String table) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM FT.INDEXES WHERE \"SCHEMA\" = 'PUBLIC' AND \"TABLE\" = ?", Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    private String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    // Разбиение на слова как у FullText H2: всё, кроме букв и цифр, — разделители
+    private Set<String> words(String text) {
+        Set<String> result = new HashSet<>();
+        if (text == null) return result;
+        for (String word : text.toUpperCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                result.add(word);
+            }
+        }
+        return result;
+    }
+}
@@ -1,10 +1,14 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
@@ -14,13 +18,44 @@ public interface FilmStorage {
 
     List<Film> findAll();
 
+    // Страница каталога по возрастанию id, строго после afterId (null — с начала)
+    List<Film> findPage(Long afterId, int limit);
+
+    // Потоковая выгрузка всего каталога по возрастанию id, без накопления списка в памяти
+    void streamAll(Consumer<Film> consumer);
+
     Optional<Film> findById(Long filmId);
 
+    // Проверки существования по первичному ключу — без жанров, режиссёров и MPA
+    boolean existsById(Long filmId);
+
     List<Film> findFilmsByIds(Set<Long> filmIds);
 
-    void addLike(Long filmId, Long userId);
+    // true — лайк добавлен или удалён, false — он уже был (или его не было)
+    boolean addLike(Long filmId, Long userId);
+
+    boolean removeLike(Long filmId, Long userId);
+
+    // Пакет лайков и их отмен в исходном порядке; для каждой операции — изменила ли она данные
+    boolean[] applyLikes(List<LikeOperation> operations);
+
+    // Какие из переданных id фильмов существуют — одним запросом
+    Set<Long> findExistingIds(Collection<Long> filmIds);
 
-    void removeLike(Long filmId, Long userId);
+    // Лайки по фильмам без событий LIKE, которые ещё ждут разноса в outbox: столько лайков
+    // увидят индексы в памяти, когда диспетчер применит уже разнесённые события. Один запрос — один снимок
+    Map<Long, Long> getDispatchedLikeCounts();
+
+    // Узкие выборки для индексов в памяти: без сборки фильма с жанрами, режиссёрами и MPA
+    Map<Long, Integer> getReleaseYears();
+
+    Map<Long, Set<Integer>> getFilmGenreIds();
+
+    Map<Long, String> getFilmTitles();
+
+    Map<Long, List<Long>> getFilmDirectorIds();
+
+    int reconcileLikeCounts();
 
     void saveFilmGenres(Film film);
 
@@ -28,6 +63,8 @@ public interface FilmStorage {
 
     List<Film> getPopularFilms(int count, Integer genreId, Integer year);
 
+    List<Long> getPopularFilmIds(int count, Integer genreId, Integer year);
+
     List<Film> getFilmsByDirectorSortedByYear(Long directorId);
 
     List<Film> getFilmsByDirectorSortedByLikes(Long directorId);
@@ -1,8 +1,11 @@
 package ru.yandex.practicum.filmorate.storage.genre;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.cache.CacheStatsProvider;
+import ru.yandex.practicum.filmorate.cache.LruCache;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
 
@@ -10,12 +13,20 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+// Жанры почти не меняются, поэтому справочные чтения идут через кеш в памяти
 @Repository
-public class GenreDbStorage implements GenreStorage {
+public class GenreDbStorage implements GenreStorage, CacheStatsProvider {
+    private static final String ALL = "all";
+
     private final JdbcTemplate jdbc;
+    private final LruCache<Integer, Genre> byId;
+    private final LruCache<String, List<Genre>> all;
 
-    public GenreDbStorage(JdbcTemplate jdbc) {
+    public GenreDbStorage(JdbcTemplate jdbc,
+                          @Value("${filmorate.cache.reference.max-size:1000}") int maxSize) {
         this.jdbc = jdbc;
+        this.byId = new LruCache<>("genres", maxSize);
+        this.all = new LruCache<>("genres.all", 1);
     }
 
     private Genre mapRowToGenre(java.sql.ResultSet resultSet, int rowNum) throws java.sql.SQLException {
@@ -27,19 +38,19 @@ public class GenreDbStorage implements GenreStorage {
 
     @Override
     public List<Genre> findAll() {
-        String sql = "SELECT id, name FROM genres ORDER BY id";
-        return jdbc.query(sql, this::mapRowToGenre);
+        return all.get(ALL, key -> {
+            String sql = "SELECT id, name FROM genres ORDER BY id";
+            return List.copyOf(jdbc.query(sql, this::mapRowToGenre));
+        });
     }
 
     @Override
     public Genre findById(Integer id) {
-        String sql = "SELECT id, name FROM genres WHERE id = ?";
-
-        try {
-            return jdbc.queryForObject(sql, this::mapRowToGenre, id);
-        } catch (EmptyResultDataAccessException e) {
+        Genre genre = byId.get(id, this::loadById);
+        if (genre == null) {
             throw new NotFoundException("Жанр с id = " + id + " не найден");
         }
+        return genre;
     }
 
     @Override
@@ -56,11 +67,28 @@ public class GenreDbStorage implements GenreStorage {
             return Set.of();
         }
 
-        String placeholders = String.join(",", java.util.Collections.nCopies(ids.size(), "?"));
-        String sql = "SELECT id FROM genres WHERE id IN (" + placeholders + ")";
-        List<Integer> foundIds = jdbc.queryForList(sql, Integer.class, ids.toArray());
-        return new HashSet<>(foundIds);
+        // проверка по закешированному справочнику, без запроса в БД
+        Set<Integer> existingIds = new HashSet<>();
+        for (Integer id : ids) {
+            if (id != null && byId.get(id, this::loadById) != null) {
+                existingIds.add(id);
+            }
+        }
+        return existingIds;
+    }
 
+    @Override
+    public List<LruCache.Stats> cacheStats() {
+        return List.of(byId.stats(), all.stats());
+    }
+
+    private Genre loadById(Integer id) {
+        String sql = "SELECT id, name FROM genres WHERE id = ?";
+        try {
+            return jdbc.queryForObject(sql, this::mapRowToGenre, id);
+        } catch (EmptyResultDataAccessException e) {
+            return null;
+        }
     }
 }
 
@@ -1,8 +1,11 @@
 package ru.yandex.practicum.filmorate.storage.mpa;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.cache.CacheStatsProvider;
+import ru.yandex.practicum.filmorate.cache.LruCache;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 
@@ -11,13 +14,20 @@ import java.sql.SQLException;
 import java.util.List;
 
 
+// Справочник MPA почти не меняется, поэтому чтения идут через кеш в памяти
 @Repository
-public class MpaDbStorage implements MpaStorage {
+public class MpaDbStorage implements MpaStorage, CacheStatsProvider {
+    private static final String ALL = "all";
 
     private final JdbcTemplate jdbcTemplate;
+    private final LruCache<Integer, MpaRating> byId;
+    private final LruCache<String, List<MpaRating>> all;
 
-    public MpaDbStorage(JdbcTemplate jdbcTemplate) {
+    public MpaDbStorage(JdbcTemplate jdbcTemplate,
+                        @Value("${filmorate.cache.reference.max-size:1000}") int maxSize) {
         this.jdbcTemplate = jdbcTemplate;
+        this.byId = new LruCache<>("mpa", maxSize);
+        this.all = new LruCache<>("mpa.all", 1);
     }
 
     private MpaRating mapRowToMpaRating(ResultSet resultSet, int rowIndex) throws SQLException {
@@ -29,24 +39,37 @@ public class MpaDbStorage implements MpaStorage {
 
     @Override
     public List<MpaRating> findAll() {
-        String sql = "SELECT id, name FROM mpa ORDER BY id";
-        return jdbcTemplate.query(sql, this::mapRowToMpaRating);
+        return all.get(ALL, key -> {
+            String sql = "SELECT id, name FROM mpa ORDER BY id";
+            return List.copyOf(jdbcTemplate.query(sql, this::mapRowToMpaRating));
+        });
     }
 
     @Override
     public MpaRating findById(int id) {
-        String sql = "SELECT id, name FROM mpa WHERE id = ?";
-        try {
-            return jdbcTemplate.queryForObject(sql, this::mapRowToMpaRating, id);
-        } catch (EmptyResultDataAccessException e) {
+        MpaRating rating = byId.get(id, this::loadById);
+        if (rating == null) {
             throw new NotFoundException("MPA с id = " + id + " не найден");
         }
+        return rating;
     }
 
     @Override
     public boolean existsById(int id) {
-        String sql = "SELECT COUNT(*) FROM mpa WHERE id = ?";
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, id);
-        return count != null && count > 0;
+        return byId.get(id, this::loadById) != null;
+    }
+
+    @Override
+    public List<LruCache.Stats> cacheStats() {
+        return List.of(byId.stats(), all.stats());
+    }
+
+    private MpaRating loadById(int id) {
+        String sql = "SELECT id, name FROM mpa WHERE id = ?";
+        try {
+            return jdbcTemplate.queryForObject(sql, this::mapRowToMpaRating, id);
+        } catch (EmptyResultDataAccessException e) {
+            return null;
+        }
     }
 }
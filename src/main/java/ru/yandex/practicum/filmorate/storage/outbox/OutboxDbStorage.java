@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.storage.outbox;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.OutboxEvent;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@Component("outboxDbStorage")
+@RequiredArgsConstructor
+public class OutboxDbStorage implements OutboxStorage {
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void add(OutboxEvent event) {
+        String sql = "INSERT INTO outbox (event_type, operation, user_id, entity_id, created_at) " +
+                "VALUES (?, ?, ?, ?, ?)";
+        jdbcTemplate.update(sql, event.getEventType(), event.getOperation(), event.getUserId(),
+                event.getEntityId(), event.getCreatedAt());
+    }
+
+    @Override
+    public void addAll(List<OutboxEvent> events) {
+        if (events.isEmpty()) return;
+        String sql = "INSERT INTO outbox (event_type, operation, user_id, entity_id, created_at) " +
+                "VALUES (?, ?, ?, ?, ?)";
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(sql, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        OutboxEvent event = events.get(i);
+                        ps.setString(1, event.getEventType());
+                        ps.setString(2, event.getOperation());
+                        ps.setLong(3, event.getUserId());
+                        ps.setLong(4, event.getEntityId());
+                        ps.setLong(5, event.getCreatedAt());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return events.size();
+                    }
+                }, keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < events.size(); i++) {
+            events.get(i).setId(((Number) keys.get(i).values().iterator().next()).longValue());
+        }
+    }
+
+    @Override
+    public List<OutboxEvent> findBatch(int limit) {
+        String sql = """
+                SELECT id, event_type, operation, user_id, entity_id, created_at
+                FROM outbox
+                WHERE parked = FALSE AND feed_pending = FALSE
+                ORDER BY id
+                LIMIT ?
+                """;
+        return jdbcTemplate.query(sql, this::mapRowToEvent, limit);
+    }
+
+    @Override
+    public void delete(Collection<Long> ids) {
+        if (ids.isEmpty()) return;
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.update("DELETE FROM outbox WHERE id IN (" + placeholders + ")", ids.toArray());
+    }
+
+    @Override
+    public void markFeedPending(Collection<Long> ids) {
+        if (ids.isEmpty()) return;
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.update("UPDATE outbox SET feed_pending = TRUE WHERE id IN (" + placeholders + ")", ids.toArray());
+    }
+
+    @Override
+    public List<OutboxEvent> findFeedPending() {
+        String sql = """
+                SELECT id, event_type, operation, user_id, entity_id, created_at
+                FROM outbox
+                WHERE feed_pending = TRUE
+                ORDER BY id
+                """;
+        return jdbcTemplate.query(sql, this::mapRowToEvent);
+    }
+
+    @Override
+    public boolean recordFailure(long id, int maxAttempts) {
+        jdbcTemplate.update("UPDATE outbox SET attempts = attempts + 1, parked = (attempts + 1 >= ?) WHERE id = ?",
+                maxAttempts, id);
+        List<Boolean> parked = jdbcTemplate.queryForList("SELECT parked FROM outbox WHERE id = ?", Boolean.class, id);
+        return !parked.isEmpty() && parked.get(0);
+    }
+
+    @Override
+    public int count() {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox", Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    private OutboxEvent mapRowToEvent(ResultSet rs, int rowNum) throws SQLException {
+        return OutboxEvent.builder()
+                .id(rs.getLong("id"))
+                .eventType(rs.getString("event_type"))
+                .operation(rs.getString("operation"))
+                .userId(rs.getLong("user_id"))
+                .entityId(rs.getLong("entity_id"))
+                .createdAt(rs.getLong("created_at"))
+                .build();
+    }
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.storage.outbox;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Блокировка разноса outbox. Диспетчер держит её от чтения пачки до применения эффектов в памяти,
+ * поэтому, пока она взята кем-то другим, нет пачки, которая уже закоммичена, но ещё не применена.
+ * Индексы с неидемпотентными счётчиками берут её на время загрузки снимка из БД.
+ */
+@Component
+public class OutboxDispatchLock {
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public void lock() {
+        lock.lock();
+    }
+
+    // Разнос сразу после коммита не ждёт: если блокировка занята, события заберёт опрос
+    public boolean tryLock() {
+        return lock.tryLock();
+    }
+
+    public void unlock() {
+        lock.unlock();
+    }
+}
@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.storage.outbox;
+
+import ru.yandex.practicum.filmorate.model.OutboxEvent;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxStorage {
+
+    void add(OutboxEvent event);
+
+    // Записывает события одним batch-запросом и проставляет им id
+    void addAll(List<OutboxEvent> events);
+
+    // Самые старые необработанные события в порядке записи, без отложенных и ждущих записи в ленту
+    List<OutboxEvent> findBatch(int limit);
+
+    void delete(Collection<Long> ids);
+
+    // Событие разнесено, строка остаётся до записи в ленту асинхронным писателем
+    void markFeedPending(Collection<Long> ids);
+
+    // Разнесённые события, которые ещё не записаны в ленту, в порядке записи
+    List<OutboxEvent> findFeedPending();
+
+    // Засчитывает неудачную попытку; возвращает true, если событие отложено и больше не разносится
+    boolean recordFailure(long id, int maxAttempts);
+
+    int count();
+}
@@ -5,12 +5,14 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Review;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 
 @Repository
@@ -68,50 +70,61 @@ public class ReviewDbStorage implements ReviewStorage {
 
     @Override
     public List<Review> getReviewsByFilmId(Long id, int count) {
-        if (id == null) {
-            String sql = """
-                        SELECT r.* FROM reviews r
-                        ORDER BY r.useful DESC
-                        LIMIT ?
-                    """;
-            return jdbcTemplate.query(sql, this::mapRowToReview, count);
-        } else {
-            String sql = """
-                        SELECT r.* FROM reviews r
-                        WHERE r.film_id = ?
-                        ORDER BY r.useful DESC
-                        LIMIT ?
-                    """;
-            return jdbcTemplate.query(sql, this::mapRowToReview, id, count);
-        }
+        return getReviewsPage(id, null, null, count);
     }
 
+    // Keyset-пагинация по индексам idx_reviews_film_useful / idx_reviews_useful:
+    // следующая страница продолжает диапазон индекса, а не пропускает OFFSET строк
     @Override
-    public void putRate(Long id, Long userId, Boolean isUseful) {
-        Boolean prev = jdbcTemplate.query(
-                "SELECT is_useful FROM review_likes WHERE review_id = ? AND user_id = ?",
-                rs -> rs.next() ? rs.getBoolean(1) : null,
-                id, userId
-        );
-
-        if (prev == null) {
-            jdbcTemplate.update(
-                    "INSERT INTO review_likes (review_id, user_id, is_useful) VALUES (?, ?, ?)",
-                    id, userId, isUseful
-            );
-            jdbcTemplate.update("UPDATE reviews SET useful = useful " + (isUseful ? "+ 1" : "- 1") + " WHERE id = ?", id);
-        } else if (!prev.equals(isUseful)) {
-            jdbcTemplate.update(
-                    "UPDATE review_likes SET is_useful = ? WHERE review_id = ? AND user_id = ?",
-                    isUseful, id, userId
-            );
-            jdbcTemplate.update("UPDATE reviews SET useful = useful " + (isUseful ? "+ 2" : "- 2") + " WHERE id = ?", id);
+    public List<Review> getReviewsPage(Long filmId, Long afterUseful, Long afterId, int count) {
+        StringBuilder sql = new StringBuilder("SELECT r.* FROM reviews r");
+        List<Object> params = new ArrayList<>();
+        if (filmId != null) {
+            // без подсказки H2 выбирает индекс внешнего ключа по film_id и сортирует все отзывы фильма;
+            // film_id в ORDER BY при film_id = ? ничего не меняет, но даёт читать индекс уже отсортированным
+            sql.append(" USE INDEX (idx_reviews_film_useful) WHERE r.film_id = ?");
+            params.add(filmId);
+        } else {
+            sql.append(" WHERE 1 = 1");
         }
+        if (afterUseful != null && afterId != null) {
+            sql.append(" AND (r.useful < ? OR (r.useful = ? AND r.id > ?))");
+            params.add(afterUseful);
+            params.add(afterUseful);
+            params.add(afterId);
+        }
+        sql.append(filmId != null ? " ORDER BY r.film_id, r.useful DESC, r.id" : " ORDER BY r.useful DESC, r.id");
+        sql.append(" LIMIT ?");
+        params.add(count);
+        return jdbcTemplate.query(sql.toString(), this::mapRowToReview, params.toArray());
     }
 
+    // Голос пишется одной транзакцией: блокировка строки отзыва, сдвиг useful на разницу нового
+    // и прежнего голоса (разница считается в SQL) и MERGE голоса. Голоса за один отзыв идут
+    // по очереди, поэтому прежний голос читается уже зафиксированным
+    @Override
+    @Transactional
+    public long putRate(Long id, Long userId, Boolean isUseful) {
+        lockReview(id);
+        String sql = """
+                UPDATE reviews
+                SET useful = useful + ? - COALESCE((
+                    SELECT CASE WHEN is_useful THEN 1 ELSE -1 END
+                    FROM review_likes
+                    WHERE review_id = ? AND user_id = ?
+                ), 0)
+                WHERE id = ?
+                """;
+        jdbcTemplate.update(sql, isUseful ? 1 : -1, id, userId, id);
+        jdbcTemplate.update("MERGE INTO review_likes (review_id, user_id, is_useful) KEY (review_id, user_id) " +
+                "VALUES (?, ?, ?)", id, userId, isUseful);
+        return findUseful(id);
+    }
 
     @Override
-    public void deleteRate(Long id, Long userId, Boolean isUseful) {
+    @Transactional
+    public long deleteRate(Long id, Long userId, Boolean isUseful) {
+        lockReview(id);
         int deleted = jdbcTemplate.update(
                 "DELETE FROM review_likes WHERE review_id = ? AND user_id = ? AND is_useful = ?",
                 id, userId, isUseful
@@ -122,6 +135,14 @@ public class ReviewDbStorage implements ReviewStorage {
                     id
             );
         }
+        return findUseful(id);
     }
-}
 
+    private long findUseful(Long id) {
+        return jdbcTemplate.queryForObject("SELECT useful FROM reviews WHERE id = ?", Long.class, id);
+    }
+
+    private void lockReview(Long id) {
+        jdbcTemplate.queryForList("SELECT id FROM reviews WHERE id = ? FOR UPDATE", Long.class, id);
+    }
+}
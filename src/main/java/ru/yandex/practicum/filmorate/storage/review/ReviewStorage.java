@@ -16,8 +16,12 @@ public interface ReviewStorage {
 
     List<Review> getReviewsByFilmId(Long id, int count);
 
-    void putRate(Long id, Long userId, Boolean isUseful);
+    // До count отзывов строго после (afterUseful, afterId) в порядке useful DESC, id; filmId null — все фильмы
+    List<Review> getReviewsPage(Long filmId, Long afterUseful, Long afterId, int count);
 
-    void deleteRate(Long id, Long userId, Boolean isUseful);
+    // Возвращают новое значение useful отзыва
+    long putRate(Long id, Long userId, Boolean isUseful);
+
+    long deleteRate(Long id, Long userId, Boolean isUseful);
 
 }
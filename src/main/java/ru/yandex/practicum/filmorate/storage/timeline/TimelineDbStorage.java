@@ -0,0 +1,125 @@
+package ru.yandex.practicum.filmorate.storage.timeline;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Feed;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@Component("timelineDbStorage")
+@RequiredArgsConstructor
+public class TimelineDbStorage implements TimelineStorage {
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void fanOut(Feed event, Collection<Long> userIds) {
+        List<Long> recipients = new ArrayList<>(userIds);
+        jdbcTemplate.batchUpdate(
+                "MERGE INTO timelines (user_id, event_id, event_time) KEY (user_id, event_id) VALUES (?, ?, ?)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, recipients.get(i));
+                        ps.setInt(2, event.getEventId());
+                        ps.setLong(3, event.getTimestamp());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return recipients.size();
+                    }
+                }
+        );
+    }
+
+    @Override
+    public List<Feed> findTimeline(long userId, int limit) {
+        String sql = """
+                SELECT f.timestamp, f.userId, f.eventType, f.operation, f.eventId, f.entityId
+                FROM timelines t
+                JOIN feeds f ON f.eventId = t.event_id
+                WHERE t.user_id = ?
+                ORDER BY t.event_time DESC, t.event_id DESC
+                LIMIT ?
+                """;
+        return jdbcTemplate.query(sql, this::mapRowToFeed, userId, limit);
+    }
+
+    @Override
+    public List<Long> findFollowerIds(long authorId) {
+        return jdbcTemplate.queryForList(
+                "SELECT requester_id FROM user_friends WHERE addressee_id = ?", Long.class, authorId);
+    }
+
+    @Override
+    public int countFollowers(long authorId) {
+        List<Integer> count = jdbcTemplate.queryForList(
+                "SELECT follower_count FROM users WHERE id = ?", Integer.class, authorId);
+        return count.isEmpty() ? 0 : count.get(0);
+    }
+
+    @Override
+    public List<Long> findFollowedAuthorsOver(long userId, int threshold) {
+        String sql = """
+                SELECT uf.addressee_id
+                FROM user_friends uf
+                JOIN users u ON u.id = uf.addressee_id
+                WHERE uf.requester_id = ?
+                  AND u.follower_count > ?
+                """;
+        return jdbcTemplate.queryForList(sql, Long.class, userId, threshold);
+    }
+
+    @Override
+    public void backfill(long userId, long authorId, int limit) {
+        String sql = """
+                MERGE INTO timelines (user_id, event_id, event_time) KEY (user_id, event_id)
+                SELECT ?, eventId, timestamp
+                FROM feeds
+                WHERE userId = ?
+                ORDER BY timestamp DESC, eventId DESC
+                LIMIT ?
+                """;
+        jdbcTemplate.update(sql, userId, authorId, limit);
+    }
+
+    @Override
+    public void removeAuthor(long userId, long authorId) {
+        jdbcTemplate.update("DELETE FROM timelines WHERE user_id = ? " +
+                "AND event_id IN (SELECT eventId FROM feeds WHERE userId = ?)", userId, authorId);
+    }
+
+    @Override
+    public int trim(int maxLength) {
+        String sql = """
+                DELETE FROM timelines
+                WHERE (user_id, event_id) IN (
+                    SELECT user_id, event_id FROM (
+                        SELECT user_id, event_id,
+                               ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY event_time DESC, event_id DESC) AS rn
+                        FROM timelines
+                    ) ranked
+                    WHERE rn > ?
+                )
+                """;
+        return jdbcTemplate.update(sql, maxLength);
+    }
+
+    private Feed mapRowToFeed(ResultSet rs, int rowNum) throws SQLException {
+        return Feed.builder()
+                .timestamp(rs.getLong("timestamp"))
+                .userId(rs.getInt("userId"))
+                .eventType(rs.getString("eventType"))
+                .operation(rs.getString("operation"))
+                .eventId(rs.getInt("eventId"))
+                .entityId(rs.getInt("entityId"))
+                .build();
+    }
+}
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.storage.timeline;
+
+import ru.yandex.practicum.filmorate.model.Feed;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface TimelineStorage {
+
+    // Кладёт событие в ленты перечисленных пользователей
+    void fanOut(Feed event, Collection<Long> userIds);
+
+    // Лента пользователя от новых событий к старым
+    List<Feed> findTimeline(long userId, int limit);
+
+    // Подписчики автора — те, кто добавил его в друзья
+    List<Long> findFollowerIds(long authorId);
+
+    // Число подписчиков из users.follower_count, без подсчёта по user_friends
+    int countFollowers(long authorId);
+
+    // Друзья пользователя, у которых подписчиков больше threshold: их события в ленту не раскладываются
+    List<Long> findFollowedAuthorsOver(long userId, int threshold);
+
+    // Подтягивает последние события автора в ленту нового подписчика
+    void backfill(long userId, long authorId, int limit);
+
+    void removeAuthor(long userId, long authorId);
+
+    // Оставляет в каждой ленте не больше maxLength свежих событий, возвращает число удалённых
+    int trim(int maxLength);
+}
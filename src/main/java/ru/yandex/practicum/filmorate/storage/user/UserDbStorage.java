@@ -4,6 +4,7 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 
@@ -63,6 +64,12 @@ public class UserDbStorage implements UserStorage {
         return jdbc.query(sql, this::mapRowToUser);
     }
 
+    @Override
+    public List<User> findPage(Long afterId, int limit) {
+        final String sql = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbc.query(sql, this::mapRowToUser, afterId == null ? 0 : afterId, limit);
+    }
+
     @Override
     public Optional<User> findById(Long userId) {
         final String sql = "SELECT * FROM users WHERE id = ?";
@@ -75,12 +82,15 @@ public class UserDbStorage implements UserStorage {
     public void addFriend(Long userId, Long friendId) {
         final String sql = "INSERT INTO user_friends(requester_id, addressee_id, status_code) VALUES (?, ?, 'CONFIRMED')";
         jdbc.update(sql, userId, friendId);
+        jdbc.update("UPDATE users SET follower_count = follower_count + 1 WHERE id = ?", friendId);
     }
 
     @Override
     public void removeFriend(Long userId, Long friendId) {
         final String sql = "DELETE FROM user_friends WHERE requester_id = ? AND addressee_id = ?";
-        jdbc.update(sql, userId, friendId);
+        if (jdbc.update(sql, userId, friendId) > 0) {
+            jdbc.update("UPDATE users SET follower_count = follower_count - 1 WHERE id = ?", friendId);
+        }
     }
 
     @Override
@@ -105,10 +115,59 @@ public class UserDbStorage implements UserStorage {
         return jdbc.query(sql, this::mapRowToUser, userId, otherUserId);
     }
 
+    @Override
+    public List<User> findByIds(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        return jdbc.query("SELECT * FROM users WHERE id IN (" + placeholders + ") ORDER BY id",
+                this::mapRowToUser, ids.toArray());
+    }
+
+    @Override
+    public Map<Long, Set<Long>> getAllFriendIds() {
+        Map<Long, Set<Long>> result = new HashMap<>();
+        jdbc.query("SELECT requester_id, addressee_id FROM user_friends", rs -> {
+            result.computeIfAbsent(rs.getLong("requester_id"), k -> new HashSet<>())
+                    .add(rs.getLong("addressee_id"));
+        });
+        return result;
+    }
+
+    @Transactional
     public int removeById(Long userId) {
+        // лайки пользователя удалятся каскадом, поэтому заранее уменьшаем счётчики фильмов
+        jdbc.update("UPDATE films SET like_count = like_count - 1 " +
+                "WHERE id IN (SELECT film_id FROM film_likes WHERE user_id = ?)", userId);
+        // и его дружбы — с ними уменьшаются счётчики подписчиков тех, кого он добавил
+        jdbc.update("UPDATE users SET follower_count = follower_count - 1 " +
+                "WHERE id IN (SELECT addressee_id FROM user_friends WHERE requester_id = ?)", userId);
         return jdbc.update("DELETE FROM users WHERE id = ?", userId);
     }
 
+    @Override
+    public boolean existsById(Long userId) {
+        return Boolean.TRUE.equals(jdbc.queryForObject(
+                "SELECT EXISTS(SELECT 1 FROM users WHERE id = ?)", Boolean.class, userId));
+    }
+
+    @Override
+    public boolean existAll(Collection<Long> userIds) {
+        Set<Long> distinct = new HashSet<>(userIds);
+        return findExistingIds(distinct).size() == distinct.size();
+    }
+
+    @Override
+    public Set<Long> findExistingIds(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return Set.of();
+        }
+        String placeholders = String.join(",", Collections.nCopies(userIds.size(), "?"));
+        return new HashSet<>(jdbc.queryForList(
+                "SELECT id FROM users WHERE id IN (" + placeholders + ")", Long.class, userIds.toArray()));
+    }
+
     @Override
     public Map<Long, Set<Long>> getAllUserLikedFilms() {
         String sql = "SELECT user_id, film_id FROM film_likes";
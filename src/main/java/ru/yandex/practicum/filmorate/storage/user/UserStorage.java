@@ -8,12 +8,24 @@ public interface UserStorage {
 
     Collection<User> findAll();
 
+    // Страница пользователей по возрастанию id, строго после afterId (null — с начала)
+    List<User> findPage(Long afterId, int limit);
+
     User create(User user);
 
     User update(User user);
 
     Optional<User> findById(Long id);
 
+    // Проверки существования по первичному ключу — без загрузки строки пользователя
+    boolean existsById(Long id);
+
+    // Все ли пользователи существуют (повторы id не мешают) — одним запросом
+    boolean existAll(Collection<Long> userIds);
+
+    // Какие из переданных id пользователей существуют — одним запросом
+    Set<Long> findExistingIds(Collection<Long> userIds);
+
     void addFriend(Long userId, Long friendId);
 
     void removeFriend(Long userId, Long friendId);
@@ -22,6 +34,12 @@ public interface UserStorage {
 
     List<User> getCommonFriends(Long userId, Long otherId);
 
+    // Пользователи по списку id одним запросом, по возрастанию id
+    List<User> findByIds(Collection<Long> ids);
+
+    // Все дружбы: requesterId -> addresseeId
+    Map<Long, Set<Long>> getAllFriendIds();
+
     int removeById(Long userId);
 
     Map<Long, Set<Long>> getAllUserLikedFilms();
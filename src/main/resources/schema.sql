@@ -12,6 +12,7 @@ CREATE TABLE IF NOT EXISTS films (
     release_date DATE NOT NULL,
     duration INT NOT NULL,
     mpa_id INT,
+    like_count INT NOT NULL DEFAULT 0,
     FOREIGN KEY (mpa_id) REFERENCES mpa(id)
 );
 
@@ -21,7 +22,9 @@ CREATE TABLE IF NOT EXISTS users (
     email VARCHAR(255) NOT NULL UNIQUE,
     login VARCHAR(100) NOT NULL,
     name VARCHAR(150),
-    birthday DATE
+    birthday DATE,
+    -- сколько пользователей добавили его в друзья; ведётся вместе с user_friends
+    follower_count INT NOT NULL DEFAULT 0
 );
 
 -- Таблица лайков фильмов
@@ -78,6 +81,10 @@ CREATE TABLE IF NOT EXISTS reviews (
     CONSTRAINT fk_reviews_film FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE
 );
 
+-- Отзывы читаются в порядке полезности (useful DESC, id) — по фильму и по всему каталогу
+CREATE INDEX IF NOT EXISTS idx_reviews_film_useful ON reviews(film_id, useful DESC, id);
+CREATE INDEX IF NOT EXISTS idx_reviews_useful ON reviews(useful DESC, id);
+
 -- Таблица лайков отзывов
 CREATE TABLE IF NOT EXISTS review_likes (
     review_id INT NOT NULL,
@@ -91,6 +98,7 @@ CREATE TABLE IF NOT EXISTS review_likes (
 -- Индексы
 CREATE INDEX IF NOT EXISTS idx_users_email ON users(email);
 CREATE INDEX IF NOT EXISTS idx_films_name ON films(name);
+CREATE INDEX IF NOT EXISTS idx_films_like_count ON films(like_count DESC, id);
 CREATE INDEX IF NOT EXISTS idx_genres_name ON genres(name);
 
 -- Таблица режиссеров
@@ -117,3 +125,35 @@ CREATE TABLE IF NOT EXISTS feeds (
     operation VARCHAR(10),
     entityId BIGINT NOT NULL
 );
+
+-- Лента пользователя читается по userId в порядке времени — диапазон по индексу вместо полного скана
+CREATE INDEX IF NOT EXISTS idx_feeds_user_time ON feeds(userId, timestamp, eventId);
+
+-- Материализованная лента активности: событие автора раскладывается по лентам подписчиков при записи
+CREATE TABLE IF NOT EXISTS timelines (
+    user_id INT NOT NULL,
+    event_id INT NOT NULL,
+    event_time BIGINT NOT NULL,
+    PRIMARY KEY (user_id, event_id),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+-- Чтение ленты — один диапазон по индексу, подписчики автора — по addressee_id
+CREATE INDEX IF NOT EXISTS idx_timelines_user_time ON timelines(user_id, event_time DESC, event_id DESC);
+CREATE INDEX IF NOT EXISTS idx_user_friends_addressee ON user_friends(addressee_id);
+
+-- Outbox доменных событий: строка пишется в одной транзакции с лайком, дружбой или отзывом,
+-- диспетчер разносит события по ленте, рейтингам и рекомендациям и удаляет обработанные.
+-- attempts — неудачные попытки разнести событие, parked — отложено после max-attempts и больше не разносится;
+-- feed_pending — событие разнесено, но ещё ждёт записи в ленту асинхронным писателем
+CREATE TABLE IF NOT EXISTS outbox (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    event_type VARCHAR(10) NOT NULL,
+    operation VARCHAR(10) NOT NULL,
+    user_id BIGINT NOT NULL,
+    entity_id BIGINT NOT NULL,
+    created_at BIGINT NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    parked BOOLEAN NOT NULL DEFAULT FALSE,
+    feed_pending BOOLEAN NOT NULL DEFAULT FALSE
+);
@@ -0,0 +1,214 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.OutboxEvent;
+import ru.yandex.practicum.filmorate.service.AsyncFeedWriter;
+import ru.yandex.practicum.filmorate.service.TimelineService;
+import ru.yandex.practicum.filmorate.storage.feed.FeedDbStorage;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxDbStorage;
+import ru.yandex.practicum.filmorate.storage.timeline.TimelineDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/*
+ * Асинхронная запись ленты: порядок событий каждого пользователя при записи из нескольких
+ * потоков, раскладка по лентам друзей, повтор неудачной пачки, ошибка flush при потере событий
+ * только у их автора и при остановке писателя, дозапись очереди при остановке, удаление строк outbox после записи.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({TimelineDbStorage.class, FeedDbStorage.class, UserDbStorage.class, OutboxDbStorage.class, TestDataSetup.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ActiveProfiles("test")
+// писатель работает в своём потоке и видит только закоммиченные данные
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AsyncFeedWriterIntegrationTest {
+    private final TimelineDbStorage timelineStorage;
+    private final FeedDbStorage feedStorage;
+    private final UserDbStorage userStorage;
+    private final OutboxDbStorage outboxStorage;
+    private final PlatformTransactionManager transactionManager;
+    private final TestDataSetup testDataSetup;
+
+    private TimelineService timelineService;
+
+    @BeforeEach
+    void setUp() {
+        testDataSetup.cleanAllTables();
+        testDataSetup.insertFriendshipStatuses();
+        testDataSetup.insertTestUsers(4);
+        timelineService = new TimelineService(timelineStorage, feedStorage, userStorage, 1000, 1000);
+    }
+
+    @Test
+    void flush_keepsPerUserOrderAcrossConcurrentWriters() throws Exception {
+        // маленькая очередь — писатели упираются в обратное давление
+        AsyncFeedWriter writer = new AsyncFeedWriter(feedStorage, timelineService, outboxStorage, transactionManager,
+                true, 16, 32, 5, 10_000, 3);
+        testDataSetup.insertFriend(4L, 1L);
+        int perUser = 200;
+
+        List<Thread> threads = new ArrayList<>();
+        for (long userId = 1; userId <= 3; userId++) {
+            long author = userId;
+            threads.add(new Thread(() -> {
+                for (int filmId = 1; filmId <= perUser; filmId++) {
+                    writer.submit(like(author, filmId), 0);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (long userId = 1; userId <= 3; userId++) {
+            writer.flush(userId);
+        }
+
+        for (long userId = 1; userId <= 3; userId++) {
+            assertThat(feedStorage.feeds(userId))
+                    .extracting(Feed::getEntityId)
+                    .containsExactlyElementsOf(IntStream.rangeClosed(1, perUser).boxed().toList());
+        }
+        // событие записано с eventId и разложено подписчику автора
+        assertThat(timelineStorage.findTimeline(4L, 1))
+                .extracting(Feed::getUserId, Feed::getEntityId)
+                .containsExactly(tuple(1, perUser));
+        writer.destroy();
+    }
+
+    @Test
+    void destroy_writesEverythingStillQueued() throws Exception {
+        // длинный интервал: без остановки события лежали бы в очереди
+        AsyncFeedWriter writer = new AsyncFeedWriter(feedStorage, timelineService, outboxStorage, transactionManager,
+                true, 1000, 1000, 60_000, 10_000, 3);
+        for (int filmId = 1; filmId <= 50; filmId++) {
+            writer.submit(like(2L, filmId), 0);
+        }
+
+        writer.destroy();
+
+        assertThat(feedStorage.feeds(2L)).hasSize(50);
+    }
+
+    @Test
+    void failedBatch_isRetried() {
+        AtomicInteger failures = new AtomicInteger(1);
+        TimelineService flaky = new TimelineService(timelineStorage, feedStorage, userStorage, 1000, 1000) {
+            @Override
+            public void publish(Feed event) {
+                if (failures.getAndDecrement() > 0) {
+                    throw new IllegalStateException("сбой раскладки");
+                }
+                super.publish(event);
+            }
+        };
+        AsyncFeedWriter writer = new AsyncFeedWriter(feedStorage, flaky, outboxStorage, transactionManager,
+                true, 16, 32, 5, 10_000, 3);
+
+        writer.submit(like(1L, 7), 0);
+        writer.flush(1L);
+
+        assertThat(feedStorage.feeds(1L)).hasSize(1);
+        assertThat(timelineStorage.findTimeline(1L, 10)).extracting(Feed::getEntityId).containsExactly(7);
+    }
+
+    @Test
+    void flush_servesFeedInsteadOfHangingWhenWriterIsDead() {
+        TimelineService broken = new TimelineService(timelineStorage, feedStorage, userStorage, 1000, 1000) {
+            @Override
+            public void publish(Feed event) {
+                // Error мимо обработки RuntimeException: поток-писатель завершается
+                throw new AssertionError("сбой писателя");
+            }
+        };
+        AsyncFeedWriter writer = new AsyncFeedWriter(feedStorage, broken, outboxStorage, transactionManager,
+                true, 16, 32, 5, 10_000, 3);
+
+        writer.submit(like(1L, 1), 0);
+        writer.flush(1L);
+        writer.submit(like(1L, 2), 0);
+        // flush-timeout 10 с: мёртвый писатель не ждём
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> writer.flush(1L));
+        assertThat(feedStorage.feeds(1L)).isEmpty();
+    }
+
+    @Test
+    void flush_servesFeedWhenEventsWereLost() {
+        TimelineService failsForFirstUser = new TimelineService(timelineStorage, feedStorage, userStorage, 1000, 1000) {
+            @Override
+            public void publish(Feed event) {
+                if (event.getUserId() == 1) {
+                    throw new IllegalStateException("сбой раскладки");
+                }
+                super.publish(event);
+            }
+        };
+        // пачка из одного события: события разных пользователей пишутся отдельно
+        AsyncFeedWriter writer = new AsyncFeedWriter(feedStorage, failsForFirstUser, outboxStorage, transactionManager,
+                true, 16, 1, 5, 10_000, 3);
+
+        writer.submit(like(1L, 1), 0);
+        writer.submit(like(2L, 2), 0);
+
+        // к моменту записи события второго пользователя событие первого уже потеряно
+        writer.flush(2L);
+        assertThat(feedStorage.feeds(2L)).hasSize(1);
+        writer.flush(3L);
+        // потеря только в логе: чтение ленты автора не падает и отдаёт записанное
+        writer.flush(1L);
+        assertThat(feedStorage.feeds(1L)).isEmpty();
+    }
+
+    @Test
+    void write_deletesOutboxRowWithWrittenEvent() throws Exception {
+        AsyncFeedWriter writer = new AsyncFeedWriter(feedStorage, timelineService, outboxStorage, transactionManager,
+                true, 16, 32, 5, 10_000, 3);
+        outboxStorage.add(OutboxEvent.builder()
+                .eventType("LIKE")
+                .operation("ADD")
+                .userId(1L)
+                .entityId(3L)
+                .createdAt(1L)
+                .build());
+        long outboxId = outboxStorage.findBatch(1).get(0).getId();
+        outboxStorage.markFeedPending(List.of(outboxId));
+
+        writer.submit(like(1L, 3), outboxId);
+        writer.flush(1L);
+
+        assertThat(feedStorage.feeds(1L)).extracting(Feed::getEntityId).containsExactly(3);
+        assertThat(outboxStorage.count()).isZero();
+        writer.destroy();
+    }
+
+    private Feed like(long userId, int filmId) {
+        return Feed.builder()
+                .timestamp(System.currentTimeMillis())
+                .userId((int) userId)
+                .eventType("LIKE")
+                .operation("ADD")
+                .entityId(filmId)
+                .build();
+    }
+}
@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Общие друзья и общие фильмы из индексов в памяти совпадают с прежними SQL-запросами
+ * после случайной последовательности дружб и лайков через сервисы (обновления идут через outbox).
+ */
+@SpringBootTest
+@AutoConfigureTestDatabase
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class CommonIndexIntegrationTest {
+    private static final int USERS = 8;
+    private static final int FILMS = 6;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserDbStorage userStorage;
+
+    @Autowired
+    private FilmDbStorage filmStorage;
+
+    @Autowired
+    private FriendGraph friendGraph;
+
+    @Autowired
+    private LikeMatrix likeMatrix;
+
+    @Autowired
+    private TestDataSetup testDataSetup;
+
+    @BeforeEach
+    void setUp() {
+        testDataSetup.cleanAllTables();
+        testDataSetup.insertMpa();
+        testDataSetup.insertGenres();
+        testDataSetup.insertFriendshipStatuses();
+        testDataSetup.insertTestUsers(USERS);
+        testDataSetup.insertTestFilms(FILMS);
+        friendGraph.invalidate();
+        likeMatrix.invalidate();
+    }
+
+    @Test
+    void commonFriendsAndFilms_matchSql() {
+        // первое чтение загружает индексы, дальше они живут только на событиях
+        userService.getCommonFriends(1L, 2L);
+        filmService.getCommonFilms(1L, 2L);
+
+        Random random = new Random(11);
+        // повторное добавление в друзья сервис не допускает — следим за уже существующими парами
+        Set<List<Long>> friendships = new HashSet<>();
+        for (int i = 0; i < 300; i++) {
+            long user = random.nextInt(USERS) + 1;
+            long other = random.nextInt(USERS) + 1;
+            long film = random.nextInt(FILMS) + 1;
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    if (user != other && friendships.add(List.of(user, other))) {
+                        userService.addFriend(user, other);
+                    }
+                }
+                case 1 -> {
+                    friendships.remove(List.of(user, other));
+                    userService.deleteFriend(user, other);
+                }
+                case 2 -> filmService.putLike(film, user);
+                default -> filmService.deleteLike(film, user);
+            }
+        }
+        userService.removeById(USERS + 0L);
+
+        for (long a = 1; a < USERS; a++) {
+            for (long b = 1; b < USERS; b++) {
+                assertThat(userService.getCommonFriends(a, b))
+                        .extracting(User::getId)
+                        .containsExactlyElementsOf(userStorage.getCommonFriends(a, b).stream()
+                                .map(User::getId).sorted().toList());
+                assertThat(filmService.getCommonFilms(a, b))
+                        .extracting(Film::getId)
+                        .containsExactlyElementsOf(filmStorage.findCommonFilms(a, b).stream()
+                                .map(Film::getId).toList());
+            }
+        }
+    }
+}
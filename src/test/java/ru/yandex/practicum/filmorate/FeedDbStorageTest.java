@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate;
 
+import jakarta.validation.ValidationException;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,9 +14,12 @@ import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.storage.feed.FeedDbStorage;
 
 import java.util.Collection;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
@@ -186,4 +190,37 @@ public class FeedDbStorageTest {
         assertEquals("REMOVE", feed.getOperation());
         assertEquals(reviewId, feed.getEntityId());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testFeedsPageShouldWalkBackwardsByCursorInChronologicalOrder() {
+        // Arrange
+        long userId = 1L;
+        for (long filmId = 1; filmId <= 5; filmId++) {
+            feedDbStorage.likeFromUser(filmId, userId);
+        }
+        feedDbStorage.likeFromUser(99L, 2L);
+
+        // Act
+        List<Feed> latest = feedDbStorage.feedsPage(userId, null, 2);
+        List<Feed> older = feedDbStorage.feedsPage(userId, (long) latest.get(0).getEventId(), 2);
+        List<Feed> oldest = feedDbStorage.feedsPage(userId, (long) older.get(0).getEventId(), 2);
+
+        // Assert
+        assertEquals(List.of(4, 5), latest.stream().map(Feed::getEntityId).toList());
+        assertEquals(List.of(2, 3), older.stream().map(Feed::getEntityId).toList());
+        assertEquals(List.of(1), oldest.stream().map(Feed::getEntityId).toList());
+        assertEquals(List.of(1, 2, 3, 4, 5), feedDbStorage.feeds(userId).stream().map(Feed::getEntityId).toList());
+        // чужой или несуществующий курсор — ошибка запроса, а не пустая страница
+        long foreignCursor = latest.get(0).getEventId();
+        assertThrows(ValidationException.class, () -> feedDbStorage.feedsPage(2L, foreignCursor, 2));
+        assertThrows(ValidationException.class, () -> feedDbStorage.feedsPage(userId, 999_999L, 2));
+    }
+
+    @Test
+    public void testFeedsPageShouldUseUserTimeIndex() {
+        String plan = jdbc.queryForObject("EXPLAIN SELECT timestamp, eventId FROM feeds WHERE userId = 1 " +
+                "ORDER BY timestamp DESC, eventId DESC LIMIT 10", String.class);
+
+        assertTrue(plan.toUpperCase().contains("IDX_FEEDS_USER_TIME"), plan);
+    }
+}
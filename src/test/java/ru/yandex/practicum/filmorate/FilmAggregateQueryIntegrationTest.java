@@ -0,0 +1,151 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Загрузка фильмов одним запросом (ARRAY_AGG) должна давать тот же результат,
+ * что и основной запрос с пакетной дозагрузкой жанров и режиссёров.
+ * Замер времени запускается только с -Dfilmorate.benchmarks=true.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import(TestDataSetup.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ActiveProfiles("test")
+class FilmAggregateQueryIntegrationTest {
+    private final JdbcTemplate jdbcTemplate;
+    private final TestDataSetup testDataSetup;
+    private final DataSource dataSource;
+
+    private FilmDbStorage aggregate;
+    private FilmDbStorage batched;
+
+    @BeforeEach
+    void setUp() {
+        testDataSetup.cleanAllTables();
+        testDataSetup.insertGenres();
+        testDataSetup.insertMpa();
+        testDataSetup.insertTestFilms(20);
+        testDataSetup.insertDirectors(3);
+        // у части фильмов несколько жанров и режиссёров, у части — ни одного режиссёра
+        for (int filmId = 1; filmId <= 20; filmId += 2) {
+            testDataSetup.insertFilmDirector(filmId, 1);
+            testDataSetup.insertFilmDirector(filmId, 3);
+            jdbcTemplate.update("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", filmId, 1);
+        }
+        jdbcTemplate.update("DELETE FROM film_genres WHERE film_id = 4");
+
+        aggregate = new FilmDbStorage(jdbcTemplate, true, 500);
+        batched = new FilmDbStorage(jdbcTemplate, false, 500);
+    }
+
+    @Test
+    void aggregateQuery_matchesBatchedEnrichment() {
+        assertThat(sorted(aggregate.findAll())).isEqualTo(sorted(batched.findAll()));
+        assertThat(sorted(aggregate.findFilmsByIds(Set.of(1L, 4L, 7L, 99L))))
+                .isEqualTo(sorted(batched.findFilmsByIds(Set.of(1L, 4L, 7L, 99L))));
+
+        Film film = aggregate.findById(1L).orElseThrow();
+        assertThat(film).isEqualTo(batched.findById(1L).orElseThrow());
+        assertThat(film.getDirectors()).extracting(Director::getId).containsExactly(1L, 3L);
+        assertThat(film.getGenres()).hasSize(2);
+        assertThat(aggregate.findById(4L).orElseThrow().getGenres()).isEmpty();
+        assertThat(aggregate.findById(99L)).isEmpty();
+    }
+
+    @Test
+    void streamAll_mergesGenresAndDirectorsInIdOrder() {
+        // маленькая порция курсора, чтобы слияние шло через несколько выборок
+        FilmDbStorage streaming = new FilmDbStorage(jdbcTemplate, false, 3);
+        List<Film> streamed = new ArrayList<>();
+        streaming.streamAll(streamed::add);
+
+        assertThat(streamed).extracting(Film::getId).isSorted();
+        assertThat(streamed).isEqualTo(sorted(batched.findAll()));
+    }
+
+    @Test
+    void streamAll_emitsFirstFilmBeforeScanCompletes() {
+        // статистика H2 записывает число строк запроса, когда результат вычислен целиком;
+        // к первому фильму все три запроса выгрузки уже запущены, но ни один ещё не дочитан
+        FilmDbStorage streaming = new FilmDbStorage(jdbcTemplate, false, 3);
+        JdbcTemplate statistics = new JdbcTemplate(dataSource);
+        statistics.execute("SET QUERY_STATISTICS TRUE");
+        try {
+            List<Long> streamed = new ArrayList<>();
+            List<Long> rowsAtFirstFilm = new ArrayList<>();
+            streaming.streamAll(film -> {
+                if (streamed.isEmpty()) {
+                    rowsAtFirstFilm.addAll(statistics.queryForList("""
+                            SELECT cumulative_row_count FROM information_schema.query_statistics
+                            WHERE sql_statement LIKE 'SELECT f%ORDER BY f%'
+                              AND sql_statement NOT LIKE '%query_statistics%'
+                            """, Long.class));
+                }
+                streamed.add(film.getId());
+            });
+
+            assertThat(rowsAtFirstFilm).containsExactly(0L, 0L, 0L);
+            assertThat(streamed).hasSize(20).isSorted();
+        } finally {
+            statistics.execute("SET QUERY_STATISTICS FALSE");
+        }
+    }
+
+    @Test
+    void findPage_walksCatalogueByIdCursor() {
+        for (FilmDbStorage storage : List.of(aggregate, batched)) {
+            List<Long> seen = new ArrayList<>();
+            Long cursor = null;
+            List<Film> page;
+            do {
+                page = storage.findPage(cursor, 7);
+                page.forEach(film -> seen.add(film.getId()));
+                cursor = page.isEmpty() ? cursor : page.get(page.size() - 1).getId();
+            } while (page.size() == 7);
+
+            assertThat(seen).hasSize(20).isSorted().doesNotHaveDuplicates();
+            assertThat(storage.findPage(3L, 2)).extracting(Film::getId).containsExactly(4L, 5L);
+            assertThat(storage.findPage(1L, 1).get(0)).isEqualTo(aggregate.findById(2L).orElseThrow());
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "filmorate.benchmarks", matches = "true")
+    void benchmark_findById() {
+        int iterations = 20_000;
+        for (FilmDbStorage storage : List.of(batched, aggregate, batched, aggregate)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                storage.findById((long) (i % 20) + 1);
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.printf("%s: %.1f мкс/вызов%n", storage == aggregate ? "ARRAY_AGG" : "batched",
+                    nanos / 1000.0 / iterations);
+        }
+    }
+
+    private List<Film> sorted(List<Film> films) {
+        return films.stream().sorted(Comparator.comparing(Film::getId)).toList();
+    }
+}
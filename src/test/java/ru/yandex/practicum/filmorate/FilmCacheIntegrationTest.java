@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.cache.FilmCache;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.service.DirectorService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class FilmCacheIntegrationTest {
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private DirectorService directorService;
+
+    @Autowired
+    private FilmCache filmCache;
+
+    @Test
+    void findById_isServedFromCacheAndInvalidatedOnChanges() {
+        Director director = directorService.createDirector(new Director(null, "Кристофер Нолан"));
+        Film film = new Film(null, "Начало", "Сон во сне", LocalDate.of(2010, 7, 8), 148);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(3);
+        film.setMpa(mpa);
+        film.setDirectors(List.of(director));
+        long filmId = filmService.create(film).getId();
+
+        long hitsBefore = filmCache.cacheStats().get(0).hits();
+        Film first = filmService.findById(filmId);
+        Film second = filmService.findById(filmId);
+        assertThat(second).isEqualTo(first).isNotSameAs(first);
+        assertThat(filmCache.cacheStats().get(0).hits()).isGreaterThan(hitsBefore);
+
+        // изменения снаружи не портят закешированный фильм
+        first.setName("Испорчено");
+        assertThat(filmService.findById(filmId).getName()).isEqualTo("Начало");
+
+        // переименование режиссёра сбрасывает фильмы с ним
+        directorService.updateDirector(new Director(director.getId(), "К. Нолан"));
+        assertThat(filmService.findById(filmId).getDirectors())
+                .extracting(Director::getName)
+                .containsExactly("К. Нолан");
+
+        // обновление фильма сбрасывает его запись
+        Film changed = filmService.findById(filmId);
+        changed.setDescription("Другое описание");
+        changed.setDirectors(List.of());
+        filmService.update(changed);
+        Film reloaded = filmService.findById(filmId);
+        assertThat(reloaded.getDescription()).isEqualTo("Другое описание");
+        assertThat(reloaded.getDirectors()).isEmpty();
+    }
+}
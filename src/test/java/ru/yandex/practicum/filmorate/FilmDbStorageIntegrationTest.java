@@ -70,6 +70,21 @@ class FilmDbStorageIntegrationTest {
         assertThat(allFilms).extracting(Film::getId).contains(createdFilm.getId());
     }
 
+    @Test
+    void testExistsByIdAndExistAll() {
+        Film film = filmDbStorage.create(Film.builder()
+                .name("Есть")
+                .description("Описание")
+                .releaseDate(LocalDate.of(2020, 1, 1))
+                .duration(90L)
+                .mpa(mpaDbStorage.findById(1))
+                .build());
+        long missingId = film.getId() + 1000;
+
+        assertThat(filmDbStorage.existsById(film.getId())).isTrue();
+        assertThat(filmDbStorage.existsById(missingId)).isFalse();
+    }
+
     @Test
     void testUpdateFilm() {
         MpaRating rating = mpaDbStorage.findById(1);
@@ -123,12 +138,15 @@ class FilmDbStorageIntegrationTest {
 
         Film createdFilm = filmDbStorage.create(film);
 
-        filmDbStorage.addLike(createdFilm.getId(), userId);
+        assertThat(filmDbStorage.addLike(createdFilm.getId(), userId)).isTrue();
+        // повторный лайк не меняет данные и не бросает исключение
+        assertThat(filmDbStorage.addLike(createdFilm.getId(), userId)).isFalse();
         Integer likeCount = jdbcTemplate.queryForObject(
                 "SELECT COUNT(*) FROM film_likes WHERE film_id = ? AND user_id = ?",
                 Integer.class, createdFilm.getId(), userId
         );
         assertThat(likeCount).isEqualTo(1);
+        assertThat(likeCountOf(createdFilm.getId())).isEqualTo(1);
 
         filmDbStorage.removeLike(createdFilm.getId(), userId);
         Integer likeCountAfterRemove = jdbcTemplate.queryForObject(
@@ -136,5 +154,14 @@ class FilmDbStorageIntegrationTest {
                 Integer.class, createdFilm.getId(), userId
         );
         assertThat(likeCountAfterRemove).isZero();
+        assertThat(likeCountOf(createdFilm.getId())).isZero();
+
+        // повторное удаление не уводит счётчик в минус
+        assertThat(filmDbStorage.removeLike(createdFilm.getId(), userId)).isFalse();
+        assertThat(likeCountOf(createdFilm.getId())).isZero();
+    }
+
+    private Integer likeCountOf(Long filmId) {
+        return jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = ?", Integer.class, filmId);
     }
 }
@@ -0,0 +1,188 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmFullTextSearch;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Полнотекстовый поиск на индексе H2: ранжирование по полю совпадения и лайкам,
+ * поддержка индекса триггерами, удаление индексов при выключенном режиме. Замер против LIKE
+ * и цены триггеров при вставке — только с -Dfilmorate.benchmarks=true.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import(TestDataSetup.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ActiveProfiles("test")
+class FilmFullTextSearchIntegrationTest {
+    private final JdbcTemplate jdbcTemplate;
+    private final TestDataSetup testDataSetup;
+
+    private FilmFullTextSearch fullTextSearch;
+
+    @BeforeEach
+    void setUp() {
+        testDataSetup.cleanAllTables();
+        testDataSetup.insertGenres();
+        testDataSetup.insertMpa();
+        testDataSetup.insertTestUsers(3);
+        fullTextSearch = new FilmFullTextSearch(jdbcTemplate, true);
+        fullTextSearch.createIndexes();
+    }
+
+    @AfterEach
+    void tearDown() {
+        // БД в памяти общая для тестовых классов — остальным триггеры индекса не нужны
+        fullTextSearch.dropIndexes();
+    }
+
+    @Test
+    void search_ranksTitleAboveDirectorAndDescriptionThenByLikes() {
+        insertFilm(1, "Ocean Drive", "Road movie");
+        insertFilm(2, "Silent Ocean", "Documentary");
+        insertFilm(3, "Harbour", "A film about the ocean");
+        insertFilm(4, "Lighthouse", "Drama");
+        insertFilm(5, "Oceans Eleven", "Heist");
+        testDataSetup.insertDirectors(1);
+        jdbcTemplate.update("UPDATE directors SET name = 'Ocean Smith' WHERE director_id = 1");
+        testDataSetup.insertFilmDirector(4, 1);
+        testDataSetup.insertFilmLikes(2L, List.of(1L, 2L));
+
+        // слово целиком: «Oceans» не совпадает с «ocean»
+        assertThat(fullTextSearch.search("ocean", true, true)).containsExactly(2L, 1L, 4L, 3L);
+        assertThat(fullTextSearch.search("OCEAN", true, false)).containsExactly(2L, 1L, 3L);
+        assertThat(fullTextSearch.search("ocean", false, true)).containsExactly(4L);
+        assertThat(fullTextSearch.search("ocean drive", true, true)).containsExactly(1L);
+        // слова из разных таблиц: название фильма и имя режиссёра
+        assertThat(fullTextSearch.search("lighthouse smith", true, true)).containsExactly(4L);
+        assertThat(fullTextSearch.search("lighthouse smith", true, false)).isEmpty();
+        assertThat(fullTextSearch.search("  ", true, true)).isEmpty();
+    }
+
+    @Test
+    void search_followsInsertsUpdatesAndDeletesThroughTriggers() {
+        insertFilm(1, "Первый снег", "");
+        assertThat(fullTextSearch.search("снег", true, false)).containsExactly(1L);
+
+        insertFilm(2, "Снег и пепел", "");
+        jdbcTemplate.update("UPDATE films SET name = 'Оттепель' WHERE id = 1");
+        assertThat(fullTextSearch.search("снег", true, false)).containsExactly(2L);
+
+        jdbcTemplate.update("DELETE FROM films WHERE id = 2");
+        assertThat(fullTextSearch.search("снег", true, false)).isEmpty();
+        assertThat(fullTextSearch.search("оттепель", true, false)).containsExactly(1L);
+    }
+
+    @Test
+    void disabledMode_dropsIndexesAndTriggers() {
+        new FilmFullTextSearch(jdbcTemplate, false).afterPropertiesSet();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TRIGGERS " +
+                "WHERE TRIGGER_NAME LIKE 'FT_%'", Integer.class)).isZero();
+        // вставка без триггеров и повторное включение индексирует уже существующие строки
+        insertFilm(1, "Первый снег", "");
+        fullTextSearch.createIndexes();
+        assertThat(fullTextSearch.search("снег", true, false)).containsExactly(1L);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "filmorate.benchmarks", matches = "true")
+    void benchmark_fullTextVersusLike() {
+        int films = 100_000;
+        // цена триггеров: та же вставка без индекса и с ним
+        fullTextSearch.dropIndexes();
+        long plainInsertMs = insertFilms(films);
+        testDataSetup.cleanAllTables();
+        testDataSetup.insertMpa();
+        fullTextSearch.createIndexes();
+        long indexedInsertMs = insertFilms(films);
+        System.out.printf("Вставка %d фильмов: без индекса %d мс, с полнотекстовым индексом %d мс%n",
+                films, plainInsertMs, indexedInsertMs);
+
+        FilmDbStorage storage = new FilmDbStorage(jdbcTemplate, true, 500);
+        long indexStart = System.nanoTime();
+        fullTextSearch.search("warmup", true, false);
+        System.out.printf("Первый поиск на %d фильмах: %d мс%n", films,
+                (System.nanoTime() - indexStart) / 1_000_000);
+
+        // редкий запрос (одно число из названия) и частый (слово из словаря)
+        for (String query : List.of("77777", "winter")) {
+            int iterations = query.equals("winter") ? 5 : 200;
+            for (int round = 0; round < 2; round++) {
+                long start = System.nanoTime();
+                int found = 0;
+                for (int i = 0; i < iterations; i++) {
+                    found = storage.searchByTitle(query).size();
+                }
+                double likeMs = (System.nanoTime() - start) / 1e6 / iterations;
+
+                start = System.nanoTime();
+                int ftFound = 0;
+                for (int i = 0; i < iterations; i++) {
+                    ftFound = storage.findFilmsByIds(
+                            new LinkedHashSet<>(fullTextSearch.search(query, true, false))).size();
+                }
+                double ftMs = (System.nanoTime() - start) / 1e6 / iterations;
+                System.out.printf("'%s': LIKE %.2f мс (%d), FT_SEARCH_DATA %.2f мс (%d)%n",
+                        query, likeMs, found, ftMs, ftFound);
+            }
+        }
+    }
+
+    // Возвращает время вставки в мс
+    private long insertFilms(int films) {
+        String[] vocabulary = {"ocean", "night", "river", "storm", "silent", "city", "winter", "garden",
+                "shadow", "empire", "island", "dream", "road", "fire", "glass", "paper", "moon", "train"};
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO films (id, name, description, release_date, duration, mpa_id, like_count) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setInt(1, i + 1);
+                        ps.setString(2, vocabulary[random.nextInt(vocabulary.length)] + " "
+                                + vocabulary[random.nextInt(vocabulary.length)] + " " + (i + 1));
+                        ps.setString(3, "Film about " + vocabulary[random.nextInt(vocabulary.length)]);
+                        ps.setDate(4, Date.valueOf(LocalDate.of(2000, 1, 1)));
+                        ps.setInt(5, 100);
+                        ps.setInt(6, (i % 5) + 1);
+                        ps.setInt(7, random.nextInt(1000));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films;
+                    }
+                }
+        );
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private void insertFilm(int id, String name, String description) {
+        jdbcTemplate.update("INSERT INTO films (id, name, description, release_date, duration, mpa_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", id, name, description, Date.valueOf(LocalDate.of(2000, 1, 1)), 100, 1);
+    }
+}
@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.director.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxDispatchLock;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({
+        FilmDbStorage.class,
+        DirectorDbStorage.class,
+        PopularFilmsLeaderboard.class,
+        OutboxDispatchLock.class,
+        FilmSearchIndex.class,
+        TestDataSetup.class
+})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ActiveProfiles("test")
+class FilmSearchIndexIntegrationTest {
+    private final FilmDbStorage filmDbStorage;
+    private final FilmSearchIndex searchIndex;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final TestDataSetup testDataSetup;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        testDataSetup.cleanAllTables();
+        testDataSetup.insertGenres();
+        testDataSetup.insertMpa();
+        testDataSetup.insertTestUsers(3);
+        testDataSetup.insertTestFilms(4);
+        testDataSetup.insertDirectors(2);
+
+        jdbcTemplate.update("UPDATE films SET name = ? WHERE id = ?", "Inception", 1);
+        jdbcTemplate.update("UPDATE films SET name = ? WHERE id = ?", "Jaws", 2);
+        jdbcTemplate.update("UPDATE films SET name = ? WHERE id = ?", "Интерстеллар", 3);
+        jdbcTemplate.update("UPDATE films SET name = ? WHERE id = ?", "Jaws 2", 4);
+        jdbcTemplate.update("UPDATE directors SET name = ? WHERE director_id = ?", "Christopher Nolan", 1);
+        jdbcTemplate.update("UPDATE directors SET name = ? WHERE director_id = ?", "Steven Spielberg", 2);
+        testDataSetup.insertFilmDirector(1, 1);
+        testDataSetup.insertFilmDirector(3, 1);
+        testDataSetup.insertFilmDirector(2, 2);
+
+        testDataSetup.insertFilmLikes(3L, List.of(1L, 2L, 3L));
+        testDataSetup.insertFilmLikes(4L, List.of(1L));
+
+        searchIndex.invalidate();
+        leaderboard.invalidate();
+    }
+
+    @Test
+    void search_matchesSqlSubstringSearch() {
+        for (String query : List.of("jaws", "AW", "ception", "ИНТЕР", "s", "nolan", "berg", "xyz", "on")) {
+            assertThat(searchIndex.search(query, true, false))
+                    .as("title: %s", query)
+                    .isEqualTo(ids(filmDbStorage.searchByTitle(query)));
+            assertThat(searchIndex.search(query, false, true))
+                    .as("director: %s", query)
+                    .isEqualTo(ids(filmDbStorage.searchByDirector(query)));
+            assertThat(searchIndex.search(query, true, true))
+                    .as("both: %s", query)
+                    .isEqualTo(ids(filmDbStorage.searchByTitleAndDirector(query)));
+        }
+    }
+
+    @Test
+    void search_followsFilmAndDirectorChanges() {
+        assertThat(searchIndex.search("nolan", false, true)).containsExactly(3L, 1L);
+
+        Film film = filmDbStorage.findById(2L).orElseThrow();
+        film.setName("Jurassic Park");
+        film.setDirectors(List.of(new Director(1L, null)));
+        searchIndex.onFilmSaved(film);
+        assertThat(searchIndex.search("jaws", true, false)).containsExactly(4L);
+        assertThat(searchIndex.search("park", true, false)).containsExactly(2L);
+        assertThat(searchIndex.search("nolan", false, true)).containsExactly(3L, 1L, 2L);
+
+        searchIndex.onDirectorSaved(new Director(1L, "Chris N."));
+        assertThat(searchIndex.search("nolan", false, true)).isEmpty();
+        assertThat(searchIndex.search("chris", false, true)).containsExactly(3L, 1L, 2L);
+
+        searchIndex.onDirectorRemoved(1L);
+        searchIndex.onFilmRemoved(3L);
+        assertThat(searchIndex.search("chris", false, true)).isEmpty();
+        assertThat(searchIndex.search("интер", true, false)).isEmpty();
+    }
+
+    private List<Long> ids(List<Film> films) {
+        return films.stream().map(Film::getId).toList();
+    }
+}
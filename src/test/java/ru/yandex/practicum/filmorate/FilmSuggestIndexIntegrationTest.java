@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.index.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.index.SuggestTrie;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Suggestion;
+import ru.yandex.practicum.filmorate.storage.director.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxDispatchLock;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Автодополнение: префикс с начала любого слова, опечатки в длинном префиксе,
+ * порядок по популярности и обновление после изменений фильмов и режиссёров.
+ * Замер на 100k названий — только с -Dfilmorate.benchmarks=true.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({
+        FilmDbStorage.class,
+        DirectorDbStorage.class,
+        PopularFilmsLeaderboard.class,
+        OutboxDispatchLock.class,
+        FilmSuggestIndex.class,
+        TestDataSetup.class
+})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ActiveProfiles("test")
+class FilmSuggestIndexIntegrationTest {
+    private final FilmDbStorage filmDbStorage;
+    private final FilmSuggestIndex suggestIndex;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final TestDataSetup testDataSetup;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        testDataSetup.cleanAllTables();
+        testDataSetup.insertGenres();
+        testDataSetup.insertMpa();
+        testDataSetup.insertTestUsers(3);
+        testDataSetup.insertTestFilms(4);
+        testDataSetup.insertDirectors(2);
+
+        jdbcTemplate.update("UPDATE films SET name = ? WHERE id = ?", "Interstellar", 1);
+        jdbcTemplate.update("UPDATE films SET name = ? WHERE id = ?", "Inception", 2);
+        jdbcTemplate.update("UPDATE films SET name = ? WHERE id = ?", "The Prestige", 3);
+        jdbcTemplate.update("UPDATE films SET name = ? WHERE id = ?", "Insomnia", 4);
+        jdbcTemplate.update("UPDATE directors SET name = ? WHERE director_id = ?", "Christopher Nolan", 1);
+        jdbcTemplate.update("UPDATE directors SET name = ? WHERE director_id = ?", "Denis Villeneuve", 2);
+        testDataSetup.insertFilmDirector(1, 1);
+        testDataSetup.insertFilmDirector(2, 1);
+
+        testDataSetup.insertFilmLikes(2L, List.of(1L, 2L, 3L));
+        testDataSetup.insertFilmLikes(4L, List.of(1L));
+
+        leaderboard.invalidate();
+        suggestIndex.invalidate();
+    }
+
+    @Test
+    void suggest_ranksPrefixMatchesByPopularity() {
+        assertThat(names(suggestIndex.suggest("In", 10)))
+                .containsExactly("Inception", "Insomnia", "Interstellar");
+        assertThat(names(suggestIndex.suggest("in", 2))).containsExactly("Inception", "Insomnia");
+        // с начала любого слова; режиссёр весит как сумма лайков своих фильмов
+        assertThat(suggestIndex.suggest("pres", 10))
+                .containsExactly(new Suggestion(FilmSuggestIndex.FILM, 3L, "The Prestige"));
+        assertThat(suggestIndex.suggest("nol", 10))
+                .containsExactly(new Suggestion(FilmSuggestIndex.DIRECTOR, 1L, "Christopher Nolan"));
+        assertThat(suggestIndex.suggest("tige", 10)).isEmpty();
+        assertThat(suggestIndex.suggest("  ", 10)).isEmpty();
+    }
+
+    @Test
+    void suggest_toleratesTyposInLongerPrefixes() {
+        // короткий префикс — без опечаток
+        assertThat(suggestIndex.suggest("inx", 10)).isEmpty();
+        assertThat(names(suggestIndex.suggest("intre", 10))).containsExactly("Interstellar");
+        assertThat(names(suggestIndex.suggest("vileneuve", 10))).containsExactly("Denis Villeneuve");
+        // при одинаковом числе опечаток — по популярности
+        assertThat(names(suggestIndex.suggest("inse", 10)))
+                .containsExactly("Inception", "Insomnia", "Interstellar");
+
+        // точное совпадение выше нечёткого, даже если оно менее популярно
+        SuggestTrie trie = SuggestTrie.builder()
+                .add("matrix", 0)
+                .add("matrox", 1)
+                .build(new long[]{1, 100}, 10);
+        assertThat(trie.search("matri", 1, 10)).containsExactly(
+                new SuggestTrie.Match(0, 0), new SuggestTrie.Match(1, 1));
+    }
+
+    @Test
+    void suggest_followsFilmAndDirectorChanges() {
+        assertThat(suggestIndex.suggest("nol", 10)).hasSize(1);
+
+        Film film = filmDbStorage.findById(3L).orElseThrow();
+        film.setName("Tenet");
+        film.setDirectors(List.of(new Director(1L, null)));
+        suggestIndex.onFilmSaved(film);
+        // до фоновой пересборки запрос отвечает по прежнему снимку
+        assertThat(suggestIndex.suggest("ten", 10)).isEmpty();
+        suggestIndex.rebuildIfDirty();
+        assertThat(suggestIndex.suggest("pres", 10)).isEmpty();
+        assertThat(names(suggestIndex.suggest("ten", 10))).containsExactly("Tenet");
+
+        suggestIndex.onDirectorSaved(new Director(2L, "Denis V."));
+        suggestIndex.onDirectorRemoved(1L);
+        suggestIndex.onFilmRemoved(2L);
+        suggestIndex.rebuildIfDirty();
+        assertThat(suggestIndex.suggest("villeneuve", 10)).isEmpty();
+        assertThat(suggestIndex.suggest("nol", 10)).isEmpty();
+        assertThat(names(suggestIndex.suggest("in", 10))).containsExactly("Insomnia", "Interstellar");
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "filmorate.benchmarks", matches = "true")
+    void benchmark_suggestOn100kTitles() {
+        String[] vocabulary = {"ocean", "night", "river", "storm", "silent", "city", "winter", "garden",
+                "shadow", "empire", "island", "dream", "road", "fire", "glass", "paper", "moon", "train"};
+        Random random = new Random(42);
+        int size = 100_000;
+        SuggestTrie.Builder builder = SuggestTrie.builder();
+        long[] weights = new long[size];
+        for (int i = 0; i < size; i++) {
+            String title = vocabulary[random.nextInt(vocabulary.length)] + " "
+                    + vocabulary[random.nextInt(vocabulary.length)] + " " + i;
+            builder.add(title, i);
+            builder.add(title.substring(title.indexOf(' ') + 1), i);
+            weights[i] = random.nextInt(1000);
+        }
+        long buildStart = System.nanoTime();
+        SuggestTrie trie = builder.build(weights, FilmSuggestIndex.MAX_LIMIT);
+        System.out.printf("Сборка дерева на %d названиях: %d мс%n", size, (System.nanoTime() - buildStart) / 1_000_000);
+
+        String[][] queries = {{"o", "0"}, {"sto", "0"}, {"storm ri", "1"}, {"stomr riv", "2"}};
+        for (String[] query : queries) {
+            int iterations = 20_000;
+            long start = System.nanoTime();
+            int found = 0;
+            for (int i = 0; i < iterations; i++) {
+                found = trie.search(query[0], Integer.parseInt(query[1]), 10).size();
+            }
+            System.out.printf("'%s' (опечаток до %s): %.1f мкс/запрос, найдено %d%n", query[0], query[1],
+                    (System.nanoTime() - start) / 1000.0 / iterations, found);
+        }
+    }
+
+    private List<String> names(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::getName).toList();
+    }
+}
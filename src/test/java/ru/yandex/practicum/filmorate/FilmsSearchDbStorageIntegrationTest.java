@@ -135,6 +135,9 @@ class FilmsSearchDbStorageIntegrationTest {
         List<Film> byDirector = filmDbStorage.searchByTitleAndDirector("spielberg");
         assertEquals(1, byDirector.size(), "Должен быть найден 1 фильм по режиссёру");
         assertEquals("Jaws", byDirector.get(0).getName());
+        // режиссёры подгружаются в самом хранилище, одним запросом на весь список
+        assertEquals(List.of("Steven Spielberg"),
+                byDirector.get(0).getDirectors().stream().map(d -> d.getName()).toList());
 
         // Поиск по части имени режиссёра ("nolan") — без учета регистра
         List<Film> byPartialDirector = filmDbStorage.searchByTitleAndDirector("NoLaN");
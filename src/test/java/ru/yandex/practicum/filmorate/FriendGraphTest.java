@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendGraphTest {
+
+    private FriendGraph friendGraph;
+
+    @BeforeEach
+    void setUp() {
+        friendGraph = new FriendGraph(null);
+        // дружба односторонняя: 3 добавил 1, но не 2
+        friendGraph.rebuild(Map.of(
+                1L, Set.of(3L, 4L, 5L),
+                2L, Set.of(4L, 5L, 6L),
+                3L, Set.of(1L)
+        ));
+    }
+
+    @Test
+    void commonFriends_intersectsOutgoingFriends() {
+        assertThat(friendGraph.commonFriends(1L, 2L)).containsExactly(4L, 5L);
+        assertThat(friendGraph.commonFriends(1L, 3L)).isEmpty();
+        assertThat(friendGraph.commonFriends(1L, 42L)).isEmpty();
+    }
+
+    @Test
+    void updates_areVisibleImmediately() {
+        friendGraph.onFriendAdded(2L, 3L);
+        friendGraph.onFriendRemoved(1L, 4L);
+        assertThat(friendGraph.commonFriends(1L, 2L)).containsExactly(3L, 5L);
+
+        // удалённый пользователь исчезает и из своих, и из чужих списков
+        friendGraph.onUserRemoved(5L);
+        friendGraph.onUserRemoved(3L);
+        assertThat(friendGraph.commonFriends(1L, 2L)).isEmpty();
+        friendGraph.onFriendAdded(3L, 4L);
+        assertThat(friendGraph.commonFriends(2L, 3L)).containsExactly(4L);
+    }
+
+    @Test
+    void randomUpdates_matchNaiveIntersection() {
+        Random random = new Random(7);
+        Map<Long, Set<Long>> expected = new HashMap<>();
+        friendGraph.rebuild(Map.of());
+        for (int i = 0; i < 5_000; i++) {
+            long user = random.nextInt(30) + 1;
+            long friend = random.nextInt(30) + 1;
+            if (random.nextInt(3) == 0) {
+                friendGraph.onFriendRemoved(user, friend);
+                expected.getOrDefault(user, new HashSet<>()).remove(friend);
+            } else {
+                friendGraph.onFriendAdded(user, friend);
+                expected.computeIfAbsent(user, k -> new HashSet<>()).add(friend);
+            }
+        }
+        for (long a = 1; a <= 30; a++) {
+            for (long b = 1; b <= 30; b++) {
+                Set<Long> common = new HashSet<>(expected.getOrDefault(a, Set.of()));
+                common.retainAll(expected.getOrDefault(b, Set.of()));
+                assertThat(friendGraph.commonFriends(a, b))
+                        .isSorted()
+                        .containsExactlyInAnyOrderElementsOf(common);
+            }
+        }
+    }
+
+    @Test
+    void friendshipDeliveredDuringLoad_isNotLost() throws InterruptedException {
+        AtomicReference<FriendGraph> graph = new AtomicReference<>();
+        AtomicReference<Thread> writer = new AtomicReference<>();
+        graph.set(new FriendGraph(new UserDbStorage(null) {
+            @Override
+            public Map<Long, Set<Long>> getAllFriendIds() {
+                // снимок уже прочитан, а событие о новой дружбе приходит, пока идёт загрузка
+                Thread thread = new Thread(() -> graph.get().onFriendAdded(2L, 3L));
+                writer.set(thread);
+                thread.start();
+                LikeMatrixTest.awaitBlockedOrDone(thread);
+                return Map.of(1L, Set.of(3L), 2L, Set.of(4L));
+            }
+        }));
+
+        graph.get().commonFriends(1L, 2L);
+        writer.get().join();
+
+        assertThat(graph.get().commonFriends(1L, 2L)).containsExactly(3L);
+    }
+}
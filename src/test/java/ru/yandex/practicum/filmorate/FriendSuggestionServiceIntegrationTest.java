@@ -0,0 +1,149 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.service.FriendSuggestionService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/*
+ * Подсказки друзей: ранжирование друзей друзей по числу общих друзей, без самого пользователя
+ * и его друзей; до фоновой пересборки снимка новые друзья уже не предлагаются, после неё —
+ * пересчёт; обрезка обхода по бюджету рёбер и отказ кешировать обрезанный результат;
+ * совпадение с прямым подсчётом на случайном графе.
+ */
+@SpringBootTest
+@AutoConfigureTestDatabase
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class FriendSuggestionServiceIntegrationTest {
+
+    @Autowired
+    private FriendSuggestionService suggestionService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private FriendGraph friendGraph;
+
+    @Autowired
+    private UserDbStorage userStorage;
+
+    @Autowired
+    private TestDataSetup testDataSetup;
+
+    @BeforeEach
+    void setUp() {
+        testDataSetup.cleanAllTables();
+        testDataSetup.insertFriendshipStatuses();
+        testDataSetup.insertTestUsers(30);
+        friendGraph.invalidate();
+    }
+
+    @Test
+    void suggest_ranksFriendsOfFriendsByMutualFriends() {
+        /*
+         * 1 -> {2, 3, 4}
+         * 2 -> {1, 5, 6}, 3 -> {5, 6, 4}, 4 -> {5, 7}
+         * 5: общие 2, 3, 4; 6: общие 2, 3; 7: общий 4; 4 уже друг, 1 — сам пользователь
+         */
+        testDataSetup.insertFriends(1L, List.of(2L, 3L, 4L));
+        testDataSetup.insertFriends(2L, List.of(1L, 5L, 6L));
+        testDataSetup.insertFriends(3L, List.of(5L, 6L, 4L));
+        testDataSetup.insertFriends(4L, List.of(5L, 7L));
+
+        FriendSuggestionService.Suggestions suggestions = suggestionService.suggest(1L, 10);
+
+        assertThat(suggestions.truncated()).isFalse();
+        assertThat(suggestions.items())
+                .extracting(s -> s.getUser().getId(), FriendSuggestion::getMutualFriends)
+                .containsExactly(tuple(5L, 3), tuple(6L, 2), tuple(7L, 1));
+        assertThat(suggestionService.suggest(1L, 1).items())
+                .extracting(s -> s.getUser().getId())
+                .containsExactly(5L);
+    }
+
+    @Test
+    void suggest_recomputesAfterFriendshipChange() {
+        testDataSetup.insertFriends(1L, List.of(2L));
+        testDataSetup.insertFriends(2L, List.of(3L));
+        assertThat(suggestionService.suggest(1L, 10).items())
+                .extracting(s -> s.getUser().getId())
+                .containsExactly(3L);
+
+        userService.addFriend(1L, 3L);
+        userService.addFriend(2L, 4L);
+
+        // снимок ещё старый: 3 уже друг и отброшен, 4 появится после пересборки
+        assertThat(suggestionService.suggest(1L, 10).items()).isEmpty();
+        friendGraph.refreshSnapshot();
+        assertThat(suggestionService.suggest(1L, 10).items())
+                .extracting(s -> s.getUser().getId())
+                .containsExactly(4L);
+    }
+
+    @Test
+    void suggest_stopsAtVisitBudget() {
+        testDataSetup.insertFriends(1L, List.of(2L, 3L));
+        testDataSetup.insertFriends(2L, List.of(10L, 11L, 12L));
+        testDataSetup.insertFriends(3L, List.of(13L, 14L, 15L));
+        FriendSuggestionService bounded = new FriendSuggestionService(friendGraph, userStorage, 1000, 4, 10);
+
+        FriendSuggestionService.Suggestions suggestions = bounded.suggest(1L, 10);
+
+        // обход друзей идёт по возрастанию id: рёбра 2 просмотрены, у 3 — только первое
+        assertThat(suggestions.truncated()).isTrue();
+        assertThat(suggestions.items())
+                .extracting(s -> s.getUser().getId())
+                .containsExactly(10L, 11L, 12L, 13L);
+        assertThat(bounded.cacheStats().get(0).size()).isZero();
+    }
+
+    @Test
+    void suggest_matchesDirectCountOnRandomGraph() {
+        Random random = new Random(5);
+        Map<Long, Set<Long>> friends = new HashMap<>();
+        for (long user = 1; user <= 30; user++) {
+            for (int i = 0; i < 6; i++) {
+                long friend = random.nextInt(30) + 1;
+                if (friend != user && friends.computeIfAbsent(user, k -> new HashSet<>()).add(friend)) {
+                    testDataSetup.insertFriend(user, friend);
+                }
+            }
+        }
+
+        for (long user = 1; user <= 30; user++) {
+            Set<Long> mine = friends.getOrDefault(user, Set.of());
+            Map<Long, Integer> expected = new HashMap<>();
+            for (long friend : mine) {
+                for (long candidate : friends.getOrDefault(friend, Set.of())) {
+                    if (candidate != user && !mine.contains(candidate)) {
+                        expected.merge(candidate, 1, Integer::sum);
+                    }
+                }
+            }
+            List<Map.Entry<Long, Integer>> ranked = new ArrayList<>(expected.entrySet());
+            ranked.sort(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey()));
+
+            assertThat(suggestionService.suggest(user, FriendSuggestionService.MAX_LIMIT).items())
+                    .extracting(s -> s.getUser().getId(), FriendSuggestion::getMutualFriends)
+                    .containsExactlyElementsOf(ranked.stream()
+                            .map(e -> tuple(e.getKey(), e.getValue()))
+                            .toList());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.index.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeOperationResult;
+import ru.yandex.practicum.filmorate.service.LikeBatchService;
+import ru.yandex.practicum.filmorate.storage.feed.FeedDbStorage;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/*
+ * Пакетный импорт лайков: итог по каждой операции в исходном порядке (в том числе повтор пары
+ * внутри пакета и на границе порций), пропуск несуществующих фильмов и пользователей,
+ * счётчики лайков, рейтинг и события ленты через outbox — только для реальных изменений.
+ */
+@SpringBootTest(properties = "filmorate.likes.batch.chunk-size=3")
+@AutoConfigureTestDatabase
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class LikeBatchServiceIntegrationTest {
+
+    @Autowired
+    private LikeBatchService likeBatchService;
+
+    @Autowired
+    private OutboxStorage outboxStorage;
+
+    @Autowired
+    private FeedDbStorage feedStorage;
+
+    @Autowired
+    private PopularFilmsLeaderboard leaderboard;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestDataSetup testDataSetup;
+
+    @BeforeEach
+    void setUp() {
+        testDataSetup.cleanAllTables();
+        testDataSetup.insertMpa();
+        testDataSetup.insertGenres();
+        testDataSetup.insertTestUsers(2);
+        testDataSetup.insertTestFilms(2);
+        leaderboard.invalidate();
+        leaderboard.getTopIds(10, null, null);
+    }
+
+    @Test
+    void apply_reportsOutcomePerOperationInOrder() {
+        List<LikeOperationResult> results = likeBatchService.apply(List.of(
+                new LikeOperation(1L, 1L, "ADD"),
+                new LikeOperation(1L, 1L, "ADD"),
+                new LikeOperation(1L, 99L, "ADD"),
+                new LikeOperation(99L, 1L, "ADD"),
+                new LikeOperation(2L, 1L, "LIKE"),
+                new LikeOperation(2L, 2L, "ADD"),
+                new LikeOperation(1L, 1L, "REMOVE"),
+                new LikeOperation(1L, 2L, "ADD"),
+                new LikeOperation(2L, 1L, "REMOVE")
+        ).iterator());
+
+        assertThat(results)
+                .extracting(LikeOperationResult::getFilmId, LikeOperationResult::getUserId,
+                        LikeOperationResult::getStatus)
+                .containsExactly(
+                        tuple(1L, 1L, "ADDED"),
+                        tuple(1L, 1L, "UNCHANGED"),
+                        tuple(1L, 99L, "USER_NOT_FOUND"),
+                        tuple(99L, 1L, "FILM_NOT_FOUND"),
+                        tuple(2L, 1L, "INVALID"),
+                        tuple(2L, 2L, "ADDED"),
+                        tuple(1L, 1L, "REMOVED"),
+                        tuple(1L, 2L, "ADDED"),
+                        tuple(2L, 1L, "UNCHANGED"));
+        assertThat(likeCount(1L)).isEqualTo(1);
+        assertThat(likeCount(2L)).isEqualTo(1);
+        assertThat(leaderboard.getLikes(1L)).isEqualTo(1);
+        assertThat(leaderboard.getLikes(2L)).isEqualTo(1);
+    }
+
+    @Test
+    void apply_writesFeedEventsForStateChangesOnly() {
+        likeBatchService.apply(List.of(
+                new LikeOperation(1L, 1L, "ADD"),
+                new LikeOperation(1L, 1L, "ADD"),
+                new LikeOperation(2L, 1L, "ADD"),
+                new LikeOperation(2L, 2L, "REMOVE"),
+                new LikeOperation(99L, 1L, "ADD"),
+                new LikeOperation(1L, 1L, "REMOVE")
+        ).iterator());
+
+        assertThat(outboxStorage.count()).isZero();
+        assertThat(feedStorage.feeds(1L))
+                .extracting(Feed::getOperation, Feed::getEntityId)
+                .containsExactly(tuple("ADD", 1), tuple("ADD", 2), tuple("REMOVE", 1));
+    }
+
+    @Test
+    void apply_handsOverEachChunkAfterItsCommit() {
+        List<List<LikeOperationResult>> chunks = new ArrayList<>();
+        List<Integer> likesSeenPerChunk = new ArrayList<>();
+        int processed = likeBatchService.apply(List.of(
+                new LikeOperation(1L, 1L, "ADD"),
+                new LikeOperation(1L, 2L, "ADD"),
+                new LikeOperation(2L, 1L, "ADD"),
+                new LikeOperation(2L, 2L, "ADD")
+        ).iterator(), results -> {
+            chunks.add(results);
+            likesSeenPerChunk.add(likeCount(1L) + likeCount(2L));
+        });
+
+        assertThat(processed).isEqualTo(4);
+        assertThat(chunks).extracting(List::size).containsExactly(3, 1);
+        // порция уже закоммичена, а следующая ещё не прочитана
+        assertThat(likesSeenPerChunk).containsExactly(3, 4);
+    }
+
+    private int likeCount(long filmId) {
+        return jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = ?", Integer.class, filmId);
+    }
+}
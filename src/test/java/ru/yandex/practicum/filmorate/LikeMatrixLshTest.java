@@ -0,0 +1,121 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.index.MinHashLsh;
+import ru.yandex.practicum.filmorate.index.Similarity;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Сравнение поиска соседей через MinHash/LSH с точным перебором.
+ * Полный замер на большом наборе запускается только с -Dfilmorate.benchmarks=true.
+ */
+class LikeMatrixLshTest {
+    private static final int NEIGHBOURS = 10;
+
+    @Test
+    void lsh_findsUsersWithSameTaste() {
+        LikeMatrix likeMatrix = new LikeMatrix(null, new MinHashLsh(32, 2, 42L));
+        likeMatrix.rebuild(Map.of(
+                1L, Set.of(1L, 2L, 3L, 4L),
+                2L, Set.of(1L, 2L, 3L, 4L, 5L),
+                3L, Set.of(100L, 101L)
+        ));
+
+        assertThat(likeMatrix.topNeighbours(1L, 5, Similarity.JACCARD))
+                .extracting(LikeMatrix.Neighbour::userId)
+                .containsExactly(2L);
+        assertThat(likeMatrix.recommend(1L, 1, Similarity.JACCARD)).containsExactly(5L);
+
+        // изменения лайков сразу попадают в подписи
+        likeMatrix.onLikeAdded(100L, 1L);
+        likeMatrix.onLikeAdded(101L, 1L);
+        likeMatrix.onLikeRemoved(5L, 2L);
+        likeMatrix.onUserRemoved(2L);
+        assertThat(likeMatrix.topNeighbours(1L, 5, Similarity.JACCARD))
+                .extracting(LikeMatrix.Neighbour::userId)
+                .containsExactly(3L);
+    }
+
+    @Test
+    void lsh_recallAgainstBruteForce() {
+        Map<Long, Set<Long>> likes = clusteredLikes(2_000, 100, 20, 10, 2);
+        LikeMatrix exact = new LikeMatrix(null);
+        LikeMatrix approximate = new LikeMatrix(null, new MinHashLsh(32, 2, 42L));
+        exact.rebuild(likes);
+        approximate.rebuild(likes);
+
+        double recall = recall(exact, approximate, 200);
+        assertThat(recall).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "filmorate.benchmarks", matches = "true")
+    void benchmark_lshAgainstBruteForce() {
+        Map<Long, Set<Long>> likes = clusteredLikes(100_000, 2_500, 40, 20, 3);
+        LikeMatrix exact = new LikeMatrix(null);
+        LikeMatrix approximate = new LikeMatrix(null, new MinHashLsh(32, 2, 42L));
+        exact.rebuild(likes);
+        approximate.rebuild(likes);
+
+        int queries = 2_000;
+        long exactNanos = time(exact, queries);
+        long lshNanos = time(approximate, queries);
+        double recall = recall(exact, approximate, queries);
+
+        System.out.printf("brute force: %.1f мкс/запрос, LSH: %.1f мкс/запрос, recall@%d = %.3f%n",
+                exactNanos / 1000.0 / queries, lshNanos / 1000.0 / queries, NEIGHBOURS, recall);
+        assertThat(recall).isGreaterThanOrEqualTo(0.9);
+    }
+
+    private double recall(LikeMatrix exact, LikeMatrix approximate, int queries) {
+        long found = 0;
+        long expected = 0;
+        for (long userId = 1; userId <= queries; userId++) {
+            Set<Long> truth = ids(exact.topNeighbours(userId, NEIGHBOURS, Similarity.JACCARD));
+            Set<Long> approx = ids(approximate.topNeighbours(userId, NEIGHBOURS, Similarity.JACCARD));
+            expected += truth.size();
+            truth.retainAll(approx);
+            found += truth.size();
+        }
+        return expected == 0 ? 1.0 : (double) found / expected;
+    }
+
+    private long time(LikeMatrix likeMatrix, int queries) {
+        long start = System.nanoTime();
+        for (long userId = 1; userId <= queries; userId++) {
+            likeMatrix.topNeighbours(userId, NEIGHBOURS, Similarity.JACCARD);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private Set<Long> ids(List<LikeMatrix.Neighbour> neighbours) {
+        Set<Long> result = new HashSet<>();
+        neighbours.forEach(n -> result.add(n.userId()));
+        return result;
+    }
+
+    // Пользователи разбиты на группы по вкусам: часть лайков внутри своей группы фильмов, часть — случайные
+    private Map<Long, Set<Long>> clusteredLikes(int users, int clusters, int filmsPerCluster,
+                                                int likesInCluster, int randomLikes) {
+        Random random = new Random(7);
+        int totalFilms = clusters * filmsPerCluster;
+        Map<Long, Set<Long>> likes = new HashMap<>();
+        for (long userId = 1; userId <= users; userId++) {
+            int cluster = random.nextInt(clusters);
+            Set<Long> films = new HashSet<>();
+            while (films.size() < likesInCluster) {
+                films.add((long) cluster * filmsPerCluster + random.nextInt(filmsPerCluster) + 1);
+            }
+            for (int i = 0; i < randomLikes; i++) {
+                films.add((long) random.nextInt(totalFilms) + 1);
+            }
+            likes.put(userId, films);
+        }
+        return likes;
+    }
+}
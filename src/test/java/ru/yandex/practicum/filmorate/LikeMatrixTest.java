@@ -0,0 +1,117 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.index.Similarity;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LikeMatrixTest {
+
+    private LikeMatrix likeMatrix;
+
+    @BeforeEach
+    void setUp() {
+        likeMatrix = new LikeMatrix(null);
+        /*
+         * u1 -> {1, 2, 3}
+         * u2 -> {1, 2, 3, 4, 5, 6, 7, 8}  — больше всего общих с u1, но лайкает всё подряд
+         * u3 -> {1, 2, 9}                 — ближе всех к u1 по Жаккару
+         * u4 -> {10}                      — общих фильмов нет
+         */
+        likeMatrix.rebuild(Map.of(
+                1L, Set.of(1L, 2L, 3L),
+                2L, Set.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L),
+                3L, Set.of(1L, 2L, 9L),
+                4L, Set.of(10L)
+        ));
+    }
+
+    @Test
+    void overlap_picksUserWithMostCommonLikes() {
+        assertThat(likeMatrix.topNeighbours(1L, 1, Similarity.OVERLAP))
+                .extracting(LikeMatrix.Neighbour::userId)
+                .containsExactly(2L);
+        assertThat(likeMatrix.recommend(1L, 1, Similarity.OVERLAP))
+                .containsExactly(4L, 5L, 6L, 7L, 8L);
+    }
+
+    @Test
+    void jaccard_prefersSmallerCloserProfile() {
+        assertThat(likeMatrix.topNeighbours(1L, 3, Similarity.JACCARD))
+                .extracting(LikeMatrix.Neighbour::userId)
+                .containsExactly(3L, 2L);
+        assertThat(likeMatrix.recommend(1L, 1, Similarity.JACCARD))
+                .containsExactly(9L);
+    }
+
+    @Test
+    void weightedScoring_ranksFilmsAcrossSeveralNeighbours() {
+        // jaccard(u1,u3) = 2/4, jaccard(u1,u2) = 3/8: фильм 9 получает больший вес
+        assertThat(likeMatrix.recommend(1L, 2, Similarity.JACCARD))
+                .containsExactly(9L, 4L, 5L, 6L, 7L, 8L);
+    }
+
+    @Test
+    void updates_areVisibleImmediately() {
+        likeMatrix.onLikeAdded(10L, 1L);
+        assertThat(likeMatrix.topNeighbours(1L, 5, Similarity.COSINE))
+                .extracting(LikeMatrix.Neighbour::userId)
+                .contains(4L);
+
+        likeMatrix.onUserRemoved(3L);
+        likeMatrix.onFilmRemoved(4L);
+        assertThat(likeMatrix.recommend(1L, 5, Similarity.OVERLAP))
+                .containsExactly(5L, 6L, 7L, 8L);
+    }
+
+    @Test
+    void commonFilms_intersectsAndOrdersByLikes() {
+        // фильмы 1 и 2 лайкнули трое, фильм 3 — двое
+        assertThat(likeMatrix.commonFilms(1L, 2L)).containsExactly(1L, 2L, 3L);
+        likeMatrix.onLikeAdded(3L, 4L);
+        likeMatrix.onLikeAdded(3L, 3L);
+        assertThat(likeMatrix.commonFilms(1L, 2L)).containsExactly(3L, 1L, 2L);
+        assertThat(likeMatrix.commonFilms(1L, 4L)).containsExactly(3L);
+        assertThat(likeMatrix.commonFilms(1L, 42L)).isEmpty();
+    }
+
+    @Test
+    void userWithoutLikes_getsNothing() {
+        assertThat(likeMatrix.recommend(42L, 3, Similarity.JACCARD)).isEmpty();
+    }
+
+    @Test
+    void likeDeliveredDuringLoad_isNotLost() throws InterruptedException {
+        AtomicReference<LikeMatrix> matrix = new AtomicReference<>();
+        AtomicReference<Thread> writer = new AtomicReference<>();
+        matrix.set(new LikeMatrix(new UserDbStorage(null) {
+            @Override
+            public Map<Long, Set<Long>> getAllUserLikedFilms() {
+                // снимок уже прочитан, а событие о новом лайке приходит, пока идёт загрузка
+                Thread thread = new Thread(() -> matrix.get().onLikeAdded(5L, 1L));
+                writer.set(thread);
+                thread.start();
+                awaitBlockedOrDone(thread);
+                return Map.of(1L, Set.of(1L), 2L, Set.of(1L, 5L));
+            }
+        }));
+
+        matrix.get().commonFilms(1L, 2L);
+        writer.get().join();
+
+        assertThat(matrix.get().commonFilms(1L, 2L)).containsExactly(1L, 5L);
+    }
+
+    static void awaitBlockedOrDone(Thread thread) {
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TERMINATED) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.index.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.OutboxService;
+import ru.yandex.practicum.filmorate.storage.feed.FeedDbStorage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Лайки при трафике, где большинство запросов — повторы: из многих потоков идут лайки и их отмены
+ * по небольшому набору пар. Исключений нет, счётчики и рейтинг совпадают с film_likes, а события
+ * ленты по каждой паре строго чередуются ADD/REMOVE — повтор события не порождает.
+ */
+@SpringBootTest
+@AutoConfigureTestDatabase
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class LikeThroughputIntegrationTest {
+    private static final int USERS = 10;
+    private static final int FILMS = 3;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private FeedDbStorage feedStorage;
+
+    @Autowired
+    private PopularFilmsLeaderboard leaderboard;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestDataSetup testDataSetup;
+
+    @BeforeEach
+    void setUp() {
+        testDataSetup.cleanAllTables();
+        testDataSetup.insertMpa();
+        testDataSetup.insertGenres();
+        testDataSetup.insertTestUsers(USERS);
+        testDataSetup.insertTestFilms(FILMS);
+        leaderboard.invalidate();
+        leaderboard.getTopIds(10, null, null);
+    }
+
+    @Test
+    void duplicateHeavyParallelLikes_changeStateAndEmitEventsOnlyOnTransitions() throws InterruptedException {
+        runLikes(8, 300);
+        // при параллельных коммитах диспетчер занят, и часть событий остаётся опросу
+        outboxService.dispatchPending();
+
+        for (long filmId = 1; filmId <= FILMS; filmId++) {
+            int rows = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM film_likes WHERE film_id = ?", Integer.class, filmId);
+            assertThat(likeCount(filmId)).isEqualTo(rows);
+            assertThat(leaderboard.getLikes(filmId)).isEqualTo(rows);
+        }
+        for (long userId = 1; userId <= USERS; userId++) {
+            List<Feed> events = new ArrayList<>(feedStorage.feeds(userId));
+            for (long filmId = 1; filmId <= FILMS; filmId++) {
+                long film = filmId;
+                List<String> operations = events.stream()
+                        .filter(event -> event.getEntityId() == film)
+                        .map(Feed::getOperation)
+                        .toList();
+                for (int i = 0; i < operations.size(); i++) {
+                    assertThat(operations.get(i)).isEqualTo(i % 2 == 0 ? "ADD" : "REMOVE");
+                }
+                // нечётное число событий — лайк стоит
+                Integer liked = jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM film_likes WHERE film_id = ? AND user_id = ?",
+                        Integer.class, filmId, userId);
+                assertThat(operations.size() % 2).isEqualTo(liked);
+            }
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "filmorate.benchmarks", matches = "true")
+    void benchmark_duplicateHeavyLikes() throws InterruptedException {
+        int threads = 8;
+        int perThread = 5_000;
+        long start = System.nanoTime();
+        runLikes(threads, perThread);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Integer events = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM feeds", Integer.class);
+        System.out.printf("%d операций с лайками за %.2f с: %.0f оп/с, событий ленты %d%n",
+                threads * perThread, seconds, threads * perThread / seconds, events);
+    }
+
+    // 80% запросов — лайк, 20% — отмена; пар всего USERS * FILMS, так что почти все запросы — повторы
+    private void runLikes(int threadCount, int perThread) throws InterruptedException {
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < perThread; i++) {
+                        long userId = random.nextLong(1, USERS + 1);
+                        long filmId = random.nextLong(1, FILMS + 1);
+                        if (random.nextInt(5) == 0) {
+                            filmService.deleteLike(filmId, userId);
+                        } else {
+                            filmService.putLike(filmId, userId);
+                        }
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(errors).isEmpty();
+    }
+
+    private int likeCount(long filmId) {
+        return jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = ?", Integer.class, filmId);
+    }
+}
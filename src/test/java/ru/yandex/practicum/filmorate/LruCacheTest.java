@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.cache.LruCache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LruCacheTest {
+
+    @Test
+    void readThrough_loadsOnceAndCountsHits() {
+        LruCache<Integer, String> cache = new LruCache<>("test", 10);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.get(1, id -> "v" + loads.incrementAndGet())).isEqualTo("v1");
+        assertThat(cache.get(1, id -> "v" + loads.incrementAndGet())).isEqualTo("v1");
+
+        LruCache.Stats stats = cache.stats();
+        assertThat(loads).hasValue(1);
+        assertThat(stats.hits()).isEqualTo(1);
+        assertThat(stats.misses()).isEqualTo(1);
+        assertThat(stats.hitRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        LruCache<Integer, String> cache = new LruCache<>("test", 2);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.get(1, id -> null); // 1 становится самым свежим
+        cache.put(3, "c");
+
+        assertThat(cache.get(2, id -> null)).isNull();
+        assertThat(cache.get(1, id -> null)).isEqualTo("a");
+        assertThat(cache.stats().evictions()).isEqualTo(1);
+    }
+
+    @Test
+    void missingValuesAreNotCached_andInvalidationReloads() {
+        LruCache<Integer, String> cache = new LruCache<>("test", 10);
+        assertThat(cache.get(1, id -> null)).isNull();
+        assertThat(cache.get(1, id -> "found")).isEqualTo("found");
+
+        cache.invalidate(1);
+        assertThat(cache.get(1, id -> "reloaded")).isEqualTo("reloaded");
+        assertThat(cache.stats().size()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidationDuringLoad_dropsLoadedValue() {
+        LruCache<Integer, String> cache = new LruCache<>("test", 10);
+
+        // значение прочитано до изменения, а сброс пришёл, пока загрузка ещё не закончилась
+        assertThat(cache.get(1, id -> {
+            cache.invalidate(1);
+            return "stale";
+        })).isEqualTo("stale");
+        assertThat(cache.get(1, id -> "fresh")).isEqualTo("fresh");
+
+        assertThat(cache.get(2, id -> {
+            cache.invalidateAll();
+            return "stale";
+        })).isEqualTo("stale");
+        assertThat(cache.peek(2)).isNull();
+    }
+}
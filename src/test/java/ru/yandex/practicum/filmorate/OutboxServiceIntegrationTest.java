@@ -0,0 +1,220 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.index.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.OutboxEvent;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.OutboxHandler;
+import ru.yandex.practicum.filmorate.service.OutboxService;
+import ru.yandex.practicum.filmorate.storage.feed.FeedDbStorage;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxDispatchLock;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxStorage;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/*
+ * Outbox: событие фиксируется вместе с лайком и разносится после коммита (если диспетчер свободен —
+ * иначе его забирает опрос), повторный лайк
+ * события не порождает, откат транзакции не оставляет ни лайка, ни события,
+ * накопленные события опрос разносит пачками в порядке записи, сбойная пачка не задваивает
+ * рейтинг, а событие, которое не разносится max-attempts раз, откладывается и не держит очередь.
+ */
+@SpringBootTest(properties = {
+        "filmorate.outbox.batch-size=2",
+        "filmorate.outbox.max-attempts=2",
+        "filmorate.outbox.poll-interval-ms=600000"
+})
+@Import(OutboxServiceIntegrationTest.PoisonHandlerConfig.class)
+@AutoConfigureTestDatabase
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class OutboxServiceIntegrationTest {
+    private static final long POISON_ENTITY_ID = 99L;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private OutboxStorage outboxStorage;
+
+    @Autowired
+    private FeedDbStorage feedStorage;
+
+    @Autowired
+    private PopularFilmsLeaderboard leaderboard;
+
+    @Autowired
+    private OutboxDispatchLock dispatchLock;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestDataSetup testDataSetup;
+
+    @BeforeEach
+    void setUp() {
+        testDataSetup.cleanAllTables();
+        testDataSetup.insertMpa();
+        testDataSetup.insertGenres();
+        testDataSetup.insertTestUsers(2);
+        testDataSetup.insertTestFilms(2);
+        // рейтинг загружен до лайков — дальше он меняется только обработчиком outbox
+        leaderboard.invalidate();
+        leaderboard.getTopIds(10, null, null);
+    }
+
+    @Test
+    void putLike_dispatchesAfterCommit() {
+        filmService.putLike(1L, 1L);
+
+        assertThat(outboxStorage.count()).isZero();
+        assertThat(feedStorage.feeds(1L))
+                .extracting(Feed::getEventType, Feed::getOperation, Feed::getEntityId)
+                .containsExactly(tuple("LIKE", "ADD", 1));
+        assertThat(leaderboard.getLikes(1L)).isEqualTo(1);
+    }
+
+    @Test
+    void putLike_repeatedLikeEmitsNoEvent() {
+        filmService.putLike(1L, 1L);
+        filmService.putLike(1L, 1L);
+        filmService.deleteLike(2L, 1L);
+
+        assertThat(feedStorage.feeds(1L)).hasSize(1);
+        assertThat(leaderboard.getLikes(1L)).isEqualTo(1);
+        assertThat(likeCount(1L)).isEqualTo(1);
+    }
+
+    @Test
+    void putLike_rolledBackTransactionLeavesNoEvent() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            filmService.putLike(2L, 2L);
+            status.setRollbackOnly();
+        });
+
+        assertThat(likeCount(2L)).isZero();
+        assertThat(outboxStorage.count()).isZero();
+        assertThat(feedStorage.feeds(2L)).isEmpty();
+    }
+
+    @Test
+    void dispatchPending_deliversBacklogInBatchesInOrder() {
+        for (int filmId = 1; filmId <= 5; filmId++) {
+            outboxStorage.add(OutboxEvent.builder()
+                    .eventType("REVIEW")
+                    .operation("ADD")
+                    .userId(2L)
+                    .entityId(filmId)
+                    .createdAt(filmId)
+                    .build());
+        }
+
+        outboxService.dispatchPending();
+
+        assertThat(outboxStorage.count()).isZero();
+        assertThat(feedStorage.feeds(2L))
+                .extracting(Feed::getEntityId)
+                .containsExactly(1, 2, 3, 4, 5);
+    }
+
+    @Test
+    void dispatchBatch_parksPoisonEventWithoutDoubleCountingLikes() {
+        outboxStorage.add(OutboxEvent.builder()
+                .eventType("REVIEW")
+                .operation("ADD")
+                .userId(2L)
+                .entityId(POISON_ENTITY_ID)
+                .createdAt(1L)
+                .build());
+
+        // лайк стоит в очереди за сбойным событием: после коммита его не разносят в обход очереди
+        filmService.putLike(1L, 1L);
+        assertThat(leaderboard.getLikes(1L)).isZero();
+        assertThat(outboxStorage.count()).isEqualTo(2);
+
+        // пачка [сбойное событие, лайк] падает целиком, вторая неудача откладывает сбойное событие, лайк разносится один раз
+        outboxService.dispatchPending();
+        outboxService.dispatchPending();
+
+        assertThat(leaderboard.getLikes(1L)).isEqualTo(1);
+        assertThat(feedStorage.feeds(1L)).extracting(Feed::getEventType).containsExactly("LIKE");
+        assertThat(feedStorage.feeds(2L)).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox WHERE parked", Integer.class))
+                .isEqualTo(1);
+        assertThat(outboxStorage.findBatch(10)).isEmpty();
+    }
+
+    @Test
+    void putLike_leavesEventsToPollerWhileDispatcherIsBusy() throws InterruptedException {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread dispatcher = new Thread(() -> {
+            dispatchLock.lock();
+            try {
+                locked.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                dispatchLock.unlock();
+            }
+        });
+        dispatcher.start();
+        locked.await();
+
+        // запрос не ждёт блокировку
+        filmService.putLike(1L, 1L);
+        assertThat(outboxStorage.count()).isEqualTo(1);
+        assertThat(leaderboard.getLikes(1L)).isZero();
+
+        release.countDown();
+        dispatcher.join();
+        outboxService.dispatchPending();
+        assertThat(outboxStorage.count()).isZero();
+        assertThat(leaderboard.getLikes(1L)).isEqualTo(1);
+    }
+
+    private int likeCount(long filmId) {
+        return jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = ?", Integer.class, filmId);
+    }
+
+    // Обработчик, который всегда падает на событии с POISON_ENTITY_ID
+    @TestConfiguration
+    static class PoisonHandlerConfig {
+        @Bean
+        OutboxHandler poisonHandler() {
+            return new OutboxHandler() {
+                @Override
+                public void handle(List<OutboxEvent> events) {
+                    if (events.stream().anyMatch(event -> event.getEntityId() == POISON_ENTITY_ID)) {
+                        throw new IllegalStateException("сбой обработчика");
+                    }
+                }
+            };
+        }
+    }
+}
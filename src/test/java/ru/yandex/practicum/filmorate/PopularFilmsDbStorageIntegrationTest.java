@@ -75,6 +75,8 @@ class PopularFilmsDbStorageIntegrationTest {
         jdbc.update("INSERT INTO film_likes(film_id, user_id) VALUES (10,1),(10,2)");
         // F40: 1 лайк
         jdbc.update("INSERT INTO film_likes(film_id, user_id) VALUES (40,5)");
+        // лайки вставлены напрямую — пересчитываем films.like_count
+        filmDbStorage.reconcileLikeCounts();
     }
 
     @Test
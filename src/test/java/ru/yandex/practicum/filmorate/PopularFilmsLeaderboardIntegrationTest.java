@@ -0,0 +1,176 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.index.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.outbox.OutboxDispatchLock;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDbStorage.class, PopularFilmsLeaderboard.class, OutboxDispatchLock.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class PopularFilmsLeaderboardIntegrationTest {
+
+    private final FilmDbStorage filmDbStorage;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final OutboxDispatchLock dispatchLock;
+    private final JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        jdbc.update("DELETE FROM outbox");
+        jdbc.update("DELETE FROM film_likes");
+        jdbc.update("DELETE FROM film_genres");
+        jdbc.update("DELETE FROM films");
+        jdbc.update("DELETE FROM users");
+        jdbc.update("DELETE FROM genres");
+        jdbc.update("DELETE FROM mpa");
+
+        jdbc.update("INSERT INTO mpa(id, name) VALUES (1,'G'),(2,'PG'),(3,'PG-13')");
+        jdbc.update("INSERT INTO genres(id, name) VALUES (1,'Комедия'),(2,'Драма'),(3,'Боевик')");
+        jdbc.update("""
+                    INSERT INTO users(id, email, login, name, birthday) VALUES
+                    (1,'u1@ex.com','u1','U1','1990-01-01'),
+                    (2,'u2@ex.com','u2','U2','1991-01-01'),
+                    (3,'u3@ex.com','u3','U3','1992-01-01'),
+                    (4,'u4@ex.com','u4','U4','1993-01-01'),
+                    (5,'u5@ex.com','u5','U5','1994-01-01')
+                """);
+        jdbc.update("""
+                    INSERT INTO films(id, name, description, release_date, duration, mpa_id) VALUES
+                    (10,'F10','d','2020-02-01',100,2),
+                    (20,'F20','d','2020-06-01',110,2),
+                    (30,'F30','d','2021-03-01',120,3),
+                    (40,'F40','d','2021-07-01',130,1),
+                    (50,'F50','d','2021-09-01',140,1)
+                """);
+        jdbc.update("INSERT INTO film_genres(film_id, genre_id) VALUES (10,1),(20,2),(30,1),(30,3),(40,2)");
+        jdbc.update("INSERT INTO film_likes(film_id, user_id) VALUES (30,1),(30,2),(30,3),(30,4)");
+        jdbc.update("INSERT INTO film_likes(film_id, user_id) VALUES (20,1),(20,2),(20,3)");
+        jdbc.update("INSERT INTO film_likes(film_id, user_id) VALUES (10,1),(10,2)");
+        jdbc.update("INSERT INTO film_likes(film_id, user_id) VALUES (40,5)");
+        // лайки вставлены напрямую — пересчитываем films.like_count
+        filmDbStorage.reconcileLikeCounts();
+
+        leaderboard.invalidate();
+    }
+
+    @Test
+    void leaderboard_matchesSqlForAllFilters() {
+        assertMatchesSql();
+    }
+
+    @Test
+    void leaderboard_followsLikeChanges() {
+        // F50 без лайков поднимается на первое место
+        for (long userId = 1; userId <= 5; userId++) {
+            filmDbStorage.addLike(50L, userId);
+            leaderboard.onLikeAdded(50L);
+        }
+        filmDbStorage.removeLike(30L, 4L);
+        leaderboard.onLikeRemoved(30L);
+
+        assertThat(leaderboard.getTopIds(3, null, null)).containsExactly(50L, 20L, 30L);
+        assertMatchesSql();
+    }
+
+    @Test
+    void leaderboard_dropsRemovedFilm() {
+        assertThat(leaderboard.getTopIds(1, null, null)).containsExactly(30L);
+
+        filmDbStorage.removeById(30L);
+        leaderboard.onFilmRemoved(30L);
+
+        assertThat(leaderboard.getTopIds(10, 1, null)).containsExactly(10L);
+        assertMatchesSql();
+    }
+
+    @Test
+    void load_leavesPendingOutboxLikesToDispatcher() {
+        // лайк закоммичен вместе с событием, диспетчер его ещё не разнёс
+        filmDbStorage.addLike(40L, 1L);
+        filmDbStorage.addLike(40L, 2L);
+        filmDbStorage.addLike(40L, 3L);
+        filmDbStorage.removeLike(30L, 4L);
+        jdbc.update("INSERT INTO outbox(event_type, operation, user_id, entity_id, created_at) VALUES " +
+                "('LIKE','ADD',1,40,0),('LIKE','ADD',2,40,0),('LIKE','ADD',3,40,0),('LIKE','REMOVE',4,30,0)");
+
+        assertThat(leaderboard.getLikes(40L)).isEqualTo(1);
+        assertThat(leaderboard.getLikes(30L)).isEqualTo(4);
+
+        // разнос после загрузки применяет каждое событие один раз
+        for (int i = 0; i < 3; i++) {
+            leaderboard.onLikeAdded(40L);
+        }
+        leaderboard.onLikeRemoved(30L);
+        jdbc.update("DELETE FROM outbox");
+
+        assertThat(leaderboard.getLikes(40L)).isEqualTo(4);
+        assertMatchesSql();
+    }
+
+    @Test
+    void verifyConsistency_rebuildsDriftedGenreAndYearLeaderboards() {
+        assertMatchesSql();
+        // жанр и дата изменены в обход рейтинга: общий топ не меняется
+        jdbc.update("INSERT INTO film_genres(film_id, genre_id) VALUES (40,3)");
+        jdbc.update("UPDATE films SET release_date = '2020-10-01' WHERE id = 50");
+        assertThat(leaderboard.getTopIds(10, 3, null)).containsExactly(30L);
+
+        leaderboard.verifyConsistency();
+
+        assertThat(leaderboard.getTopIds(10, 3, null)).containsExactly(30L, 40L);
+        assertMatchesSql();
+    }
+
+    @Test
+    // загрузка идёт в другом потоке и должна видеть данные теста
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void filmSavedDuringLoad_isAppliedOverSnapshot() throws InterruptedException {
+        // загрузка прочитала год и жанры и ждёт снимок лайков под блокировкой разноса
+        Thread loader;
+        dispatchLock.lock();
+        try {
+            loader = new Thread(() -> leaderboard.getTopIds(10, null, null));
+            loader.start();
+            LikeMatrixTest.awaitBlockedOrDone(loader);
+
+            jdbc.update("INSERT INTO film_genres(film_id, genre_id) VALUES (50,3)");
+            leaderboard.onFilmSaved(filmDbStorage.findById(50L).orElseThrow());
+        } finally {
+            dispatchLock.unlock();
+        }
+        loader.join();
+
+        assertThat(leaderboard.getTopIds(10, 3, null)).containsExactly(30L, 50L);
+        assertMatchesSql();
+    }
+
+    private void assertMatchesSql() {
+        List<Integer> genres = Arrays.asList(null, 1, 2, 3);
+        List<Integer> years = Arrays.asList(null, 2020, 2021, 1999);
+        for (Integer genreId : genres) {
+            for (Integer year : years) {
+                for (int count : new int[]{1, 2, 10}) {
+                    assertThat(leaderboard.getTopIds(count, genreId, year))
+                            .as("count=%d, genreId=%s, year=%s", count, genreId, year)
+                            .isEqualTo(filmDbStorage.getPopularFilmIds(count, genreId, year));
+                }
+            }
+        }
+    }
+}
@@ -7,7 +7,9 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.RecommendationService;
 import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
@@ -18,6 +20,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
+@ActiveProfiles("test")
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
 class RecommendationServiceIntegrationTest {
 
@@ -27,6 +30,9 @@ class RecommendationServiceIntegrationTest {
     @Autowired
     private RecommendationService recommendationService;
 
+    @Autowired
+    private FilmService filmService;
+
     @Autowired
     private FilmDbStorage filmDbStorage;
 
@@ -85,4 +91,27 @@ class RecommendationServiceIntegrationTest {
 
         assertThat(recs).isEmpty();
     }
+
+    @Test
+    void shouldRecomputeSnapshotAfterLikeChange() {
+        RecommendationService.Recommendations first = recommendationService.getRecommendationSnapshot(1L);
+        assertThat(first.films()).extracting(Film::getId).containsExactly(30L);
+
+        // пока лайки не менялись, отдаётся тот же снимок
+        assertThat(recommendationService.getRecommendationSnapshot(1L).computedAt())
+                .isEqualTo(first.computedAt());
+
+        // u1 лайкает 30 — рекомендовать больше нечего, снимок пересчитан
+        filmService.putLike(30L, 1L);
+        RecommendationService.Recommendations second = recommendationService.getRecommendationSnapshot(1L);
+        assertThat(second.films()).isEmpty();
+        assertThat(second.computedAt()).isAfterOrEqualTo(first.computedAt());
+
+        // после снятия лайка снимок снова «грязный», его пересчитывает фоновая задача
+        filmService.deleteLike(30L, 1L);
+        recommendationService.refreshSnapshots();
+        assertThat(recommendationService.getRecommendations(1L))
+                .extracting(Film::getId)
+                .containsExactly(30L);
+    }
 }
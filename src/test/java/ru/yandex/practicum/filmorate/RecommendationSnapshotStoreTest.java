@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.cache.RecommendationSnapshotStore;
+import ru.yandex.practicum.filmorate.cache.RecommendationSnapshotStore.Snapshot;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecommendationSnapshotStoreTest {
+
+    @Test
+    void overMaxSize_evictsLeastRecentlyRead() {
+        RecommendationSnapshotStore store = new RecommendationSnapshotStore(2);
+        store.put(1L, snapshot());
+        store.put(2L, snapshot());
+        store.markDirty(List.of(2L));
+        store.get(1L); // 2 дольше всех не читали
+        store.put(3L, snapshot());
+
+        assertThat(store.activeUsers()).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(store.isDirty(2L)).isFalse();
+    }
+
+    @Test
+    void recomputeAndExpiryCheck_doNotRefreshRecency() {
+        RecommendationSnapshotStore store = new RecommendationSnapshotStore(2);
+        store.put(1L, snapshot());
+        store.put(2L, snapshot());
+        // фоновый пересчёт и проверка срока у 1 — но читали его раньше, чем 2
+        store.put(1L, snapshot());
+        assertThat(store.computedAt(1L)).isNotNull();
+        store.put(3L, snapshot());
+
+        assertThat(store.activeUsers()).containsExactlyInAnyOrder(2L, 3L);
+    }
+
+    @Test
+    void likeDuringFirstCompute_leavesSnapshotDirty() {
+        RecommendationSnapshotStore store = new RecommendationSnapshotStore(10);
+        store.markDirty(List.of(1L));
+        assertThat(store.isDirty(1L)).isFalse();
+
+        store.startCompute(1L);
+        store.markDirty(List.of(1L));
+        store.put(1L, snapshot());
+        store.finishCompute(1L);
+
+        assertThat(store.isDirty(1L)).isTrue();
+    }
+
+    @Test
+    void evictIdle_dropsSnapshotsNotReadSince() throws InterruptedException {
+        RecommendationSnapshotStore store = new RecommendationSnapshotStore(10);
+        store.put(1L, snapshot());
+        store.put(2L, snapshot());
+        store.markDirty(List.of(1L, 2L));
+        Thread.sleep(5);
+        Instant readBefore = Instant.now();
+        store.get(2L);
+
+        assertThat(store.evictIdle(readBefore)).isEqualTo(1);
+        assertThat(store.activeUsers()).containsExactly(2L);
+        assertThat(store.dirtyUsers()).containsExactly(2L);
+        // пересчёт в фоне чтением не считается
+        store.put(2L, snapshot());
+        Thread.sleep(5);
+        assertThat(store.evictIdle(Instant.now())).isEqualTo(1);
+        assertThat(store.size()).isZero();
+    }
+
+    private Snapshot snapshot() {
+        return new Snapshot(List.of(), Instant.now());
+    }
+}
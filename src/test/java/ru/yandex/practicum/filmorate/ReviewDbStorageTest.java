@@ -12,6 +12,7 @@ import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.storage.review.ReviewDbStorage;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -145,4 +146,52 @@ class ReviewDbStorageTest {
         storage.deleteRate(id, user1, false); // снять дизлайк: -1 + 1 = 0
         assertThat(storage.findById(id).getUseful()).isEqualTo(0);
     }
+
+    @Test
+    @DisplayName("getReviewsPage: страницы по курсору (useful, id) складываются в полный список")
+    void getReviewsPageWalksKeyset() {
+        Long r0 = getBaseReviewId();
+        List<Long> ids = new ArrayList<>(List.of(r0));
+        for (int i = 0; i < 6; i++) {
+            ids.add(storage.create(Review.builder()
+                    .content("r" + i).isPositive(true).userId(user1).filmId(filmId).build()).getId());
+        }
+        // одинаковый useful у нескольких отзывов — порядок внутри них по id
+        jdbc.update("UPDATE reviews SET useful = 3 WHERE id IN (?, ?)", ids.get(2), ids.get(5));
+        jdbc.update("UPDATE reviews SET useful = -1 WHERE id = ?", ids.get(1));
+
+        List<Long> walked = new ArrayList<>();
+        List<Review> page = storage.getReviewsPage(filmId, null, null, 2);
+        while (!page.isEmpty()) {
+            page.forEach(review -> walked.add(review.getId()));
+            Review last = page.get(page.size() - 1);
+            page = storage.getReviewsPage(filmId, last.getUseful(), last.getId(), 2);
+        }
+
+        assertThat(walked).containsExactlyElementsOf(
+                storage.getReviewsByFilmId(filmId, 100).stream().map(Review::getId).toList());
+        assertThat(walked).startsWith(ids.get(2), ids.get(5)).endsWith(ids.get(1)).hasSize(7);
+    }
+
+    @Test
+    @DisplayName("putRate/deleteRate возвращают новое значение useful")
+    void rateReturnsUseful() {
+        Long id = getBaseReviewId();
+
+        assertThat(storage.putRate(id, user2, true)).isEqualTo(1);
+        assertThat(storage.putRate(id, user1, false)).isEqualTo(0);
+        assertThat(storage.deleteRate(id, user1, false)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("отзывы читаются по индексам (film_id, useful, id) и (useful, id) без сортировки")
+    void reviewsUseSortedIndexes() {
+        String byFilm = jdbc.queryForObject("EXPLAIN SELECT r.* FROM reviews r USE INDEX (idx_reviews_film_useful) WHERE r.film_id = ? " +
+                "ORDER BY r.film_id, r.useful DESC, r.id LIMIT 10", String.class, filmId);
+        String all = jdbc.queryForObject(
+                "EXPLAIN SELECT r.* FROM reviews r ORDER BY r.useful DESC, r.id LIMIT 10", String.class);
+
+        assertThat(byFilm).containsIgnoringCase("IDX_REVIEWS_FILM_USEFUL").contains("index sorted");
+        assertThat(all).containsIgnoringCase("IDX_REVIEWS_USEFUL").contains("index sorted");
+    }
 }
@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.storage.review.ReviewDbStorage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Параллельное голосование за отзывы: после случайных лайков, дизлайков и их отмены из многих
+ * потоков (в том числе одним пользователем из двух потоков сразу) useful каждого отзыва
+ * равен сумме голосов в review_likes.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({ReviewDbStorage.class, TestDataSetup.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ActiveProfiles("test")
+// голоса пишутся из своих потоков, каждый в своей транзакции
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReviewRateConcurrencyTest {
+    private static final int USERS = 8;
+    private static final int THREADS_PER_USER = 2;
+    private static final int VOTES_PER_THREAD = 300;
+
+    private final ReviewDbStorage reviewStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final TestDataSetup testDataSetup;
+
+    private final List<Long> reviewIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        testDataSetup.cleanAllTables();
+        testDataSetup.insertMpa();
+        testDataSetup.insertGenres();
+        testDataSetup.insertTestUsers(USERS);
+        testDataSetup.insertTestFilms(1);
+        reviewIds.clear();
+        for (int i = 0; i < 2; i++) {
+            reviewIds.add(reviewStorage.create(Review.builder()
+                    .content("Отзыв " + i).isPositive(true).userId(1L).filmId(1L).build()).getId());
+        }
+    }
+
+    @Test
+    void parallelVotes_keepUsefulEqualToSumOfVotes() throws InterruptedException {
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (long userId = 1; userId <= USERS; userId++) {
+            for (int t = 0; t < THREADS_PER_USER; t++) {
+                long voter = userId;
+                threads.add(new Thread(() -> {
+                    try {
+                        start.await();
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        for (int i = 0; i < VOTES_PER_THREAD; i++) {
+                            long reviewId = reviewIds.get(random.nextInt(reviewIds.size()));
+                            boolean useful = random.nextBoolean();
+                            if (random.nextInt(4) == 0) {
+                                reviewStorage.deleteRate(reviewId, voter, useful);
+                            } else {
+                                reviewStorage.putRate(reviewId, voter, useful);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }));
+            }
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(errors).isEmpty();
+        for (long reviewId : reviewIds) {
+            Long votes = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(SUM(CASE WHEN is_useful THEN 1 ELSE -1 END), 0) FROM review_likes WHERE review_id = ?",
+                    Long.class, reviewId);
+            assertThat(reviewStorage.findById(reviewId).getUseful()).isEqualTo(votes);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.cache.ReviewTopCache;
+import ru.yandex.practicum.filmorate.model.Review;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/*
+ * Топ отзывов в памяти после случайных голосов, созданий и удалений совпадает
+ * с пересчётом по всем отзывам — и по фильму, и по всему каталогу. Изменение, закоммиченное
+ * во время загрузки списка, не даёт закешировать прочитанный до него список.
+ */
+class ReviewTopCacheTest {
+    private static final int TOP_SIZE = 5;
+
+    // "БД": все отзывы по id
+    private final Map<Long, Review> reviews = new HashMap<>();
+
+    @Test
+    void incrementalUpdates_matchFullRecompute() {
+        ReviewTopCache cache = new ReviewTopCache(true, TOP_SIZE, 100);
+        Random random = new Random(42);
+        long nextId = 1;
+        for (; nextId <= 20; nextId++) {
+            store(review(nextId, 1 + random.nextInt(2), 0));
+        }
+
+        for (int step = 0; step < 2000; step++) {
+            int action = random.nextInt(10);
+            if (action == 0) {
+                Review created = review(nextId++, 1 + random.nextInt(2), 0);
+                store(created);
+                cache.onReviewChanged(created);
+            } else if (action == 1 && !reviews.isEmpty()) {
+                Review removed = reviews.remove(randomId(random));
+                cache.onReviewRemoved(removed);
+            } else if (!reviews.isEmpty()) {
+                Review voted = reviews.get(randomId(random));
+                voted.setUseful(voted.getUseful() + random.nextInt(5) - 2);
+                cache.onReviewChanged(voted);
+            }
+
+            for (Long filmId : new Long[]{null, 1L, 2L}) {
+                int count = 1 + random.nextInt(TOP_SIZE);
+                assertThat(cache.getTop(filmId, count, this::load))
+                        .extracting(Review::getId, Review::getUseful)
+                        .containsExactlyElementsOf(load(filmId, count).stream()
+                                .map(review -> tuple(review.getId(), review.getUseful()))
+                                .toList());
+            }
+        }
+    }
+
+    @Test
+    void getTop_returnsCopies() {
+        ReviewTopCache cache = new ReviewTopCache(true, TOP_SIZE, 100);
+        store(review(1, 1, 3));
+
+        cache.getTop(1L, 1, this::load).get(0).setUseful(100);
+
+        assertThat(cache.getTop(1L, 1, this::load).get(0).getUseful()).isEqualTo(3);
+    }
+
+    @Test
+    void refreshDuringLoad_doesNotCacheStaleList() {
+        ReviewTopCache cache = new ReviewTopCache(true, TOP_SIZE, 100);
+        store(review(1, 1, 0));
+        store(review(2, 1, 1));
+
+        // загрузчик прочитал БД, затем голос закоммитился и применился, пока список ещё не в кеше
+        assertThat(cache.getTop(1L, 2, (filmId, limit) -> {
+            List<Review> stale = load(filmId, limit);
+            reviews.get(1L).setUseful(5);
+            cache.refresh(reviews.get(1L), reviews::get);
+            return stale;
+        })).extracting(Review::getId).containsExactly(2L, 1L);
+
+        assertThat(cache.getTop(1L, 2, this::load)).extracting(Review::getId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void refresh_removesReviewMissingAfterCommit() {
+        ReviewTopCache cache = new ReviewTopCache(true, TOP_SIZE, 100);
+        store(review(1, 1, 0));
+        store(review(2, 1, 1));
+        cache.getTop(1L, 2, this::load);
+
+        Review removed = reviews.remove(2L);
+        cache.refresh(removed, reviews::get);
+
+        assertThat(cache.getTop(1L, 2, (filmId, limit) -> List.of())).extracting(Review::getId).containsExactly(1L);
+    }
+
+    private List<Review> load(Long filmId, int limit) {
+        return reviews.values().stream()
+                .filter(review -> filmId == null || review.getFilmId().equals(filmId))
+                .sorted(Comparator.comparingLong(Review::getUseful).reversed().thenComparing(Review::getId))
+                .limit(limit)
+                .map(review -> review(review.getId(), review.getFilmId(), review.getUseful()))
+                .toList();
+    }
+
+    private long randomId(Random random) {
+        List<Long> ids = new ArrayList<>(reviews.keySet());
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    private void store(Review review) {
+        reviews.put(review.getId(), review);
+    }
+
+    private Review review(long id, long filmId, long useful) {
+        return Review.builder()
+                .id(id).content("Отзыв " + id).isPositive(true).userId(1L).filmId(filmId).useful(useful)
+                .build();
+    }
+}
@@ -36,6 +36,12 @@ public class TestDataSetup {
         // Удаляем все данные из таблиц
         tables.stream()
                 .forEach(t -> jdbcTemplate.execute("TRUNCATE TABLE " + t));
+        // TRUNCATE идёт мимо триггеров полнотекстового индекса — перестраиваем его по пустым таблицам
+        Integer ftSchemas = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SCHEMATA WHERE SCHEMA_NAME = 'FT'", Integer.class);
+        if (ftSchemas != null && ftSchemas > 0) {
+            jdbcTemplate.execute("CALL FT_REINDEX()");
+        }
 
         jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE"); // Включаем проверки обратно
     }
@@ -128,6 +134,7 @@ public class TestDataSetup {
                     }
                 }
         );
+        addresseeIds.forEach(this::incrementFollowers);
     }
 
     // когда нужен 1 друг
@@ -136,6 +143,12 @@ public class TestDataSetup {
                 "INSERT INTO user_friends (requester_id, addressee_id, status_code) VALUES (?, ?, 'CONFIRMED')",
                 requesterId, addresseeId
         );
+        incrementFollowers(addresseeId);
+    }
+
+    // счётчик подписчиков storage ведёт сам, здесь дружба пишется напрямую
+    private void incrementFollowers(Long userId) {
+        jdbcTemplate.update("UPDATE users SET follower_count = follower_count + 1 WHERE id = ?", userId);
     }
 
     /* ==================== Заполнение фильмов ==================== */
@@ -188,6 +201,7 @@ public class TestDataSetup {
                 "INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)",
                 filmId, userId
         );
+        jdbcTemplate.update("UPDATE films SET like_count = like_count + 1 WHERE id = ?", filmId);
     }
 
     public void insertFilmLikes(Long filmId, List<Long> userIds) {
@@ -206,6 +220,7 @@ public class TestDataSetup {
                     }
                 }
         );
+        jdbcTemplate.update("UPDATE films SET like_count = like_count + ? WHERE id = ?", userIds.size(), filmId);
     }
 
     /* ==================== Добавление режиссеров ==================== */
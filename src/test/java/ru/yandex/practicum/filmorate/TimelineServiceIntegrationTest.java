@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.service.TimelineService;
+import ru.yandex.practicum.filmorate.storage.feed.FeedDbStorage;
+import ru.yandex.practicum.filmorate.storage.timeline.TimelineDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Лента активности: раскладка по подписчикам при записи, подгрузка истории при добавлении
+ * в друзья, чтение популярных авторов без раскладки и обрезка ленты до максимальной длины.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({TimelineDbStorage.class, FeedDbStorage.class, UserDbStorage.class, TestDataSetup.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ActiveProfiles("test")
+class TimelineServiceIntegrationTest {
+    private final TimelineDbStorage timelineStorage;
+    private final FeedDbStorage feedStorage;
+    private final UserDbStorage userStorage;
+    private final TestDataSetup testDataSetup;
+
+    private TimelineService timelineService;
+
+    @BeforeEach
+    void setUp() {
+        testDataSetup.cleanAllTables();
+        testDataSetup.insertFriendshipStatuses();
+        testDataSetup.insertTestUsers(4);
+        // длина ленты 3, больше двух подписчиков — автор читается без раскладки
+        timelineService = new TimelineService(timelineStorage, feedStorage, userStorage, 3, 2);
+    }
+
+    @Test
+    void publish_fansOutToAuthorAndFollowersOnly() {
+        testDataSetup.insertFriend(1L, 2L);
+
+        Feed like = publishLike(2L, 10L);
+
+        assertThat(timelineService.getTimeline(1L, 10)).containsExactly(like);
+        assertThat(timelineService.getTimeline(2L, 10)).containsExactly(like);
+        assertThat(timelineService.getTimeline(3L, 10)).isEmpty();
+    }
+
+    @Test
+    void follow_backfillsAuthorHistoryAndUnfollowRemovesIt() {
+        Feed first = publishLike(3L, 10L);
+        Feed second = publishLike(3L, 11L);
+        Feed own = publishLike(1L, 12L);
+
+        testDataSetup.insertFriend(1L, 3L);
+        timelineService.onFollow(1L, 3L);
+        assertThat(timelineService.getTimeline(1L, 10)).containsExactly(own, second, first);
+
+        timelineService.onUnfollow(1L, 3L);
+        assertThat(timelineService.getTimeline(1L, 10)).containsExactly(own);
+    }
+
+    @Test
+    void getTimeline_mergesPopularAuthorsOnRead() {
+        testDataSetup.insertFriends(4L, List.of(1L));
+        testDataSetup.insertFriends(2L, List.of(1L));
+        testDataSetup.insertFriends(3L, List.of(1L));
+
+        Feed popular = publishLike(1L, 10L);
+        Feed own = publishLike(4L, 11L);
+
+        // у автора 1 три подписчика — в их ленты событие не раскладывалось
+        assertThat(timelineStorage.findTimeline(4L, 10)).containsExactly(own);
+        assertThat(timelineService.getTimeline(4L, 10)).containsExactly(own, popular);
+        assertThat(timelineService.getTimeline(4L, 1)).containsExactly(own);
+    }
+
+    @Test
+    void followerCount_followsFriendshipChangesAndUserRemoval() {
+        userStorage.addFriend(2L, 1L);
+        userStorage.addFriend(3L, 1L);
+        userStorage.addFriend(2L, 3L);
+        assertThat(timelineStorage.countFollowers(1L)).isEqualTo(2);
+
+        userStorage.removeFriend(3L, 1L);
+        userStorage.removeFriend(3L, 1L);
+        assertThat(timelineStorage.countFollowers(1L)).isEqualTo(1);
+
+        userStorage.removeById(2L);
+        assertThat(timelineStorage.countFollowers(1L)).isZero();
+        assertThat(timelineStorage.countFollowers(3L)).isZero();
+    }
+
+    @Test
+    void trim_keepsNewestEventsPerUser() {
+        for (long filmId = 1; filmId <= 5; filmId++) {
+            publishLike(1L, filmId);
+        }
+        assertThat(timelineStorage.findTimeline(1L, 10)).hasSize(5);
+
+        timelineService.trim();
+
+        assertThat(timelineStorage.findTimeline(1L, 10))
+                .extracting(Feed::getEntityId)
+                .containsExactly(5, 4, 3);
+    }
+
+    private Feed publishLike(long userId, long filmId) {
+        Feed event = feedStorage.likeFromUser(filmId, userId);
+        timelineService.publish(event);
+        return event;
+    }
+}
@@ -48,6 +48,22 @@ class UserDbStorageIntegrationTest {
                 .contains(createdUser.getId());
     }
 
+    @Test
+    void testExistsByIdAndExistAll() {
+        User user = userDbStorage.create(User.builder()
+                .email("exists@user.com")
+                .login("exists")
+                .name("Exists")
+                .birthday(LocalDate.now())
+                .build());
+        long missingId = user.getId() + 1000;
+
+        assertThat(userDbStorage.existsById(user.getId())).isTrue();
+        assertThat(userDbStorage.existsById(missingId)).isFalse();
+        assertThat(userDbStorage.existAll(List.of(user.getId(), user.getId()))).isTrue();
+        assertThat(userDbStorage.existAll(List.of(user.getId(), missingId))).isFalse();
+    }
+
     @Test
     void testUpdateUser() {
         User originalUser = User.builder()